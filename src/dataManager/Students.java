@@ -2,6 +2,7 @@ package dataManager;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.logging.Logger;
 
 import org.json.JSONException;
@@ -371,6 +372,66 @@ public class Students {
 		return this.getChoice(this.getIndex(student),choice);
 	}
 	
+	/**
+	 * Adds a student that joined after the data was loaded to the end of the student data
+	 * @param record - The students row, with a value for every column of the student data
+	 * @return The index of the new student
+	 * @throws IllegalFormatException Thrown if a student with the same username already exists
+	 * @throws InvalidTableFormatException Thrown if the record does not have a value for every column
+	 */
+	public int addStudent(ArrayList<String> record) throws IllegalFormatException, InvalidTableFormatException {
+		if (USERNAME_COLUMN < 0 || USERNAME_COLUMN >= record.size()) {
+			throw new InvalidTableFormatException("Student record has no username column");
+		}
+		String username = record.get(USERNAME_COLUMN);
+		if (this.data.getRowIndex(USERNAME_COLUMN, username, false) != -1) {
+			logger.warning("Student <" + username + "> already exists");
+			throw new IllegalFormatException("Student <" + username + "> already exists");
+		}
+		this.data.addRecord(record);
+		return this.data.size() - 1;
+	}
+	
+	/**
+	 * Changes the given students nth choice, for a correction made after the data was loaded
+	 * Note: choices start a 0
+	 * @param index - The student to change the choice of
+	 * @param choice - The nth choice of the given student to change
+	 * @param supervisor - The name of the supervisor chosen
+	 * @throws IllegalArgumentException Thrown if the choice is not valid
+	 * @throws StudentNotFoundException Thrown if the student is not valid
+	 */
+	public void setChoice(int index, int choice, String supervisor) throws IllegalArgumentException, StudentNotFoundException {
+		
+		if (choice >= 0 && choice < this.CHOICE_COLUMNS.length) {
+			
+			if (this.size() > index && index >= 0) {
+				this.data.setValue(index, this.CHOICE_COLUMNS[choice], supervisor);
+			}else {
+				logger.severe(index + " is not a valid stuednt index");
+				throw new StudentNotFoundException(index);
+			}
+		}else {
+			logger.severe(choice + " is not a valid choice");
+			throw new IllegalArgumentException(choice + " is not a valid choice");
+		}
+	}
+	
+	/**
+	 * Changes the course of the given student, for a correction made after the data was loaded
+	 * @param index - The student to change the course of
+	 * @param course - The new course of the student
+	 * @throws StudentNotFoundException Thrown if the student is not valid
+	 */
+	public void setCourse(int index, String course) throws StudentNotFoundException {
+		try {
+			this.data.setValue(index, COURSE_COLUMN, course);
+		}catch (IndexOutOfBoundsException  e) {
+			logger.severe("Index out of bounds exception occured when setting course of student " + index);
+			throw new StudentNotFoundException(index);
+		}
+	}
+	
 	/**
 	 * Gets a copy of the student data.<br>
 	 * The data returned can be manipulated in any way without affecting the internal
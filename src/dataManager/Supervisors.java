@@ -291,6 +291,24 @@ public class Supervisors {
 		return getSupervisorCapcity(getIndex(supervisor));
 	}
 	
+	/**
+	 * Changes the capacity of a given supervisor, for a change made after the data was loaded
+	 * @param supervisor - the index of the supervisor in the underlying spreadsheet
+	 * @param capacity - the new capacity of the supervisor
+	 * @throws IllegalArgumentException Thrown if the capacity is negative
+	 * @throws SupervisorNotFoundException Thrown if supervisor index is not valid
+	 */
+	public void setSupervisorCapacity(int supervisor, int capacity) throws IllegalArgumentException, SupervisorNotFoundException {
+		if (capacity < 0) {
+			throw new IllegalArgumentException("Supervisor capacity must not be negative");
+		}
+		try {
+			this.data.setValue(supervisor, CAPACITY_COLUMN, Integer.toString(capacity));
+		}catch (IndexOutOfBoundsException e) {
+			throw new SupervisorNotFoundException(supervisor);
+		}
+	}
+	
 	/**
 	 * Gets the name of the supervisor at the given index
 	 * @param n - the index of the supervisor to get the name of
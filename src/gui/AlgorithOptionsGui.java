@@ -56,6 +56,12 @@ public class AlgorithOptionsGui extends JPanel {
 	 */
 	private static final Font DEAFULT_FONT = new Font("TimesRoman", Font.PLAIN, 18);
 	
+	/**
+	 * The capped percentages the user can pick from, also the percentages to pass to
+	 * {@link matcher.Matcher#sweep} to evaluate every option at once
+	 */
+	public static final int [] PERCENTAGE_OPTIONS = {25,30,35,40,45,50,55,60,65,70,75,80,85,90,95,100};
+	
 	
 	/**
 	 * Constructs a new GUI to select algorithm options on
@@ -87,7 +93,10 @@ public class AlgorithOptionsGui extends JPanel {
 		this.lbl_capped.setEnabled(false);
 		pnl_percentage.add(lbl_capped);
 		
-		Integer [] options = {25,30,35,40,45,50,55,60,65,70,75,80,85,90,95,100};
+		Integer [] options = new Integer[PERCENTAGE_OPTIONS.length];
+		for (int i=0;i<PERCENTAGE_OPTIONS.length;i++) {
+			options[i] = PERCENTAGE_OPTIONS[i];
+		}
 		this.cbo_percentage = new JComboBox<Integer>(options);
 		this.cbo_percentage.setFont(font);
 		pnl_percentage.add(cbo_percentage);
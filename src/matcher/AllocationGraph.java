@@ -0,0 +1,695 @@
+package matcher;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.logging.Logger;
+
+import org.json.JSONException;
+
+import Exceptions.ConfigNotValidException;
+import Exceptions.CustomValidationException;
+import Exceptions.InvalidTypeException;
+import dataManager.Config;
+import dataManager.Students;
+import dataManager.Supervisors;
+import exceptions.StudentNotFoundException;
+import exceptions.SupervisorNotFoundException;
+import exceptions.UnexpectedException;
+import utils.MatchingUtils;
+
+/**
+ * The flow network an allocation is solved over, and the mapping between its nodes and the
+ * students, supervisors and topic areas they stand for.
+ * <br>
+ * source -&gt; students (capacity 1) -&gt; supervisor or supervisor nat_sci node (cost of the match)
+ * -&gt; supervisor (nat_sci nodes only, capacity - 1) -&gt; topic area (supervisor capacity)
+ * -&gt; sink (capped percentage of the students)
+ *
+ * @author Robert Cobb <br>
+ * Bath University<br>
+ * Email: rbc31@bath.ac.uk
+ */
+class AllocationGraph {
+
+	/**
+	 * The logger for this class
+	 */
+	private static Logger logger = Logger.getLogger(AllocationGraph.class.getName());
+
+	/**
+	 * The students being matched
+	 */
+	final Students students;
+
+	/**
+	 * The supervisors being matched to
+	 */
+	final Supervisors supervisors;
+
+	/**
+	 * The flow network, with no flow on it
+	 */
+	final ResidualGraph graph;
+
+	/**
+	 * The name of each node
+	 */
+	final ArrayList<String> nodeNames;
+
+	/**
+	 * The node of each name
+	 */
+	final HashMap<String,Integer> nodeNamesMap;
+
+	/**
+	 * The percentage the topic areas are capped at
+	 */
+	int percentage;
+
+	/**
+	 * The node of the first supervisor
+	 */
+	final int supervisorStartIndex;
+
+	/**
+	 * The node of the first supervisor nat_sci node
+	 */
+	final int supervisorNatSciStartIndex;
+
+	/**
+	 * The node of the first topic area
+	 */
+	final int topicAreaStartIndex;
+
+	/**
+	 * The sink node, the last node built. Students added later take the nodes after it
+	 */
+	final int sinkNode;
+
+	/**
+	 * The number of students in the graph
+	 */
+	int studentCount;
+
+	/**
+	 * The number of students that have not withdrawn, the topic area caps are a percentage of this
+	 */
+	int activeStudents;
+
+	/**
+	 * The node of each student, indexed by student
+	 */
+	int [] studentNodes;
+
+	/**
+	 * The arc from the source to each student, indexed by student
+	 */
+	int [] sourceArcs;
+
+	/**
+	 * The arc from each supervisor to its topic area, -1 if the topic area was not recognised
+	 */
+	final int [] topicArcs;
+
+	/**
+	 * The arc from each supervisor nat_sci node to its supervisor
+	 */
+	final int [] natSciArcs;
+
+	/**
+	 * The arc from each topic area to the sink
+	 */
+	final int [] sinkArcs;
+
+	/**
+	 * The arcs currently leaving each student, indexed by student
+	 */
+	int [][] studentArcs;
+
+	/**
+	 * The arc for each choice of each student, indexed by student then choice, -1 if the choice has no arc
+	 */
+	int [][] choiceArcs;
+
+	/**
+	 * Creates an allocation graph with the node layout given, arcs are added by {@link #build}
+	 * @param students - The students being matched
+	 * @param supervisors - The supervisors being matched to
+	 * @param nodeNames - The name of each node
+	 * @param nodeNamesMap - The node of each name
+	 * @param topicAreaCount - The number of topic areas
+	 * @param percentage - The percentage to cap the topic areas at
+	 */
+	private AllocationGraph(Students students, Supervisors supervisors, ArrayList<String> nodeNames, HashMap<String,Integer> nodeNamesMap, int topicAreaCount, int percentage) {
+		this.students 		= students;
+		this.supervisors 	= supervisors;
+		this.nodeNames 		= nodeNames;
+		this.nodeNamesMap 	= nodeNamesMap;
+		this.percentage 	= percentage;
+		this.studentCount 	= students.size();
+		this.activeStudents = students.size();
+		this.supervisorStartIndex 		= 1 + students.size();
+		this.supervisorNatSciStartIndex = supervisorStartIndex + supervisors.size();
+		this.topicAreaStartIndex 		= supervisorNatSciStartIndex + supervisors.size();
+		this.sinkNode 					= nodeNames.size()-1;
+		this.graph 			= new ResidualGraph(nodeNames.size(), students.size() * (students.getNumOfPreferenceChoice() + 1) + supervisors.size() * 2 + topicAreaCount);
+		this.studentNodes 	= new int[students.size()];
+		this.sourceArcs 	= new int[students.size()];
+		this.topicArcs 		= new int[supervisors.size()];
+		this.natSciArcs 	= new int[supervisors.size()];
+		this.sinkArcs 		= new int[topicAreaCount];
+		this.studentArcs 	= new int[students.size()][];
+		this.choiceArcs 	= new int[students.size()][];
+	}
+
+	/**
+	 * Builds the flow network for the given students and supervisors
+	 * @param students - The student object that holds the student to match
+	 * @param supervisors - The supervisor object that holds the supervisors to match student to
+	 * @param percentage - The percentage to cap the topic areas at
+	 * @param warnings A non null ArrayList of string. warnings will be added to this list
+	 * @return The allocation graph
+	 * @throws UnexpectedException Thrown if two nodes have the same name or an arc can't be added
+	 * @throws StudentNotFoundException Thrown if a student can't be found
+	 * @throws SupervisorNotFoundException Thrown if a supervisor can't be found
+	 * @throws IOException Thrown if the config can't be read
+	 * @throws JSONException Thrown if the config can't be read
+	 * @throws CustomValidationException Thrown if the config is not valid
+	 * @throws InvalidTypeException Thrown if the config is not valid
+	 * @throws ConfigNotValidException Thrown if the config is not valid
+	 */
+	static AllocationGraph build(Students students, Supervisors supervisors, int percentage, ArrayList<String> warnings) throws UnexpectedException, StudentNotFoundException, SupervisorNotFoundException, IOException, JSONException, CustomValidationException, InvalidTypeException, ConfigNotValidException {
+		//Check that all student chose valid supervisors
+
+		for (int i=0;i<students.size();i++) {
+			for (int j=0;j<students.getNumOfPreferenceChoice();j++) {
+				try {
+					supervisors.getIndex(students.getChoice(i, j));
+				}catch (SupervisorNotFoundException e) {
+					warnings.add("Student <" + students.getName(i) + "> chose a non existant supervisor <" + students.getChoice(i, j) + ">");
+				}
+			}
+		}
+
+		String [] TOPIC_AREAS = Config.getConfig().getStrListValue(Config.MATCHING_TOPIC_AREAS);
+		logger.info("Narrow run stated with capped percentage of "+percentage);
+		// Nodes = source + student + supervisors + categories + sinks
+
+		//set up list of nodes
+		ArrayList<String> nodeNames 			= new ArrayList<String>();
+		HashMap<String,Integer>  nodeNamesMap 	= new HashMap<String,Integer>();
+
+		// ** Construct node name list
+		logger.info("Construct node name list");
+		nodeNames.add("source"); //source node is number 1
+
+		logger.info("Adding students to node name list");
+		for (int i =0;i<students.size();i++) {
+			logger.info("Adding <"+students.getUsername(i)+'>');
+			nodeNames.add(students.getUsername(i));
+		}
+
+		logger.info("Adding supervisros to node name list");
+		for (int i =0;i<supervisors.size();i++) {
+			logger.info("Adding <"+supervisors.getSupervisorName(i) +'>');
+			nodeNames.add(supervisors.getSupervisorName(i));
+		}
+
+		logger.info("Adding all supervisors again as natural science supervisors to node name list");
+		for (int i =0;i<supervisors.size();i++) {
+			logger.info("Adding <"+supervisors.getSupervisorName(i)+" nat_sci" +'>');
+			nodeNames.add(supervisors.getSupervisorName(i)+" nat_sci");
+		}
+
+		logger.info("Adding topic areas to node name list");
+		for (int i=0;i<TOPIC_AREAS.length;i++) {
+			logger.info("Adding <"+TOPIC_AREAS[i] +'>');
+			nodeNames.add(TOPIC_AREAS[i]);
+		}
+
+		nodeNames.add("sink");
+		logger.info("Adding sink");
+
+
+		// ** Creating node map
+		for (int i=0;i<nodeNames.size();i++) {
+			if (nodeNamesMap.get(nodeNames.get(i)) == null) {
+				nodeNamesMap.put(nodeNames.get(i), i);
+			}else {
+				logger.severe("Collision in node creation");
+				throw new UnexpectedException("Internal Error: Collision in node creation map");
+			}
+		}
+
+
+		// ** Creating the flow network
+		AllocationGraph network = new AllocationGraph(students, supervisors, nodeNames, nodeNamesMap, TOPIC_AREAS.length, percentage);
+		ResidualGraph graph = network.graph;
+
+		logger.info("Setting source to student capacities to 1");
+		//set capacities from source to student nodes to 1
+		for (int i=0;i<students.size();i++) {
+			network.studentNodes[i] = 1 + i;
+			network.sourceArcs[i] = graph.addArc(0, network.studentNodes[i], 1, 0);
+		}
+
+
+		logger.info("Creating student to supervisor arcs...");
+		for (int i=0;i<students.size();i++) {
+			network.addStudentArcs(i, new int[0]);
+		}
+
+		//** add capacities from supervisor nat sci node to master supervisor node
+		logger.info("Linking supervisor nat sci notes to master nodes...");
+		for (int i=0;i<supervisors.size();i++) {
+			String slaveNodeName = nodeNames.get(network.supervisorNatSciStartIndex + i);
+			String masterNodeName = slaveNodeName.replace(" nat_sci", "").trim();
+			int index = supervisors.getIndex(masterNodeName);
+
+			int masterNode = nodeNamesMap.get(masterNodeName);
+
+			if (masterNode == -1) {
+				logger.severe("Failed to find master node for <"+masterNodeName+'>');
+				throw new UnexpectedException("Failed to find master node for <"+masterNodeName+'>');
+			}
+
+			network.natSciArcs[i] = graph.addArc(network.supervisorNatSciStartIndex + i, masterNode, Math.max(0, supervisors.getSupervisorCapcity(index)-1), 0);
+			logger.info("setting capacity from "+slaveNodeName + " to "+masterNodeName + " at " +(supervisors.getSupervisorCapcity(index)-1));
+		}
+
+
+		logger.info("Connecting supervisor to topic areas");
+		for (int i=0;i<supervisors.size();i++) {
+			String topicArea = supervisors.getSupervisorTopic(i).toLowerCase();
+
+			//check the topic area is valid
+			boolean valid = false;
+			for (int j=0;j<TOPIC_AREAS.length;j++) {
+				if (topicArea.equals(TOPIC_AREAS[j])) {
+					valid = true;
+					break;
+				}
+			}
+
+			if (valid) {
+				int topicAreaNodeNum = nodeNamesMap.get(topicArea);
+
+				//set capacity equal to lab capacity
+				network.topicArcs[i] = graph.addArc(network.supervisorStartIndex+i, topicAreaNodeNum, Math.max(0, supervisors.getSupervisorCapcity(i)), 0);
+			}else {
+				network.topicArcs[i] = -1;
+				warnings.add("Topic Area <"+topicArea+"> is not recognised for supervisor <"+ supervisors.getSupervisorName(i) +'>');
+			}
+		}
+
+
+		// ** Setting capacities from topic areas to sink
+
+		//calculate the capacity for each topic area
+		int capacity = getTopicAreaCapacity(students.size(), percentage);
+		logger.info("Capacity of topic area is <" + capacity+'>');
+
+		//add to graph
+		for (int i=0;i<TOPIC_AREAS.length;i++) {
+			network.sinkArcs[i] = graph.addArc(network.topicAreaStartIndex + i, network.sinkNode, capacity, 0);
+		}
+		return network;
+	}
+
+	/**
+	 * Gets the capacity from each topic area to the sink for the given capped percentage
+	 * @param studentCount - The number of students
+	 * @param percentage - The percentage to cap the topic areas at
+	 * @return The capacity of each topic area
+	 */
+	static int getTopicAreaCapacity(int studentCount, int percentage) {
+		double capacity = ((double)studentCount/100) * percentage;
+		return Math.max(0, (int) Math.floor(capacity));
+	}
+
+	/**
+	 * Caps the topic areas at the given percentage of the students that have not withdrawn
+	 * @param percentage - The percentage to cap the topic areas at
+	 */
+	void setPercentage(int percentage) {
+		this.percentage = percentage;
+		int capacity = getTopicAreaCapacity(activeStudents, percentage);
+		for (int arc : sinkArcs) {
+			graph.setCapacity(arc, capacity);
+		}
+	}
+
+	/**
+	 * Gets the most students that could be matched with the topic areas capped at the given
+	 * percentage, ignoring their preferences. Only a max flow is found, over a copy of the graph,
+	 * so this is much cheaper than a full allocation
+	 * @param percentage - The percentage to cap the topic areas at
+	 * @return The size of the largest matching
+	 */
+	int getMaxAllocation(int percentage) {
+		ResidualGraph copy = graph.copy();
+		int capacity = getTopicAreaCapacity(activeStudents, percentage);
+		for (int arc : sinkArcs) {
+			copy.setCapacity(arc, capacity);
+		}
+		return MaxFlow.getMaxFlow(copy, 0, sinkNode);
+	}
+
+	/**
+	 * Adds a student that was added to the end of the student data after the graph was built.
+	 * The student takes a new node after the last node, with an arc from the source and arcs to every
+	 * supervisor they may be matched with
+	 * @return The arcs added
+	 * @throws UnexpectedException Thrown if the student is not the next student or their username is already a node
+	 * @throws StudentNotFoundException Thrown if the student can't be found
+	 * @throws SupervisorNotFoundException Thrown if a supervisor can't be found
+	 * @throws ConfigNotValidException Thrown if the config is not valid
+	 */
+	int [] addStudent() throws UnexpectedException, StudentNotFoundException, SupervisorNotFoundException, ConfigNotValidException {
+		int student = studentCount;
+		String username = students.getUsername(student);
+		if (nodeNamesMap.get(username) != null) {
+			logger.severe("Collision in node creation");
+			throw new UnexpectedException("Internal Error: Collision in node creation map for <" + username + '>');
+		}
+
+		int node = graph.addNode();
+		nodeNames.add(username);
+		nodeNamesMap.put(username, node);
+
+		studentCount++;
+		activeStudents++;
+		studentNodes 	= Arrays.copyOf(studentNodes, studentCount);
+		sourceArcs 		= Arrays.copyOf(sourceArcs, studentCount);
+		studentArcs 	= Arrays.copyOf(studentArcs, studentCount);
+		choiceArcs 		= Arrays.copyOf(choiceArcs, studentCount);
+		studentNodes[student] = node;
+		sourceArcs[student] = graph.addArc(0, node, 1, 0);
+
+		int [] arcs = addStudentArcs(student, new int[0]);
+		int [] added = new int[arcs.length + 1];
+		added[0] = sourceArcs[student];
+		System.arraycopy(arcs, 0, added, 1, arcs.length);
+		return added;
+	}
+
+	/**
+	 * Adds the arcs from the given student to every supervisor they may be matched with, as the student
+	 * data currently stands, and records them as the students arcs and choice arcs. The given slots,
+	 * arcs from the student that are no longer needed, are reused in order before any arc is added
+	 * @param student - The index of the student
+	 * @param slots - Forward arcs from the student with no flow on them to reuse
+	 * @return The students arcs, the slots reused first then the arcs added
+	 * @throws UnexpectedException Thrown if an arc can't be added
+	 * @throws StudentNotFoundException Thrown if the student can't be found
+	 * @throws SupervisorNotFoundException Thrown if a supervisor can't be found
+	 * @throws ConfigNotValidException Thrown if the config is not valid
+	 */
+	int [] addStudentArcs(int student, int [] slots) throws UnexpectedException, StudentNotFoundException, SupervisorNotFoundException, ConfigNotValidException {
+		String username = students.getUsername(student);
+		int [] arcs = new int[supervisors.size()];
+		int count = 0;
+
+		choiceArcs[student] = new int[students.getNumOfPreferenceChoice()];
+		Arrays.fill(choiceArcs[student], -1);
+
+		for (int j=0;j<supervisors.size();j++) {
+			String supervisor = supervisors.getSupervisorName(j);
+
+			int flow = MatchingUtils.getFlowBetween(students, supervisors, username, supervisor);
+
+			if (flow > 0) {
+				int cost = MatchingUtils.getCostBetween(students, supervisors, username, supervisor);
+
+				String supervisorNodeName = supervisor;
+				if (students.isNatSci(username)) {
+					supervisorNodeName += " nat_sci";
+				}
+
+				logger.info("Setting <"+username+"> to match with "+supervisorNodeName);
+				int arc;
+				try {
+					if (count < slots.length) {
+						arc = slots[count];
+						graph.replaceArc(arc, nodeNamesMap.get(supervisorNodeName), flow, cost);
+					}else {
+						arc = graph.addArc(studentNodes[student], nodeNamesMap.get(supervisorNodeName), flow, cost);
+					}
+				}catch (IllegalArgumentException e) {
+					logger.severe("IllegalArgumentException when trying to add arc between <" +
+							username + "> and <" + supervisorNodeName +'>');
+					throw new UnexpectedException("Internal error: failed to find arc between <" +
+							username + "> and <" + supervisorNodeName +'>');
+				}
+				arcs[count++] = arc;
+
+				for (int k=0;k<students.getNumOfPreferenceChoice();k++) {
+					if (students.getChoice(student, k).equalsIgnoreCase(supervisor)) {
+						choiceArcs[student][k] = arc;
+						break;
+					}
+				}
+			}
+		}
+		studentArcs[student] = Arrays.copyOf(arcs, count);
+		return studentArcs[student];
+	}
+
+	/**
+	 * Removes arcs from the graph, keeping the others in the same order, and renumbers the arcs
+	 * recorded for the students, supervisors and topic areas
+	 * @param removed - true for each forward arc to remove, indexed by arc / 2. Only student arcs may be removed
+	 * @return The new index of each old arc, -1 for an arc removed
+	 */
+	int [] removeArcs(boolean [] removed) {
+		int [] map = graph.removeArcs(removed);
+		for (int i=0;i<studentCount;i++) {
+			sourceArcs[i] = map[sourceArcs[i]];
+			int count = 0;
+			for (int arc : studentArcs[i]) {
+				if (map[arc] != -1) {
+					studentArcs[i][count++] = map[arc];
+				}
+			}
+			studentArcs[i] = Arrays.copyOf(studentArcs[i], count);
+			for (int j=0;j<choiceArcs[i].length;j++) {
+				if (choiceArcs[i][j] != -1) {
+					choiceArcs[i][j] = map[choiceArcs[i][j]];
+				}
+			}
+		}
+		for (int i=0;i<topicArcs.length;i++) {
+			if (topicArcs[i] != -1) {
+				topicArcs[i] = map[topicArcs[i]];
+			}
+		}
+		for (int i=0;i<natSciArcs.length;i++) {
+			natSciArcs[i] = map[natSciArcs[i]];
+		}
+		for (int i=0;i<sinkArcs.length;i++) {
+			sinkArcs[i] = map[sinkArcs[i]];
+		}
+		return map;
+	}
+
+	/**
+	 * Gets the arc of every students choices in preference order, all first choices then all
+	 * second choices and so on, for a {@link GreedyFlow} warm start
+	 * @return The choice arcs, -1 for a choice with no arc
+	 */
+	int [] getChoiceOrder() {
+		int choices = students.getNumOfPreferenceChoice();
+		int [] order = new int[studentCount * choices];
+		for (int j=0;j<choices;j++) {
+			for (int i=0;i<studentCount;i++) {
+				order[j * studentCount + i] = choiceArcs[i][j];
+			}
+		}
+		return order;
+	}
+
+	/**
+	 * Gets the level of every arc for a {@link LexicographicMinCostFlow} solve that puts as many
+	 * students as possible on their first choice, then their second and so on. An arc for a
+	 * student's choice is on the level of its rank, counting from 0, any other arc from a student,
+	 * a match on keywords or topic area, is on the level after the last choice and every other arc
+	 * is on level 0
+	 * @return The level of each forward arc, indexed by arc / 2
+	 */
+	int [] getArcLevels() {
+		int choices = students.getNumOfPreferenceChoice();
+		int [] levels = new int[graph.getArcCount() / 2];
+		for (int i=0;i<studentCount;i++) {
+			for (int arc : studentArcs[i]) {
+				levels[arc >> 1] = choices;
+			}
+			for (int j=choices-1;j>=0;j--) {
+				if (choiceArcs[i][j] != -1) {
+					levels[choiceArcs[i][j] >> 1] = j;
+				}
+			}
+		}
+		return levels;
+	}
+
+	/**
+	 * Returns true if the given node is a student node
+	 * @param node - The node index
+	 * @return true if the node is a student
+	 */
+	boolean isStudentNode(int node) {
+		return (node > 0 && node < supervisorStartIndex) || node > sinkNode;
+	}
+
+	/**
+	 * Reads the matching out of a solved flow
+	 * @param result - The flow found over this graph, or over a copy with arcs only ever added
+	 * @return The matching found as a hashmap of student usernames to supervisor names,
+	 * a student who was not matched will not have a value in the hashmap
+	 * @throws UnexpectedException Thrown if a student is matched twice
+	 */
+	HashMap<String,String> getMatch(FlowResult result) throws UnexpectedException {
+		HashMap<String,String> match = new HashMap<String,String>();
+
+		//find the edge each student node got matched too
+		for (int arc = 0; arc < 2 * result.getArcCount(); arc += 2) {
+			int tail = result.getTail(arc);
+			if (!isStudentNode(tail) || result.getFlow(arc) != 1) {
+				continue;
+			}
+			String student = nodeNames.get(tail);
+			if (match.containsKey(student)) { // if 2 matches found log error
+				logger.severe("Student "+ student+" matched twice");
+				throw new UnexpectedException("Error, student "+ student+" matched twice!");
+			}
+			match.put(student, nodeNames.get(result.getHead(arc)).replace("nat_sci", "").trim());
+		}
+
+		//log and return matching data
+		logger.info("Match created: "+match);
+
+		return match;
+	}
+
+	/**
+	 * Finds why students were left unallocated from the minimum cut of a solved flow, with no
+	 * further solves. The nodes still reachable from the source through arcs with room left are
+	 * the source side of the cut, the arcs leaving them are full and split into groups of students
+	 * competing for the same full places, each group more students than places
+	 * @param result - The maximum flow found over this graph, with the capacities of this graph
+	 * @return The blocking groups, ordered by their first unallocated student
+	 */
+	ArrayList<BlockingGroup> getBlockingGroups(FlowResult result) {
+		int n = graph.getNodeCount();
+		int [] residual = new int[graph.getArcCount()];
+		for (int arc = 0; arc < residual.length; arc += 2) {
+			residual[arc] = graph.getCapacity(arc) - result.getFlow(arc);
+			residual[arc + 1] = result.getFlow(arc);
+		}
+
+		//the source side of the cut
+		boolean [] reached = new boolean[n];
+		int [] queue = new int[n];
+		int head = 0;
+		int tail = 0;
+		queue[tail++] = 0;
+		reached[0] = true;
+		while (head < tail) {
+			int node = queue[head++];
+			for (int i = graph.getFirstArc(node); i < graph.getEndArc(node); i++) {
+				int arc = graph.getAdjacentArc(i);
+				int next = graph.getHead(arc);
+				if (residual[arc] > 0 && !reached[next]) {
+					reached[next] = true;
+					queue[tail++] = next;
+				}
+			}
+		}
+
+		//join the nodes on the source side, apart from the source, that flow can move between
+		int [] parent = new int[n];
+		for (int i=0;i<n;i++) {
+			parent[i] = i;
+		}
+		for (int arc = 0; arc < residual.length; arc += 2) {
+			int from = graph.getTail(arc);
+			int to = graph.getHead(arc);
+			if (from != 0 && reached[from] && reached[to] && (residual[arc] > 0 || residual[arc + 1] > 0)) {
+				parent[find(parent, from)] = find(parent, to);
+			}
+		}
+
+		//a group for each set of joined nodes holding an unallocated student
+		int [] groupOf = new int[n];
+		Arrays.fill(groupOf, -1);
+		ArrayList<ArrayList<String>> unallocated = new ArrayList<ArrayList<String>>();
+		for (int i=0;i<studentCount;i++) {
+			if (residual[sourceArcs[i]] == 0) {
+				continue;
+			}
+			int root = find(parent, studentNodes[i]);
+			if (groupOf[root] == -1) {
+				groupOf[root] = unallocated.size();
+				unallocated.add(new ArrayList<String>());
+			}
+			unallocated.get(groupOf[root]).add(nodeNames.get(studentNodes[i]));
+		}
+
+		int [] studentsIn = new int[unallocated.size()];
+		int [] places = new int[unallocated.size()];
+		ArrayList<ArrayList<String>> full = new ArrayList<ArrayList<String>>();
+		ArrayList<ArrayList<String>> natSciFull = new ArrayList<ArrayList<String>>();
+		ArrayList<ArrayList<String>> capped = new ArrayList<ArrayList<String>>();
+		for (int i=0;i<unallocated.size();i++) {
+			full.add(new ArrayList<String>());
+			natSciFull.add(new ArrayList<String>());
+			capped.add(new ArrayList<String>());
+		}
+		for (int i=0;i<studentCount;i++) {
+			int group = reached[studentNodes[i]] ? groupOf[find(parent, studentNodes[i])] : -1;
+			if (group != -1) {
+				studentsIn[group]++;
+			}
+		}
+
+		//the full arcs leaving each group
+		for (int arc = 0; arc < residual.length; arc += 2) {
+			int from = graph.getTail(arc);
+			int to = graph.getHead(arc);
+			if (from == 0 || isStudentNode(from) || !reached[from] || reached[to] || groupOf[find(parent, from)] == -1) {
+				continue;
+			}
+			int group = groupOf[find(parent, from)];
+			places[group] += graph.getCapacity(arc);
+			if (from >= topicAreaStartIndex) {
+				capped.get(group).add(nodeNames.get(from));
+			}else if (from >= supervisorNatSciStartIndex) {
+				natSciFull.get(group).add(nodeNames.get(supervisorStartIndex + from - supervisorNatSciStartIndex));
+			}else if (from >= supervisorStartIndex) {
+				full.get(group).add(nodeNames.get(from));
+			}
+		}
+
+		ArrayList<BlockingGroup> groups = new ArrayList<BlockingGroup>();
+		for (int i=0;i<unallocated.size();i++) {
+			groups.add(new BlockingGroup(unallocated.get(i), studentsIn[i], places[i], full.get(i), natSciFull.get(i), capped.get(i)));
+		}
+		return groups;
+	}
+
+	/**
+	 * Finds the representative of the set holding the given node, halving the path to it
+	 * @param parent - The parent of each node, a node that is its own parent represents its set
+	 * @param node - The node to find the set of
+	 * @return The representative node
+	 */
+	private static int find(int [] parent, int node) {
+		while (parent[node] != node) {
+			parent[node] = parent[parent[node]];
+			node = parent[node];
+		}
+		return node;
+	}
+}
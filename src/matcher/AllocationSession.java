@@ -0,0 +1,747 @@
+package matcher;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.logging.Logger;
+
+import org.json.JSONException;
+
+import Exceptions.ConfigNotValidException;
+import Exceptions.CustomValidationException;
+import Exceptions.InvalidTypeException;
+import dataManager.Students;
+import dataManager.Supervisors;
+import exceptions.StudentNotFoundException;
+import exceptions.SupervisorNotFoundException;
+import exceptions.UnexpectedException;
+import utils.GetStackTrace;
+
+/**
+ * An allocation that is kept, together with the solver that found it, so corrections to the
+ * input can be applied without running {@link Matcher#allocate} again.
+ * <br>
+ * Each edit changes a few arcs of the solvers network. Flow on an arc that is removed or made
+ * smaller is taken off, the next solve cancels any negative cycles the edit made, starting from the
+ * potentials of the last solve, and then augments only the flow taken off. The allocation found is
+ * always a maximum allocation of minimum cost for the data as it currently stands, but where there
+ * are ties it may differ from the one a full run would find.
+ * <br>
+ * Students can be pinned to a supervisor or forbidden from one. A forbidden match closes the arc
+ * from the student. A pin takes the student out of the flow and reserves a place on the supervisors
+ * path to the sink, the usual way of forcing a unit of flow over a lower bound, so the other students
+ * are re-optimised around it. The network kept holds the capacities of the data, the solver holds
+ * those capacities less what the pins reserve and the closed arcs.
+ *
+ * @author Robert Cobb <br>
+ * Bath University<br>
+ * Email: rbc31@bath.ac.uk
+ */
+public class AllocationSession {
+
+	/**
+	 * The logger for this class
+	 */
+	private static Logger logger = Logger.getLogger(AllocationSession.class.getName());
+
+	/**
+	 * The network as built, with no flow on it. Arcs are added to it and to the solver together
+	 * so arc indexes agree between them
+	 */
+	private final AllocationGraph network;
+
+	/**
+	 * The solver holding the current flow and potentials
+	 */
+	private final MinCostMaxFlow solver;
+
+	/**
+	 * The current matching
+	 */
+	private HashMap<String,String> match;
+
+	/**
+	 * The flow found by the last solve
+	 */
+	private FlowResult result;
+
+	/**
+	 * The supervisor each pinned student is pinned to
+	 */
+	private final HashMap<String,String> pins = new HashMap<String,String>();
+
+	/**
+	 * The arcs each pinned student reserves a place on
+	 */
+	private final HashMap<String,int[]> pinArcs = new HashMap<String,int[]>();
+
+	/**
+	 * The supervisors each student is forbidden from
+	 */
+	private final HashMap<String,HashSet<String>> forbidden = new HashMap<String,HashSet<String>>();
+
+	/**
+	 * The number of places reserved on each arc by pins
+	 */
+	private final HashMap<Integer,Integer> reserved = new HashMap<Integer,Integer>();
+
+	/**
+	 * Arcs given no capacity in the solver, the source arcs of pinned students and forbidden matches
+	 */
+	private final HashSet<Integer> closed = new HashSet<Integer>();
+
+	/**
+	 * Arcs no longer needed, left over when a student is updated with fewer arcs and the arcs of
+	 * withdrawn students. They carry no flow and are removed once they are {@link #DEAD_ARC_SHARE} of the arcs
+	 */
+	private final HashSet<Integer> dead = new HashSet<Integer>();
+
+	/**
+	 * The share of the arcs that may be dead before they are removed from the network and solver
+	 */
+	private static final double DEAD_ARC_SHARE = 0.25;
+
+	/**
+	 * Matches the given students to the given supervisors and keeps the solver state
+	 * for later edits, using the heap based search
+	 * @param students - The student object that holds the student to match,
+	 * edits to it are picked up by the update methods
+	 * @param supervisors - The supervisor object that holds the supervisors to match student to
+	 * @param percentage - The percentage to cap the topic areas at
+	 * @param warnings A non null ArrayList of string. warnings will be added to this list and
+	 * the caller should monitor this variable for warnings
+	 * @throws UnexpectedException Thrown if an unexpected exception occurred
+	 * @throws ConfigNotValidException Thrown if the config is not valid
+	 */
+	public AllocationSession(Students students, Supervisors supervisors, int percentage, ArrayList<String> warnings) throws UnexpectedException, ConfigNotValidException {
+		this(students, supervisors, percentage, warnings, ShortestPathMode.BINARY_HEAP);
+	}
+
+	/**
+	 * Matches the given students to the given supervisors and keeps the solver state
+	 * for later edits
+	 * @param students - The student object that holds the student to match,
+	 * edits to it are picked up by the update methods
+	 * @param supervisors - The supervisor object that holds the supervisors to match student to
+	 * @param percentage - The percentage to cap the topic areas at
+	 * @param warnings A non null ArrayList of string. warnings will be added to this list and
+	 * the caller should monitor this variable for warnings
+	 * @param mode - The shortest path search used by the solver
+	 * @throws UnexpectedException Thrown if an unexpected exception occurred
+	 * @throws ConfigNotValidException Thrown if the config is not valid
+	 */
+	public AllocationSession(Students students, Supervisors supervisors, int percentage, ArrayList<String> warnings, ShortestPathMode mode) throws UnexpectedException, ConfigNotValidException {
+		try {
+			this.network = AllocationGraph.build(students, supervisors, percentage, warnings);
+		}catch (StudentNotFoundException e) {
+			logger.severe("Encountered an unexpected StudentNotFoundException when building the allocation graph");
+			logger.severe("Stack trace: " + GetStackTrace.getStackTrace(e));
+			throw new UnexpectedException(e);
+		} catch (IOException | JSONException | CustomValidationException | InvalidTypeException | ConfigNotValidException e) {
+			logger.severe("Encountered an exception when building the allocation graph");
+			logger.severe("Stack trace: " + GetStackTrace.getStackTrace(e));
+			throw new ConfigNotValidException(e);
+		} catch (SupervisorNotFoundException e) {
+			logger.severe("Encountered an unexpected SupervisorNotFoundException when building the allocation graph");
+			logger.severe("Stack trace: " + GetStackTrace.getStackTrace(e));
+			throw new UnexpectedException(e);
+		}
+
+		ResidualGraph start = network.graph.copy();
+		GreedyFlow.push(start, 0, network.sinkNode, network.getChoiceOrder());
+		this.solver = new MinCostMaxFlow(start, mode);
+		resolve("initial allocation");
+	}
+
+	/**
+	 * Gets the current matching
+	 * @return The matching as a hashmap of student usernames to supervisor names,
+	 * a student who was not matched will not have a value in the hashmap
+	 */
+	public HashMap<String,String> getMatch() {
+		return new HashMap<String,String>(match);
+	}
+
+	/**
+	 * Re-matches after the choices or course of one student have been changed in the student
+	 * object, for example with {@link Students#setChoice(int, int, String)}. The arcs from the student
+	 * are replaced, reusing the slots of the old arcs, and only the flow through the student is placed
+	 * again. Forbidden matches stay forbidden and a pin on the student is kept as it was made
+	 * @param username - The username of the student that changed
+	 * @return The new matching as a hashmap of student usernames to supervisor names
+	 * @throws StudentNotFoundException Thrown if the student does not exist or has not been added to the session
+	 * @throws UnexpectedException Thrown if an unexpected exception occurred
+	 * @throws ConfigNotValidException Thrown if the config is not valid
+	 */
+	public HashMap<String,String> updateStudent(String username) throws StudentNotFoundException, UnexpectedException, ConfigNotValidException {
+		int student = getStudent(username);
+
+		int [] old = network.studentArcs[student];
+		for (int arc : old) {
+			closed.remove(arc);
+			dead.remove(arc);
+		}
+		try {
+			int [] arcs = network.addStudentArcs(student, old);
+			int reused = Math.min(old.length, arcs.length);
+			ResidualGraph graph = network.graph;
+			for (int j=0;j<reused;j++) {
+				solver.replaceArc(arcs[j], graph.getHead(arcs[j]), graph.getCapacity(arcs[j]), graph.getCost(arcs[j]), 0, network.sinkNode);
+			}
+			addToSolver(Arrays.copyOfRange(arcs, reused, arcs.length));
+			for (int j=reused;j<old.length;j++) {
+				graph.setCapacity(old[j], 0);
+				applyCapacity(old[j]);
+				dead.add(old[j]);
+			}
+			if (graph.getCapacity(network.sourceArcs[student]) == 0) {
+				//a withdrawn student's arcs are never used
+				for (int arc : arcs) {
+					dead.add(arc);
+				}
+			}
+			closeForbiddenArcs(student);
+		}catch (SupervisorNotFoundException e) {
+			logger.severe("Encountered an unexpected SupervisorNotFoundException when updating <" + username + '>');
+			logger.severe("Stack trace: " + GetStackTrace.getStackTrace(e));
+			throw new UnexpectedException(e);
+		}
+		return resolve("update of <" + username + '>');
+	}
+
+	/**
+	 * Matches a student that joined after the allocation was made. The student must first be added
+	 * to the end of the student object with {@link Students#addStudent(ArrayList)}. The student is
+	 * placed by one shortest augmenting path, after the topic area caps are raised for the extra student
+	 * @param username - The username of the new student
+	 * @return The new matching as a hashmap of student usernames to supervisor names
+	 * @throws StudentNotFoundException Thrown if the student does not exist
+	 * @throws IllegalArgumentException Thrown if the student is not the next student added to the student object
+	 * @throws UnexpectedException Thrown if an unexpected exception occurred
+	 * @throws ConfigNotValidException Thrown if the config is not valid
+	 */
+	public HashMap<String,String> addStudent(String username) throws StudentNotFoundException, IllegalArgumentException, UnexpectedException, ConfigNotValidException {
+		int student = network.students.getIndex(username);
+		if (student != network.studentCount) {
+			throw new IllegalArgumentException("Student <" + username + "> is not the next student added to the student data");
+		}
+
+		int node = solver.addNode();
+		try {
+			addToSolver(network.addStudent());
+			closeForbiddenArcs(student);
+		}catch (SupervisorNotFoundException e) {
+			logger.severe("Encountered an unexpected SupervisorNotFoundException when adding <" + username + '>');
+			logger.severe("Stack trace: " + GetStackTrace.getStackTrace(e));
+			throw new UnexpectedException(e);
+		}
+		if (node != network.studentNodes[student]) {
+			logger.severe("Solver node <" + node + "> does not match network node <" + network.studentNodes[student] + '>');
+			throw new UnexpectedException("Internal error: solver network out of step with the allocation graph");
+		}
+		updateTopicAreaCaps();
+		return resolve("addition of <" + username + '>');
+	}
+
+	/**
+	 * Withdraws a student from the allocation. The student stays in the student object but is never
+	 * matched again. Their place is taken off by cancelling the flow through them, the topic area caps
+	 * are lowered for one less student and the freed place is offered to the other students
+	 * A pin on the student is removed
+	 * @param username - The username of the student withdrawing
+	 * @return The new matching as a hashmap of student usernames to supervisor names
+	 * @throws StudentNotFoundException Thrown if the student does not exist
+	 * @throws UnexpectedException Thrown if an unexpected exception occurred
+	 */
+	public HashMap<String,String> removeStudent(String username) throws StudentNotFoundException, UnexpectedException {
+		int student = getStudent(username);
+		int arc = network.sourceArcs[student];
+		if (network.graph.getCapacity(arc) == 0) {
+			logger.warning("Student <" + username + "> has already withdrawn");
+			return getMatch();
+		}
+
+		releasePin(username);
+		network.graph.setCapacity(arc, 0);
+		applyCapacity(arc);
+		for (int studentArc : network.studentArcs[student]) {
+			dead.add(studentArc);
+		}
+		network.activeStudents--;
+		updateTopicAreaCaps();
+		return resolve("withdrawal of <" + username + '>');
+	}
+
+	/**
+	 * Re-matches after the capacity of a supervisor has been changed in the supervisor object with
+	 * {@link Supervisors#setSupervisorCapacity(int, int)}. The supervisor to topic area arc and the
+	 * nat_sci arc are set to the new capacity. When the capacity drops, the students over it are taken
+	 * off and re-routed along the cheapest paths left, when it rises the extra places are offered to
+	 * the students that would gain from them
+	 * @param supervisor - The name of the supervisor that changed
+	 * @return The new matching as a hashmap of student usernames to supervisor names
+	 * @throws SupervisorNotFoundException Thrown if the supervisor does not exist
+	 * @throws UnexpectedException Thrown if an unexpected exception occurred
+	 */
+	public HashMap<String,String> updateSupervisorCapacity(String supervisor) throws SupervisorNotFoundException, UnexpectedException {
+		int index = network.supervisors.getIndex(supervisor);
+		int capacity = network.supervisors.getSupervisorCapcity(index);
+
+		int natSciArc = network.natSciArcs[index];
+		network.graph.setCapacity(natSciArc, Math.max(0, capacity - 1));
+		applyCapacity(natSciArc);
+
+		int topicArc = network.topicArcs[index];
+		if (topicArc != -1) {
+			network.graph.setCapacity(topicArc, Math.max(0, capacity));
+			applyCapacity(topicArc);
+		}
+		return resolve("capacity of <" + supervisor + "> changed to " + capacity);
+	}
+
+	/**
+	 * Re-matches with the topic areas capped at a new percentage. Only the topic area to sink arcs
+	 * change, so raising the cap continues from the current flow and only places the students the
+	 * extra room lets in, and lowering it takes off only the students over the new cap
+	 * @param percentage - The percentage to cap the topic areas at
+	 * @return The new matching as a hashmap of student usernames to supervisor names
+	 * @throws UnexpectedException Thrown if an unexpected exception occurred
+	 */
+	public HashMap<String,String> setPercentage(int percentage) throws UnexpectedException {
+		network.percentage = percentage;
+		updateTopicAreaCaps();
+		return resolve("capped percentage changed to " + percentage);
+	}
+
+	/**
+	 * Gets the total cost of the current matching, pinned students are not included
+	 * @return The total cost of the flow found by the last solve
+	 */
+	public int getTotalCost() {
+		return result.getTotalCost();
+	}
+
+	/**
+	 * Gets the extra total cost of forcing each student onto each of the supervisors they chose,
+	 * read from the current allocation with no further solves. Pinned students are not moved and
+	 * forbidden matches are not possible
+	 * @return The sensitivity of every student that has not withdrawn
+	 * @throws IllegalStateException Thrown if the solver keeps no node potentials, as in
+	 * {@link ShortestPathMode#LINEAR_SCAN} mode
+	 * @throws UnexpectedException Thrown if a student in the graph can't be found
+	 */
+	public SensitivityReport getSensitivity() throws IllegalStateException, UnexpectedException {
+		int [] potentials = solver.getPotentials();
+		if (potentials == null) {
+			throw new IllegalStateException("The solver keeps no node potentials to find the sensitivity from");
+		}
+		try {
+			return new SensitivityAnalysis(network, solver.getGraph(), potentials).getReport(match, Runtime.getRuntime().availableProcessors());
+		}catch (StudentNotFoundException e) {
+			logger.severe("Encountered an unexpected StudentNotFoundException when finding the sensitivity");
+			logger.severe("Stack trace: " + GetStackTrace.getStackTrace(e));
+			throw new UnexpectedException(e);
+		}
+	}
+
+	/**
+	 * Gets other allocations that match as many students at the same total cost as the current
+	 * one, found from the current solve without solving again. Pins and forbidden matches hold in
+	 * every allocation
+	 * @param count - The most allocations to find
+	 * @return Up to count other allocations, those closest to the current allocation first,
+	 * each a hashmap of student usernames to supervisor names
+	 * @throws IllegalStateException Thrown if the solver keeps no node potentials, as in
+	 * {@link ShortestPathMode#LINEAR_SCAN} mode
+	 * @throws UnexpectedException Thrown if a student is matched twice
+	 */
+	public ArrayList<HashMap<String,String>> getAlternatives(int count) throws IllegalStateException, UnexpectedException {
+		int [] potentials = solver.getPotentials();
+		if (potentials == null) {
+			throw new IllegalStateException("The solver keeps no node potentials to find alternatives from");
+		}
+		ArrayList<HashMap<String,String>> alternatives = new AlternativeSearch(network, solver.getGraph(), potentials).getAlternatives(count);
+		for (HashMap<String,String> alternative : alternatives) {
+			alternative.putAll(pins);
+		}
+		return alternatives;
+	}
+
+	/**
+	 * Gets the number of students matched in each topic area, including pinned students
+	 * @return The number of students matched in each topic area, keyed by topic area, in the order of the config
+	 */
+	public LinkedHashMap<String,Integer> getTopicAreaCounts() {
+		LinkedHashMap<String,Integer> counts = new LinkedHashMap<String,Integer>();
+		for (int arc : network.sinkArcs) {
+			counts.put(network.nodeNames.get(network.graph.getTail(arc)), result.getFlow(arc) + getReserved(arc));
+		}
+		return counts;
+	}
+
+	/**
+	 * Pins a student to a supervisor, whether or not they chose them, and re-optimises the other
+	 * students around the pin. A pin already on the student is replaced
+	 * @param username - The username of the student to pin
+	 * @param supervisor - The name of the supervisor to pin them to
+	 * @return The new matching as a hashmap of student usernames to supervisor names
+	 * @throws StudentNotFoundException Thrown if the student does not exist or has withdrawn
+	 * @throws SupervisorNotFoundException Thrown if the supervisor does not exist
+	 * @throws IllegalArgumentException Thrown if the pin is forbidden or the supervisor has no place left,
+	 * taking the places of the other pins into account
+	 * @throws UnexpectedException Thrown if an unexpected exception occurred
+	 */
+	public HashMap<String,String> pin(String username, String supervisor) throws StudentNotFoundException, SupervisorNotFoundException, IllegalArgumentException, UnexpectedException {
+		int student = getActiveStudent(username);
+		String name = network.supervisors.getSupervisorName(network.supervisors.getIndex(supervisor));
+		if (isForbidden(username, name)) {
+			throw new IllegalArgumentException("Student <" + username + "> is forbidden from <" + name + '>');
+		}
+
+		//the supervisors nodes have one arc out each, so the path to the sink is fixed
+		int node = network.nodeNamesMap.get(network.students.isNatSci(student) ? name + " nat_sci" : name);
+		int [] path = new int[4];
+		int length = 0;
+		while (node != network.sinkNode) {
+			int next = -1;
+			for (int offset = network.graph.getFirstArc(node); offset < network.graph.getEndArc(node); offset++) {
+				int arc = network.graph.getAdjacentArc(offset);
+				if (network.graph.isForward(arc)) {
+					next = arc;
+					break;
+				}
+			}
+			if (next == -1) {
+				throw new IllegalArgumentException("Supervisor <" + name + "> has no path to a topic area");
+			}
+			path[length++] = next;
+			node = network.graph.getHead(next);
+		}
+
+		int [] previous = pinArcs.get(username);
+		for (int i = 0; i < length; i++) {
+			int room = network.graph.getCapacity(path[i]) - getReserved(path[i]);
+			if (previous != null && contains(previous, path[i])) {
+				//replacing a pin gives back its place
+				room++;
+			}
+			if (room < 1) {
+				throw new IllegalArgumentException("Supervisor <" + name + "> has no place left for <" + username + '>');
+			}
+		}
+
+		releasePin(username);
+		int [] arcs = Arrays.copyOf(path, length);
+		for (int arc : arcs) {
+			reserved.put(arc, getReserved(arc) + 1);
+			applyCapacity(arc);
+		}
+		pins.put(username, name);
+		pinArcs.put(username, arcs);
+		closed.add(network.sourceArcs[student]);
+		applyCapacity(network.sourceArcs[student]);
+		return resolve("pin of <" + username + "> to <" + name + '>');
+	}
+
+	/**
+	 * Removes the pin on a student, so they are matched as the data stands again
+	 * @param username - The username of the pinned student
+	 * @return The new matching as a hashmap of student usernames to supervisor names
+	 * @throws UnexpectedException Thrown if an unexpected exception occurred
+	 */
+	public HashMap<String,String> unpin(String username) throws UnexpectedException {
+		if (!releasePin(username)) {
+			return getMatch();
+		}
+		return resolve("unpin of <" + username + '>');
+	}
+
+	/**
+	 * Forbids a student from being matched to a supervisor
+	 * @param username - The username of the student
+	 * @param supervisor - The name of the supervisor
+	 * @return The new matching as a hashmap of student usernames to supervisor names
+	 * @throws StudentNotFoundException Thrown if the student does not exist
+	 * @throws SupervisorNotFoundException Thrown if the supervisor does not exist
+	 * @throws IllegalArgumentException Thrown if the student is pinned to the supervisor
+	 * @throws UnexpectedException Thrown if an unexpected exception occurred
+	 */
+	public HashMap<String,String> forbid(String username, String supervisor) throws StudentNotFoundException, SupervisorNotFoundException, IllegalArgumentException, UnexpectedException {
+		int student = getStudent(username);
+		String name = network.supervisors.getSupervisorName(network.supervisors.getIndex(supervisor));
+		if (name.equals(pins.get(username))) {
+			throw new IllegalArgumentException("Student <" + username + "> is pinned to <" + name + '>');
+		}
+
+		HashSet<String> names = forbidden.get(username);
+		if (names == null) {
+			names = new HashSet<String>();
+			forbidden.put(username, names);
+		}
+		names.add(name);
+		closeForbiddenArcs(student);
+		return resolve("forbidding <" + username + "> from <" + name + '>');
+	}
+
+	/**
+	 * Allows a student to be matched to a supervisor they were forbidden from
+	 * @param username - The username of the student
+	 * @param supervisor - The name of the supervisor
+	 * @return The new matching as a hashmap of student usernames to supervisor names
+	 * @throws StudentNotFoundException Thrown if the student does not exist
+	 * @throws SupervisorNotFoundException Thrown if the supervisor does not exist
+	 * @throws UnexpectedException Thrown if an unexpected exception occurred
+	 */
+	public HashMap<String,String> allow(String username, String supervisor) throws StudentNotFoundException, SupervisorNotFoundException, UnexpectedException {
+		int student = getStudent(username);
+		String name = network.supervisors.getSupervisorName(network.supervisors.getIndex(supervisor));
+		HashSet<String> names = forbidden.get(username);
+		if (names == null || !names.remove(name)) {
+			return getMatch();
+		}
+
+		for (int arc : network.studentArcs[student]) {
+			if (isSupervisorNode(network.graph.getHead(arc), name)) {
+				closed.remove(arc);
+				applyCapacity(arc);
+			}
+		}
+		return resolve("allowing <" + username + "> <" + name + '>');
+	}
+
+	/**
+	 * Gets the supervisor each pinned student is pinned to
+	 * @return A copy of the pins as a hashmap of student usernames to supervisor names
+	 */
+	public HashMap<String,String> getPins() {
+		return new HashMap<String,String>(pins);
+	}
+
+	/**
+	 * Removes the pin on a student without solving, giving back the places it reserved
+	 * @param username - The username of the student
+	 * @return true if the student was pinned
+	 */
+	private boolean releasePin(String username) {
+		int [] arcs = pinArcs.remove(username);
+		if (arcs == null) {
+			return false;
+		}
+		pins.remove(username);
+		for (int arc : arcs) {
+			reserved.put(arc, getReserved(arc) - 1);
+			applyCapacity(arc);
+		}
+		try {
+			int arc = network.sourceArcs[network.students.getIndex(username)];
+			closed.remove(arc);
+			applyCapacity(arc);
+		}catch (StudentNotFoundException e) {
+			//pins are only made on students in the data
+			logger.severe("Pinned student <" + username + "> is no longer in the student data");
+		}
+		return true;
+	}
+
+	/**
+	 * Closes every arc from the student to a supervisor they are forbidden from
+	 * @param student - The index of the student
+	 * @throws StudentNotFoundException Thrown if the student does not exist
+	 */
+	private void closeForbiddenArcs(int student) throws StudentNotFoundException {
+		HashSet<String> names = forbidden.get(network.students.getUsername(student));
+		if (names == null) {
+			return;
+		}
+		for (int arc : network.studentArcs[student]) {
+			for (String name : names) {
+				if (isSupervisorNode(network.graph.getHead(arc), name)) {
+					closed.add(arc);
+					applyCapacity(arc);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns true if the student is forbidden from the supervisor
+	 * @param username - The username of the student
+	 * @param supervisor - The name of the supervisor
+	 * @return true if the match is forbidden
+	 */
+	private boolean isForbidden(String username, String supervisor) {
+		HashSet<String> names = forbidden.get(username);
+		return names != null && names.contains(supervisor);
+	}
+
+	/**
+	 * Returns true if the node is the supervisors node or their nat_sci node
+	 * @param node - The node index
+	 * @param supervisor - The name of the supervisor
+	 * @return true if the node stands for the supervisor
+	 */
+	private boolean isSupervisorNode(int node, String supervisor) {
+		return network.nodeNames.get(node).equals(supervisor) || network.nodeNames.get(node).equals(supervisor + " nat_sci");
+	}
+
+	/**
+	 * Returns true if the array holds the arc
+	 * @param arcs - The arcs to search
+	 * @param arc - The arc to find
+	 * @return true if the arc is in the array
+	 */
+	private static boolean contains(int [] arcs, int arc) {
+		for (int a : arcs) {
+			if (a == arc) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Gets the index of a student in the session
+	 * @param username - The username of the student
+	 * @return The index of the student
+	 * @throws StudentNotFoundException Thrown if the student does not exist or has not been added to the session
+	 */
+	private int getStudent(String username) throws StudentNotFoundException {
+		int student = network.students.getIndex(username);
+		if (student >= network.studentCount) {
+			throw new StudentNotFoundException(username);
+		}
+		return student;
+	}
+
+	/**
+	 * Gets the index of a student in the session that has not withdrawn
+	 * @param username - The username of the student
+	 * @return The index of the student
+	 * @throws StudentNotFoundException Thrown if the student does not exist, has not been added to the session or has withdrawn
+	 */
+	private int getActiveStudent(String username) throws StudentNotFoundException {
+		int student = getStudent(username);
+		if (network.graph.getCapacity(network.sourceArcs[student]) == 0) {
+			throw new StudentNotFoundException(username);
+		}
+		return student;
+	}
+
+	/**
+	 * Gets the number of places reserved on an arc by pins
+	 * @param arc - The arc index
+	 * @return The number of places reserved
+	 */
+	private int getReserved(int arc) {
+		Integer count = reserved.get(arc);
+		return count == null ? 0 : count;
+	}
+
+	/**
+	 * Sets the capacity of an arc in the solver to its capacity in the network, less the places
+	 * reserved on it, or to 0 if it is closed
+	 * @param arc - The arc index
+	 */
+	private void applyCapacity(int arc) {
+		int capacity = network.graph.getCapacity(arc) - getReserved(arc);
+		if (capacity < 0) {
+			logger.warning("Pins reserve more places than arc <" + network.nodeNames.get(network.graph.getTail(arc)) + "> to <" 
+					+ network.nodeNames.get(network.graph.getHead(arc)) + "> has");
+		}
+		solver.setCapacity(arc, closed.contains(arc) ? 0 : Math.max(0, capacity), 0, network.sinkNode);
+	}
+
+	/**
+	 * Sets the capacity of every topic area to the capped percentage of the students that have not withdrawn
+	 */
+	private void updateTopicAreaCaps() {
+		int capacity = AllocationGraph.getTopicAreaCapacity(network.activeStudents, network.percentage);
+		for (int arc : network.sinkArcs) {
+			if (network.graph.getCapacity(arc) != capacity) {
+				network.graph.setCapacity(arc, capacity);
+				applyCapacity(arc);
+			}
+		}
+	}
+
+	/**
+	 * Adds arcs just added to the network to the solver as well
+	 * @param arcs - The arcs added to the network
+	 * @throws UnexpectedException Thrown if the solver gives an arc a different index to the network
+	 */
+	private void addToSolver(int [] arcs) throws UnexpectedException {
+		ResidualGraph graph = network.graph;
+		for (int arc : arcs) {
+			int added = solver.addArc(graph.getTail(arc), graph.getHead(arc), graph.getCapacity(arc), graph.getCost(arc));
+			if (added != arc) {
+				logger.severe("Solver arc <" + added + "> does not match network arc <" + arc + '>');
+				throw new UnexpectedException("Internal error: solver network out of step with the allocation graph");
+			}
+		}
+	}
+
+	/**
+	 * Removes the dead arcs from the network and the solver once they are more than {@link #DEAD_ARC_SHARE}
+	 * of the arcs, and renumbers the arcs kept by the session
+	 * @throws UnexpectedException Thrown if the solver renumbers the arcs differently to the network
+	 */
+	private void removeDeadArcs() throws UnexpectedException {
+		int arcs = network.graph.getArcCount() / 2;
+		if (dead.size() <= arcs * DEAD_ARC_SHARE) {
+			return;
+		}
+		boolean [] removed = new boolean[arcs];
+		for (int arc : dead) {
+			removed[arc >> 1] = true;
+		}
+		int [] map = network.removeArcs(removed);
+		if (!Arrays.equals(map, solver.removeArcs(removed))) {
+			logger.severe("Solver arcs renumbered differently to the network arcs");
+			throw new UnexpectedException("Internal error: solver network out of step with the allocation graph");
+		}
+
+		HashSet<Integer> closedArcs = new HashSet<Integer>();
+		for (int arc : closed) {
+			if (map[arc] != -1) {
+				closedArcs.add(map[arc]);
+			}
+		}
+		closed.clear();
+		closed.addAll(closedArcs);
+		HashMap<Integer,Integer> reservedArcs = new HashMap<Integer,Integer>();
+		for (Integer arc : reserved.keySet()) {
+			reservedArcs.put(map[arc], reserved.get(arc));
+		}
+		reserved.clear();
+		reserved.putAll(reservedArcs);
+		for (int [] path : pinArcs.values()) {
+			for (int i=0;i<path.length;i++) {
+				path[i] = map[path[i]];
+			}
+		}
+		logger.info("Removed " + dead.size() + " dead arcs of " + arcs);
+		dead.clear();
+	}
+
+	/**
+	 * Continues the solve from the current flow and reads the matching out of it
+	 * @param reason - What changed, for the log
+	 * @return The new matching
+	 * @throws UnexpectedException Thrown if a student is matched twice or the flow fails verification
+	 */
+	private HashMap<String,String> resolve(String reason) throws UnexpectedException {
+		removeDeadArcs();
+		long solveStart = System.nanoTime();
+		result = solver.solve(0, network.sinkNode);
+		logger.info("Solve after " + reason + " took " + (System.nanoTime() - solveStart) / 1000000 + "ms");
+		
+		//the flow is repaired in place, so check it against the capacities the solver now holds
+		FlowVerifier.check(solver.getGraph(), result, 0, network.sinkNode, solver.getPotentials(), "the solve after " + reason);
+		match = network.getMatch(result);
+		match.putAll(pins);
+		return getMatch();
+	}
+}
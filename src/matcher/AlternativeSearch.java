@@ -0,0 +1,264 @@
+package matcher;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.logging.Logger;
+
+import exceptions.UnexpectedException;
+
+/**
+ * Finds other allocations of the same size and total cost as a solved allocation from the residual
+ * graph and the node potentials it was solved with, without solving again.
+ * <br>
+ * The scratch space for the path searches is allocated once when the search is created and reset
+ * between searches by stamping, so one search should be created for each call.
+ *
+ * @author Robert Cobb <br>
+ * Bath University<br>
+ * Email: rbc31@bath.ac.uk
+ */
+class AlternativeSearch {
+
+	/**
+	 * The logger for this class
+	 */
+	private static Logger logger = Logger.getLogger(AlternativeSearch.class.getName());
+
+	/**
+	 * The allocation graph the flow was solved over
+	 */
+	private final AllocationGraph network;
+
+	/**
+	 * The solved flow over the allocation graph, its capacities may be lowered but its arcs must match.
+	 * It is only read
+	 */
+	private final ResidualGraph solved;
+
+	/**
+	 * The node potentials the flow was solved with, no arc with residual capacity may have a negative reduced cost
+	 */
+	private final int [] potentials;
+
+	/**
+	 * The stamp of the last path search to reach each node
+	 */
+	private final int [] reached;
+
+	/**
+	 * The nodes waiting to be expanded by the path search
+	 */
+	private final int [] queue;
+
+	/**
+	 * The arc used to reach each node by the last path search
+	 */
+	private final int [] parentArcs;
+
+	/**
+	 * The stamp of the current path search, a node has been reached by it when it holds this stamp
+	 */
+	private int stamp;
+
+	/**
+	 * Creates a search from a solved flow
+	 * @param network - The allocation graph the flow was solved over
+	 * @param solved - The solved flow, its capacities may be lowered but its arcs must match. It is only read
+	 * @param potentials - The node potentials the flow was solved with
+	 */
+	AlternativeSearch(AllocationGraph network, ResidualGraph solved, int [] potentials) {
+		int n = solved.getNodeCount();
+		this.network 	= network;
+		this.solved 	= solved;
+		this.potentials = potentials;
+		this.reached 	= new int[n];
+		this.queue 		= new int[n];
+		this.parentArcs = new int[n];
+		this.stamp 		= 0;
+	}
+
+	/**
+	 * Finds other allocations of the same size and minimum cost as the solved flow. Under the
+	 * potentials it was solved with, any cycle of arcs with residual capacity and a reduced cost of
+	 * 0 costs nothing to push flow round, and every optimal flow can be reached from another by such
+	 * cycles. Starting from the solved flow, each cycle through an arc from a student to a supervisor
+	 * they don't have gives a neighbouring allocation, and the allocations found are searched in
+	 * turn, breadth first, until enough are found
+	 * @param count - The most allocations to find
+	 * @return The other optimal allocations found, nearest first, each a matching of student usernames
+	 * to supervisor names of the students in the flow
+	 * @throws UnexpectedException Thrown if a student is matched twice
+	 */
+	ArrayList<HashMap<String,String>> getAlternatives(int count) throws UnexpectedException {
+		ArrayList<HashMap<String,String>> alternatives = new ArrayList<HashMap<String,String>>();
+		HashSet<HashMap<String,String>> seen = new HashSet<HashMap<String,String>>();
+		HashMap<String,String> solvedMatch = network.getMatch(new FlowResult(solved, 0));
+		seen.add(solvedMatch);
+
+		//each state is kept as the cycle pushed from the state it was found from, state q > 0 being
+		//alternative q-1, and is rebuilt on the one copy of the graph when it is searched
+		ArrayList<int []> cycles = new ArrayList<int []>();
+		ArrayList<Integer> previous = new ArrayList<Integer>();
+		cycles.add(new int[0]);
+		previous.add(-1);
+		ResidualGraph state = solved.copy();
+
+		ArrayList<int []> route = new ArrayList<int []>();
+		for (int q = 0; q < cycles.size() && alternatives.size() < count; q++) {
+			route.clear();
+			for (int s = q; s != -1; s = previous.get(s)) {
+				route.add(cycles.get(s));
+			}
+			for (int r = route.size() - 1; r >= 0; r--) {
+				pushCycle(state, route.get(r), false);
+			}
+			HashMap<String,String> match = q == 0 ? solvedMatch : alternatives.get(q - 1);
+
+			for (int i = 0; i < network.studentCount && alternatives.size() < count; i++) {
+				if (state.getCapacity(network.sourceArcs[i]) == 0) {
+					continue;
+				}
+				int matchedArc = -1;
+				for (int arc : network.studentArcs[i]) {
+					if (state.getFlow(arc) == 1) {
+						matchedArc = arc;
+					}
+				}
+				//the arc closing the cycle, back into the student
+				int closing = matchedArc == -1 ? network.sourceArcs[i] : matchedArc ^ 1;
+				int target = state.getTail(closing);
+				if (state.getResidual(closing) <= 0 || getReducedCost(state, closing) != 0) {
+					continue;
+				}
+
+				for (int arc : network.studentArcs[i]) {
+					if (arc == matchedArc || state.getResidual(arc) <= 0 || getReducedCost(state, arc) != 0
+							|| !findZeroPath(state, state.getHead(arc), target)) {
+						continue;
+					}
+					ArrayList<Integer> arcs = new ArrayList<Integer>();
+					arcs.add(arc);
+					arcs.add(closing);
+					for (int node = target; node != state.getHead(arc); node = state.getTail(parentArcs[node])) {
+						arcs.add(parentArcs[node]);
+					}
+					int [] cycle = new int[arcs.size()];
+					for (int j = 0; j < cycle.length; j++) {
+						cycle[j] = arcs.get(j);
+					}
+
+					//only the students on the cycle change supervisor
+					pushCycle(state, cycle, false);
+					HashMap<String,String> alternative = new HashMap<String,String>(match);
+					for (int cycleArc : cycle) {
+						updateMatch(state, alternative, state.getTail(cycleArc));
+						updateMatch(state, alternative, state.getHead(cycleArc));
+					}
+					pushCycle(state, cycle, true);
+
+					if (seen.add(alternative)) {
+						alternatives.add(alternative);
+						cycles.add(cycle);
+						previous.add(q);
+						if (alternatives.size() == count) {
+							break;
+						}
+					}
+				}
+			}
+
+			//take the state back off, the last cycle pushed first
+			for (int r = 0; r < route.size(); r++) {
+				pushCycle(state, route.get(r), true);
+			}
+		}
+		logger.info("Found " + alternatives.size() + " alternative allocations of the same cost");
+		return alternatives;
+	}
+
+	/**
+	 * Pushes one unit of flow round a cycle, or takes it back off
+	 * @param graph - The graph to push on
+	 * @param cycle - The arcs of the cycle
+	 * @param undo - true to take the unit back off
+	 */
+	private static void pushCycle(ResidualGraph graph, int [] cycle, boolean undo) {
+		for (int arc : cycle) {
+			graph.push(undo ? arc ^ 1 : arc, 1);
+		}
+	}
+
+	/**
+	 * Sets the supervisor of a student in a matching from the flow out of their node
+	 * @param graph - The graph holding the flow
+	 * @param match - The matching to update
+	 * @param node - The node, nothing is done if it is not a student node
+	 * @throws UnexpectedException Thrown if the student is matched twice
+	 */
+	private void updateMatch(ResidualGraph graph, HashMap<String,String> match, int node) throws UnexpectedException {
+		if (!network.isStudentNode(node)) {
+			return;
+		}
+		String student = network.nodeNames.get(node);
+		match.remove(student);
+		for (int offset = graph.getFirstArc(node); offset < graph.getEndArc(node); offset++) {
+			int arc = graph.getAdjacentArc(offset);
+			if ((arc & 1) != 0 || graph.getFlow(arc) != 1) {
+				continue;
+			}
+			if (match.containsKey(student)) {
+				logger.severe("Student "+ student+" matched twice");
+				throw new UnexpectedException("Error, student "+ student+" matched twice!");
+			}
+			match.put(student, network.nodeNames.get(graph.getHead(arc)).replace("nat_sci", "").trim());
+		}
+	}
+
+	/**
+	 * Gets the reduced cost of an arc, cost(u,v) + potential(u) - potential(v)
+	 * @param graph - The graph holding the arc
+	 * @param arc - The arc
+	 * @return The reduced cost
+	 */
+	private int getReducedCost(ResidualGraph graph, int arc) {
+		return graph.getCost(arc) + potentials[graph.getTail(arc)] - potentials[graph.getHead(arc)];
+	}
+
+	/**
+	 * Searches breadth first for a path between two nodes using only arcs with residual capacity
+	 * and a reduced cost of 0
+	 * @param graph - The graph to search
+	 * @param from - The node the path starts at
+	 * @param to - The node the path ends at
+	 * @return true if a path was found, {@link #parentArcs} then holds the arc used to reach each
+	 * node on it, followed back from the end
+	 */
+	private boolean findZeroPath(ResidualGraph graph, int from, int to) {
+		if (from == to) {
+			return true;
+		}
+		stamp++;
+		int head = 0;
+		int tail = 0;
+		queue[tail++] = from;
+		reached[from] = stamp;
+		while (head < tail) {
+			int node = queue[head++];
+			for (int offset = graph.getFirstArc(node); offset < graph.getEndArc(node); offset++) {
+				int arc = graph.getAdjacentArc(offset);
+				int next = graph.getHead(arc);
+				if (reached[next] == stamp || graph.getResidual(arc) <= 0 || getReducedCost(graph, arc) != 0) {
+					continue;
+				}
+				reached[next] = stamp;
+				parentArcs[next] = arc;
+				if (next == to) {
+					return true;
+				}
+				queue[tail++] = next;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,476 @@
+package matcher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An allocation shaped network seen as an assignment of students to pools of slots.
+ * <br>
+ * The network must have unit capacity arcs from the source to a layer of students, student arcs into
+ * the rest of the network, and every other node must have at most one outgoing arc, so each
+ * student arc leads down a single path to the sink. The maximum flow each node could ever receive
+ * is worked out and the arcs that can actually limit the flow are found. If every path to the sink
+ * has at most one such arc, the network is an assignment of students to pools of slots:
+ * <ul>
+ * <li>a supervisor node that is over subscribed becomes a pool with one slot per place</li>
+ * <li>nat-sci and topic area nodes whose caps can never be reached need no pool of their own</li>
+ * <li>a topic area cap that binds while its supervisors do not becomes a pool of its own</li>
+ * </ul>
+ * Otherwise the caps are nested and the network is not an assignment, {@link #getReason()} says why.
+ *
+ * @author Robert Cobb <br>
+ * Bath University<br>
+ * Email: rbc31@bath.ac.uk
+ */
+class AssignmentNetwork {
+
+	/**
+	 * Why the network is not an assignment, null if it is
+	 */
+	private final String reason;
+
+	/**
+	 * The index of the source node
+	 */
+	int source;
+
+	/**
+	 * The index of the sink node
+	 */
+	int sink;
+
+	/**
+	 * The number of students
+	 */
+	int studentCount;
+
+	/**
+	 * The arc from the source to each student
+	 */
+	int [] sourceArcs;
+
+	/**
+	 * The one outgoing arc of each node below the students, -1 if none
+	 */
+	int [] outArc;
+
+	/**
+	 * Candidate offsets, the candidates of student i are candidateStart[i] to candidateStart[i+1]-1
+	 */
+	int [] candidateStart;
+
+	/**
+	 * The student arc each candidate is reached by
+	 */
+	int [] candidateArc;
+
+	/**
+	 * The pool each candidate is in
+	 */
+	int [] candidatePool;
+
+	/**
+	 * The cost of each candidate, the cost of its whole path to the sink
+	 */
+	long [] candidateCost;
+
+	/**
+	 * The largest absolute candidate cost
+	 */
+	long maxCost;
+
+	/**
+	 * The number of pools
+	 */
+	int poolCount;
+
+	/**
+	 * The node whose outgoing arc caps each pool, -1 for the pool of paths with no cap that binds
+	 */
+	int [] poolNode;
+
+	/**
+	 * Slot offsets, the slots of pool j are slotStart[j] to slotStart[j+1]-1
+	 */
+	int [] slotStart;
+
+	/**
+	 * The pool each slot belongs to
+	 */
+	int [] slotPool;
+
+	/**
+	 * The number of slots
+	 */
+	int slotCount;
+
+	/**
+	 * Creates a network that is not an assignment
+	 * @param reason - Why the network is not an assignment
+	 */
+	private AssignmentNetwork(String reason) {
+		this.reason = reason;
+	}
+
+	/**
+	 * Works out whether the network is an assignment with side constraints that can't bind,
+	 * and if so builds its students, candidates and slot pools
+	 * @param network - The network to look at
+	 * @param source - The index of the source node
+	 * @param sink - The index of the sink node
+	 * @return The assignment, check {@link #getReason()} before using it
+	 */
+	static AssignmentNetwork build(ResidualGraph network, int source, int sink) {
+		int n = network.getNodeCount();
+		int [] outArc = new int[n];
+		boolean [] isStudent = new boolean[n];
+		Arrays.fill(outArc, -1);
+
+		//students are the heads of the source arcs
+		List<Integer> studentList = new ArrayList<Integer>();
+		List<Integer> sourceArcList = new ArrayList<Integer>();
+		for (int arc = 0; arc < network.getArcCount(); arc += 2) {
+			int tail = network.getTail(arc);
+			int head = network.getHead(arc);
+			if (head == source) {
+				return new AssignmentNetwork("arc into the source");
+			}
+			if (tail == sink) {
+				return new AssignmentNetwork("arc out of the sink");
+			}
+			if (tail == source) {
+				if (head == sink || isStudent[head] || network.getCapacity(arc) != 1 || network.getCost(arc) != 0) {
+					return new AssignmentNetwork("source arcs are not unit capacity arcs to distinct students");
+				}
+				isStudent[head] = true;
+				studentList.add(head);
+				sourceArcList.add(arc);
+			}
+		}
+
+		//every other node must lead down a single path
+		int [] inflow = new int[n];
+		int [] pending = new int[n];
+		for (int arc = 0; arc < network.getArcCount(); arc += 2) {
+			int tail = network.getTail(arc);
+			int head = network.getHead(arc);
+			if (tail == source) {
+				continue;
+			}
+			if (isStudent[head]) {
+				return new AssignmentNetwork("arc into student <" + head + "> that is not from the source");
+			}
+			if (isStudent[tail]) {
+				if (network.getCapacity(arc) > 0) {
+					inflow[head]++;
+				}
+				continue;
+			}
+			if (outArc[tail] != -1) {
+				return new AssignmentNetwork("node <" + tail + "> has more than one outgoing arc");
+			}
+			outArc[tail] = arc;
+			pending[head]++;
+		}
+
+		//work out the most flow each node could receive, in topological order
+		int [] queue = new int[n];
+		int headIndex = 0;
+		int tailIndex = 0;
+		for (int v = 0; v < n; v++) {
+			if (v != source && !isStudent[v] && pending[v] == 0) {
+				queue[tailIndex++] = v;
+			}
+		}
+		while (headIndex < tailIndex) {
+			int v = queue[headIndex++];
+			int arc = outArc[v];
+			if (arc == -1) {
+				continue;
+			}
+			int next = network.getHead(arc);
+			inflow[next] += Math.min(inflow[v], network.getCapacity(arc));
+			if (--pending[next] == 0) {
+				queue[tailIndex++] = next;
+			}
+		}
+		if (tailIndex != n - 1 - studentList.size()) {
+			return new AssignmentNetwork("cycle below the students");
+		}
+
+		//find the one binding cap on each path, it becomes the pool of slots
+		int [] poolIndex = new int[n];
+		Arrays.fill(poolIndex, -1);
+		List<Integer> poolCapacity = new ArrayList<Integer>();
+		List<Integer> poolNodeList = new ArrayList<Integer>();
+		int unboundedPool = -1;
+
+		List<Integer> candidateArcList = new ArrayList<Integer>();
+		List<Integer> candidatePoolList = new ArrayList<Integer>();
+		List<Long> candidateCostList = new ArrayList<Long>();
+		int [] start = new int[studentList.size() + 1];
+
+		for (int i = 0; i < studentList.size(); i++) {
+			int student = studentList.get(i);
+			start[i] = candidateArcList.size();
+			for (int offset = network.getFirstArc(student); offset < network.getEndArc(student); offset++) {
+				int arc = network.getAdjacentArc(offset);
+				if (!network.isForward(arc) || network.getCapacity(arc) == 0) {
+					continue;
+				}
+				long cost = network.getCost(arc);
+				int binding = -1;
+				int node = network.getHead(arc);
+				while (node != sink) {
+					int next = outArc[node];
+					int capacity = next == -1 ? 0 : network.getCapacity(next);
+					if (inflow[node] > capacity) {
+						if (binding != -1) {
+							return new AssignmentNetwork("nested caps at nodes <" + binding + "> and <" + node + ">");
+						}
+						binding = node;
+					}
+					if (next == -1) {
+						break;
+					}
+					cost += network.getCost(next);
+					node = network.getHead(next);
+				}
+
+				int pool;
+				if (binding != -1) {
+					if (poolIndex[binding] == -1) {
+						poolIndex[binding] = poolCapacity.size();
+						poolCapacity.add(outArc[binding] == -1 ? 0 : network.getCapacity(outArc[binding]));
+						poolNodeList.add(binding);
+					}
+					pool = poolIndex[binding];
+				}else {
+					if (unboundedPool == -1) {
+						unboundedPool = poolCapacity.size();
+						poolCapacity.add(studentList.size());
+						poolNodeList.add(-1);
+					}
+					pool = unboundedPool;
+				}
+
+				//keep only the cheapest arc from a student into each pool
+				boolean duplicate = false;
+				for (int c = start[i]; c < candidateArcList.size(); c++) {
+					if (candidatePoolList.get(c) == pool) {
+						duplicate = true;
+						if (cost < candidateCostList.get(c)) {
+							candidateArcList.set(c, arc);
+							candidateCostList.set(c, cost);
+						}
+					}
+				}
+				if (!duplicate) {
+					candidateArcList.add(arc);
+					candidatePoolList.add(pool);
+					candidateCostList.add(cost);
+				}
+			}
+		}
+		start[studentList.size()] = candidateArcList.size();
+
+		AssignmentNetwork assignment = new AssignmentNetwork(null);
+		int studentCount = studentList.size();
+		assignment.studentCount = studentCount;
+		assignment.source 		= source;
+		assignment.sink 		= sink;
+		assignment.outArc 		= outArc;
+		assignment.sourceArcs 	= new int[studentCount];
+		for (int i = 0; i < studentCount; i++) {
+			assignment.sourceArcs[i] = sourceArcList.get(i);
+		}
+
+		assignment.poolCount = poolCapacity.size();
+		assignment.poolNode = new int[assignment.poolCount];
+		for (int j = 0; j < assignment.poolCount; j++) {
+			assignment.poolNode[j] = poolNodeList.get(j);
+		}
+		assignment.slotStart = new int[assignment.poolCount + 1];
+		for (int j = 0; j < assignment.poolCount; j++) {
+			assignment.slotStart[j+1] = assignment.slotStart[j] + Math.min(poolCapacity.get(j), studentCount);
+		}
+		assignment.slotCount = assignment.slotStart[assignment.poolCount];
+		assignment.slotPool = new int[assignment.slotCount];
+		for (int j = 0; j < assignment.poolCount; j++) {
+			Arrays.fill(assignment.slotPool, assignment.slotStart[j], assignment.slotStart[j+1], j);
+		}
+
+		int candidates = candidateArcList.size();
+		assignment.candidateStart 	= start;
+		assignment.candidateArc 	= new int[candidates];
+		assignment.candidatePool 	= new int[candidates];
+		assignment.candidateCost 	= new long[candidates];
+		for (int c = 0; c < candidates; c++) {
+			assignment.candidateArc[c] 	= candidateArcList.get(c);
+			assignment.candidatePool[c] = candidatePoolList.get(c);
+			assignment.candidateCost[c] = candidateCostList.get(c);
+			assignment.maxCost = Math.max(assignment.maxCost, Math.abs(assignment.candidateCost[c]));
+		}
+		return assignment;
+	}
+
+	/**
+	 * Gets why the network is not an assignment
+	 * @return The reason, null if the network is an assignment
+	 */
+	String getReason() {
+		return reason;
+	}
+
+	/**
+	 * Gets a value for allocating one student that outweighs any change in the cost of the others,
+	 * so an assignment that maximises value minus cost allocates as many students as possible
+	 * @return The value of allocating a student
+	 */
+	long getAllocationValue() {
+		return 2 * (studentCount + 1) * (maxCost + 1);
+	}
+
+	/**
+	 * Turns the dual prices of a solved assignment into node potentials for the network it was built
+	 * from, in time linear in the size of the network.
+	 * <br>
+	 * The prices are those of the cost matrix with a column per slot, at the cost of the candidate, and a
+	 * dummy column per student at {@link #getAllocationValue()}: the price of a student plus the price of a
+	 * column is at most the cost of the pair, with equality where they are paired, slot prices are at most 0
+	 * and an empty slot or the dummy of an allocated student is priced 0. A student's potential is less its
+	 * price and the source is less the allocation value. Every other node leads down one path, so its
+	 * potential is less the cost of the path, less the price of the pool capping the path if the node
+	 * is above the cap. A pool is priced at less its highest slot price, which is 0 unless every slot is
+	 * taken, so an arc with room left never has a negative reduced cost
+	 * @param network - The network the assignment was built from
+	 * @param rowPrices - The price of each student
+	 * @param slotPrices - The price of each slot
+	 * @return The potential of each node, null if they don't fit in an int
+	 */
+	int [] getPotentials(ResidualGraph network, long [] rowPrices, long [] slotPrices) {
+		int n = network.getNodeCount();
+		long allocationValue = getAllocationValue();
+
+		//the price of each pool, a pool with no slots is priced high enough that no student wants it
+		long [] poolPrice = new long[poolCount];
+		for (int j = 0; j < poolCount; j++) {
+			long highest = Long.MIN_VALUE;
+			for (int slot = slotStart[j]; slot < slotStart[j+1]; slot++) {
+				highest = Math.max(highest, slotPrices[slot]);
+			}
+			poolPrice[j] = highest == Long.MIN_VALUE ? 0 : -highest;
+		}
+		for (int i = 0; i < studentCount; i++) {
+			for (int c = candidateStart[i]; c < candidateStart[i+1]; c++) {
+				int pool = candidatePool[c];
+				if (slotStart[pool] == slotStart[pool+1]) {
+					poolPrice[pool] = Math.max(poolPrice[pool], rowPrices[i] - candidateCost[c]);
+				}
+			}
+		}
+		long [] capPrice = new long[n];
+		for (int j = 0; j < poolCount; j++) {
+			if (poolNode[j] != -1) {
+				capPrice[poolNode[j]] = poolPrice[j];
+			}
+		}
+
+		long [] potentials = new long[n];
+		boolean [] done = new boolean[n];
+		int [] path = new int[n];
+		potentials[source] = -allocationValue;
+		done[source] = true;
+		for (int i = 0; i < studentCount; i++) {
+			int student = network.getHead(sourceArcs[i]);
+			potentials[student] = -rowPrices[i];
+			done[student] = true;
+		}
+		potentials[sink] = 0;
+		done[sink] = true;
+
+		//walk down from each node to one already done, then fill the path in from the bottom
+		for (int v = 0; v < n; v++) {
+			int length = 0;
+			int node = v;
+			while (!done[node]) {
+				path[length++] = node;
+				if (outArc[node] == -1) {
+					break;
+				}
+				node = network.getHead(outArc[node]);
+			}
+			for (int k = length - 1; k >= 0; k--) {
+				int current = path[k];
+				int arc = outArc[current];
+				potentials[current] = (arc == -1 ? 0 : potentials[network.getHead(arc)] - network.getCost(arc)) - capPrice[current];
+				done[current] = true;
+			}
+		}
+
+		long lowest = Long.MAX_VALUE;
+		long highest = Long.MIN_VALUE;
+		for (int v = 0; v < n; v++) {
+			lowest = Math.min(lowest, potentials[v]);
+			highest = Math.max(highest, potentials[v]);
+		}
+		if (highest - lowest > Integer.MAX_VALUE) {
+			return null;
+		}
+		int [] result = new int[n];
+		for (int v = 0; v < n; v++) {
+			result[v] = (int) (potentials[v] - lowest);
+		}
+		return result;
+	}
+
+	/**
+	 * Rounds prices found for costs scaled by a factor back to prices for the unscaled costs.
+	 * Prices for which every reduced cost of the scaled costs is at least -1 are rounded down after
+	 * a shift chosen so no price is left one short of a multiple of the scale. That is possible when
+	 * there are fewer prices than the scale, and then every reduced cost of the unscaled costs that
+	 * was at least -1 scaled is at least 0
+	 * @param prices - The prices for the scaled costs, fewer than scale of them
+	 * @param scale - The factor the costs were scaled by
+	 * @return The prices for the unscaled costs
+	 */
+	static long [] unscalePrices(long [] prices, long scale) {
+		boolean [] used = new boolean[(int) scale];
+		for (long price : prices) {
+			used[(int) Math.floorMod(price, scale)] = true;
+		}
+		int free = 0;
+		while (used[free]) {
+			free++;
+		}
+		long shift = scale - 1 - free;
+		long [] unscaled = new long[prices.length];
+		for (int i = 0; i < prices.length; i++) {
+			unscaled[i] = Math.floorDiv(prices[i] + shift, scale);
+		}
+		return unscaled;
+	}
+
+	/**
+	 * Pushes one unit of flow from the source through the given student to the sink,
+	 * entering the given pool
+	 * @param graph - The graph to push the flow on, the network the assignment was built from or a copy
+	 * @param student - The student to allocate
+	 * @param pool - The pool the student is allocated a slot in
+	 * @param sink - The index of the sink node
+	 */
+	void allocate(ResidualGraph graph, int student, int pool, int sink) {
+		for (int c = candidateStart[student]; c < candidateStart[student+1]; c++) {
+			if (candidatePool[c] == pool) {
+				graph.push(sourceArcs[student], 1);
+				graph.push(candidateArc[c], 1);
+				for (int node = graph.getHead(candidateArc[c]); node != sink; node = graph.getHead(outArc[node])) {
+					graph.push(outArc[node], 1);
+				}
+				return;
+			}
+		}
+		throw new IllegalArgumentException("Student <" + student + "> has no arc into pool <" + pool + ">");
+	}
+}
@@ -0,0 +1,435 @@
+package matcher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+/**
+ * Parallel Bertsekas auction solver for allocation shaped networks.
+ * <br>
+ * When the network is an {@link AssignmentNetwork}, so at most one cap can bind on each path to
+ * the sink, students bid for the slots of each pool.
+ * Otherwise the caps are nested, which the auction can't model, and the solve falls back to
+ * {@link MinCostMaxFlow}.
+ * <br>
+ * The assignment is made symmetric with a dummy object per student (staying unallocated) and
+ * a phantom bidder per slot (leaving the slot empty). Allocating a student is worth a large
+ * constant minus the cost, so the number of students allocated is maximised first. The auction
+ * is run with epsilon scaling. In each round every unassigned student bids at the same time on
+ * the worker threads, and the bids are then settled in student order so the result is the same
+ * whatever the thread count.
+ *
+ * @author Robert Cobb <br>
+ * Bath University<br>
+ * Email: rbc31@bath.ac.uk
+ */
+public class AuctionMinCostFlow implements FlowSolver {
+
+	/**
+	 * The logger for this class
+	 */
+	private static Logger logger = Logger.getLogger(AuctionMinCostFlow.class.getName());
+
+	/**
+	 * The factor epsilon is divided by between auction phases
+	 */
+	private static final long ALPHA = 4;
+
+	/**
+	 * The smallest number of students given to one worker thread in a bidding round
+	 */
+	private static final int MIN_CHUNK = 64;
+
+	/**
+	 * The solvers working copy of the network, the flow found is kept on its arcs
+	 */
+	private final ResidualGraph graph;
+
+	/**
+	 * The solver the last solve fell back to, null if it was solved as an assignment
+	 */
+	private MinCostMaxFlow fallback;
+
+	/**
+	 * true once the flow has been solved as an assignment
+	 */
+	private boolean solved;
+
+	/**
+	 * The number of worker threads bids are computed on
+	 */
+	private final int threads;
+
+	/**
+	 * The network seen as an assignment of students to pools of slots
+	 */
+	private AssignmentNetwork assignment;
+
+	/**
+	 * The scaled benefit of each candidate of the assignment
+	 */
+	private long [] candidateBenefit;
+
+	/**
+	 * The number of slot objects, the dummy object of student i is slotCount + i
+	 */
+	private int slotCount;
+
+	/**
+	 * The price of each object
+	 */
+	private long [] prices;
+
+	/**
+	 * The person holding each object, -1 if none. Students are persons 0 to s-1,
+	 * phantoms are the persons after them
+	 */
+	private int [] owner;
+
+	/**
+	 * The object held by each person, -1 if none
+	 */
+	private int [] assigned;
+
+	/**
+	 * The object each student bid on in the current round
+	 */
+	private int [] bidObject;
+
+	/**
+	 * The price each student bid in the current round
+	 */
+	private long [] bidPrice;
+
+	/**
+	 * Creates a solver for the given network that bids on one thread per processor.
+	 * The network is copied, so one network may be shared by several solvers running on
+	 * different threads as long as it is not modified while they are being created.
+	 * @param network - The network to solve, any flow already on it is replaced
+	 */
+	public AuctionMinCostFlow(ResidualGraph network) {
+		this(network, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Creates a solver for the given network
+	 * @param network - The network to solve, any flow already on it is replaced
+	 * @param threads - The number of worker threads to compute bids on
+	 */
+	public AuctionMinCostFlow(ResidualGraph network, int threads) {
+		this.graph = network.copy();
+		this.threads = Math.max(1, threads);
+	}
+
+	/**
+	 * Gets the maximum flow, minimum cost solution from source to sink
+	 * @param source - The index of the source node in the graph
+	 * @param sink - The index of the sink node in the graph
+	 * @return The result of the solve holding the total flow, the total cost and the flow on each arc
+	 */
+	@Override
+	public FlowResult solve(int source, int sink) {
+		graph.clearFlow();
+		fallback = null;
+		solved = false;
+		assignment = AssignmentNetwork.build(graph, source, sink);
+		if (assignment.getReason() != null) {
+			logger.info("Network can't be solved as an assignment (" + assignment.getReason() + "), falling back to successive shortest paths");
+			fallback = new MinCostMaxFlow(graph);
+			return fallback.solve(source, sink);
+		}
+		init();
+
+		logger.info("Getting max flow by auction over " + assignment.studentCount + " students and " + slotCount + " slots on " + threads + " threads...");
+		long epsilon = 0;
+		for (int i = 0; i < candidateBenefit.length; i++) {
+			epsilon = Math.max(epsilon, candidateBenefit[i]);
+		}
+
+		int phases = 0;
+		ExecutorService executor = threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+		try {
+			do {
+				epsilon = Math.max(1, epsilon / ALPHA);
+				runPhase(epsilon, executor);
+				phases++;
+			}while (epsilon > 1);
+		}finally {
+			if (executor != null) {
+				executor.shutdown();
+			}
+		}
+
+		for (int i = 0; i < assignment.studentCount; i++) {
+			if (assigned[i] < slotCount) {
+				assignment.allocate(graph, i, assignment.slotPool[assigned[i]], sink);
+			}
+		}
+
+		solved = true;
+		FlowResult result = new FlowResult(graph, source);
+		logger.info("Max flow of " + result.getTotalFlow() + " found at cost " + result.getTotalCost() + " after " + phases + " auction phases");
+		return result;
+	}
+
+	/**
+	 * Gets node potentials for the flow found from the object prices.
+	 * The last phase leaves every person within 1 of their best value at the scaled benefits, so the
+	 * prices are rounded back to unscaled ones exactly, see {@link AssignmentNetwork#unscalePrices(long[], long)}.
+	 * A phantom is then on one of the cheapest objects, so prices less the lowest price give slot prices
+	 * of at most 0 with the empty slots at 0, and each student is priced from their best value, see
+	 * {@link AssignmentNetwork#getPotentials(ResidualGraph, long[], long[])}
+	 * @return The potential of each node, null before the first solve or if they don't fit in an int
+	 */
+	@Override
+	public int [] getPotentials() {
+		if (fallback != null) {
+			return fallback.getPotentials();
+		}
+		if (!solved) {
+			return null;
+		}
+		int studentCount = assignment.studentCount;
+		long [] rounded = AssignmentNetwork.unscalePrices(prices, studentCount + slotCount + 1);
+		long lowest = Long.MAX_VALUE;
+		for (long price : rounded) {
+			lowest = Math.min(lowest, price);
+		}
+		long [] poolLowest = new long[assignment.poolCount];
+		Arrays.fill(poolLowest, Long.MAX_VALUE);
+		long [] slotPrices = new long[slotCount];
+		for (int slot = 0; slot < slotCount; slot++) {
+			int pool = assignment.slotPool[slot];
+			poolLowest[pool] = Math.min(poolLowest[pool], rounded[slot]);
+			slotPrices[slot] = lowest - rounded[slot];
+		}
+
+		long allocationValue = assignment.getAllocationValue();
+		long [] rowPrices = new long[studentCount];
+		for (int i = 0; i < studentCount; i++) {
+			long best = -rounded[slotCount + i];
+			for (int c = assignment.candidateStart[i]; c < assignment.candidateStart[i+1]; c++) {
+				long poolPrice = poolLowest[assignment.candidatePool[c]];
+				if (poolPrice != Long.MAX_VALUE) {
+					best = Math.max(best, allocationValue - assignment.candidateCost[c] - poolPrice);
+				}
+			}
+			rowPrices[i] = allocationValue - lowest - best;
+		}
+		return assignment.getPotentials(graph, rowPrices, slotPrices);
+	}
+
+	/**
+	 * Sets up the benefits and the auction state for the assignment.
+	 * The benefits are scaled by the number of persons plus one, so the final phase run with an
+	 * epsilon of 1 gives an optimal assignment.
+	 */
+	private void init() {
+		int studentCount = assignment.studentCount;
+		slotCount = assignment.slotCount;
+
+		long allocationValue = assignment.getAllocationValue();
+		long scale = studentCount + slotCount + 1;
+		candidateBenefit = new long[assignment.candidateCost.length];
+		for (int c = 0; c < candidateBenefit.length; c++) {
+			candidateBenefit[c] = (allocationValue - assignment.candidateCost[c]) * scale;
+		}
+
+		int objects = slotCount + studentCount;
+		prices 		= new long[objects];
+		owner 		= new int[objects];
+		assigned 	= new int[objects];
+		bidObject 	= new int[studentCount];
+		bidPrice 	= new long[studentCount];
+	}
+
+	/**
+	 * Runs one auction phase from the current prices until every person holds an object
+	 * @param epsilon - The minimum price rise of a bid
+	 * @param executor - The worker threads to compute bids on, null to compute them on this thread
+	 */
+	private void runPhase(long epsilon, ExecutorService executor) {
+		int studentCount = assignment.studentCount;
+		int objects = owner.length;
+		Arrays.fill(owner, -1);
+		Arrays.fill(assigned, -1);
+
+		int [] unassigned = new int[studentCount];
+		int unassignedCount = studentCount;
+		for (int i = 0; i < studentCount; i++) {
+			unassigned[i] = i;
+		}
+		int [] phantoms = new int[slotCount];
+		int phantomCount = slotCount;
+		for (int i = 0; i < slotCount; i++) {
+			phantoms[i] = studentCount + i;
+		}
+		int [] winner = new int[objects];
+		Arrays.fill(winner, -1);
+		int [] next = new int[studentCount];
+
+		while (unassignedCount > 0 || phantomCount > 0) {
+			if (unassignedCount > 0) {
+				computeBids(unassigned, unassignedCount, epsilon, executor);
+
+				//settle the bids in student order, the highest bid for each object wins
+				for (int k = 0; k < unassignedCount; k++) {
+					int student = unassigned[k];
+					int object = bidObject[student];
+					if (winner[object] == -1 || bidPrice[student] > bidPrice[winner[object]]) {
+						winner[object] = student;
+					}
+				}
+				int nextCount = 0;
+				for (int k = 0; k < unassignedCount; k++) {
+					int student = unassigned[k];
+					int object = bidObject[student];
+					if (winner[object] != student) {
+						next[nextCount++] = student;
+						continue;
+					}
+					winner[object] = -1;
+					int previous = assign(student, object, bidPrice[student]);
+					if (previous == -1) {
+						continue;
+					}
+					if (previous < studentCount) {
+						next[nextCount++] = previous;
+					}else {
+						phantoms[phantomCount++] = previous;
+					}
+				}
+				Arrays.sort(next, 0, nextCount);
+				System.arraycopy(next, 0, unassigned, 0, nextCount);
+				unassignedCount = nextCount;
+			}
+
+			//phantoms bid one at a time on the cheapest object
+			while (phantomCount > 0) {
+				int phantom = phantoms[--phantomCount];
+				int cheapest = -1;
+				long second = Long.MAX_VALUE;
+				for (int object = 0; object < objects; object++) {
+					if (cheapest == -1 || prices[object] < prices[cheapest]) {
+						if (cheapest != -1) {
+							second = prices[cheapest];
+						}
+						cheapest = object;
+					}else if (prices[object] < second) {
+						second = prices[object];
+					}
+				}
+				long price = second == Long.MAX_VALUE ? prices[cheapest] + epsilon : second + epsilon;
+				int previous = assign(phantom, cheapest, price);
+				if (previous == -1) {
+					continue;
+				}
+				if (previous < studentCount) {
+					unassigned[unassignedCount++] = previous;
+				}else {
+					phantoms[phantomCount++] = previous;
+				}
+			}
+			Arrays.sort(unassigned, 0, unassignedCount);
+		}
+	}
+
+	/**
+	 * Gives the object to the person at the given price
+	 * @param person - The person winning the object
+	 * @param object - The object won
+	 * @param price - The new price of the object
+	 * @return The person who held the object before, -1 if none
+	 */
+	private int assign(int person, int object, long price) {
+		int previous = owner[object];
+		if (previous != -1) {
+			assigned[previous] = -1;
+		}
+		owner[object] = person;
+		assigned[person] = object;
+		prices[object] = price;
+		return previous;
+	}
+
+	/**
+	 * Computes the bid of every unassigned student, splitting the students across the worker threads
+	 * @param unassigned - The unassigned students
+	 * @param count - The number of unassigned students
+	 * @param epsilon - The minimum price rise of a bid
+	 * @param executor - The worker threads, null to compute the bids on this thread
+	 */
+	private void computeBids(final int [] unassigned, int count, final long epsilon, ExecutorService executor) {
+		int chunks = Math.min(threads, (count + MIN_CHUNK - 1) / MIN_CHUNK);
+		if (executor == null || chunks <= 1) {
+			for (int k = 0; k < count; k++) {
+				bid(unassigned[k], epsilon);
+			}
+			return;
+		}
+
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(chunks);
+		int size = (count + chunks - 1) / chunks;
+		for (int from = 0; from < count; from += size) {
+			final int start = from;
+			final int end = Math.min(count, from + size);
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() {
+					for (int k = start; k < end; k++) {
+						bid(unassigned[k], epsilon);
+					}
+					return null;
+				}
+			});
+		}
+		try {
+			for (Future<Void> future : executor.invokeAll(tasks)) {
+				future.get();
+			}
+		}catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while computing auction bids", e);
+		}catch (ExecutionException e) {
+			throw new IllegalStateException("Error computing auction bids", e.getCause());
+		}
+	}
+
+	/**
+	 * Computes the bid of one student from the current prices.
+	 * Only reads shared state, so bids for different students can be computed at the same time.
+	 * @param student - The student bidding
+	 * @param epsilon - The minimum price rise of a bid
+	 */
+	private void bid(int student, long epsilon) {
+		int dummy = slotCount + student;
+		int bestObject = dummy;
+		long best = -prices[dummy];
+		long second = Long.MIN_VALUE;
+
+		int [] slotStart = assignment.slotStart;
+		for (int c = assignment.candidateStart[student]; c < assignment.candidateStart[student+1]; c++) {
+			int pool = assignment.candidatePool[c];
+			long benefit = candidateBenefit[c];
+			for (int object = slotStart[pool]; object < slotStart[pool+1]; object++) {
+				long value = benefit - prices[object];
+				if (value > best) {
+					second = best;
+					best = value;
+					bestObject = object;
+				}else if (value > second) {
+					second = value;
+				}
+			}
+		}
+
+		bidObject[student] = bestObject;
+		bidPrice[student] = prices[bestObject] + (second == Long.MIN_VALUE ? 0 : best - second) + epsilon;
+	}
+}
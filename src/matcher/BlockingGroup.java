@@ -0,0 +1,132 @@
+package matcher;
+
+import java.util.ArrayList;
+
+/**
+ * A group of students left unallocated because the places they could take are full, read from
+ * the minimum cut of a solved allocation, see {@link Matcher#allocate(dataManager.Students, dataManager.Supervisors, int, ArrayList, SolverMode, ArrayList)}.
+ * <br>
+ * Every student in the group, matched or not, can only be matched through the full supervisors,
+ * nat sci places and topic areas listed, and there are more students than places, so no
+ * allocation could match all of them
+ *
+ * @author Robert Cobb <br>
+ * Bath University<br>
+ * Email: rbc31@bath.ac.uk
+ */
+public final class BlockingGroup {
+
+	/**
+	 * The usernames of the students in the group that were not allocated
+	 */
+	private final ArrayList<String> unallocated;
+
+	/**
+	 * The number of students in the group, allocated or not
+	 */
+	private final int students;
+
+	/**
+	 * The number of places the group competes for
+	 */
+	private final int places;
+
+	/**
+	 * The supervisors that are full
+	 */
+	private final ArrayList<String> supervisors;
+
+	/**
+	 * The supervisors whose nat sci places are full
+	 */
+	private final ArrayList<String> natSciSupervisors;
+
+	/**
+	 * The topic areas at their capped percentage
+	 */
+	private final ArrayList<String> topicAreas;
+
+	/**
+	 * Creates a blocking group
+	 * @param unallocated - The usernames of the students in the group that were not allocated
+	 * @param students - The number of students in the group, allocated or not
+	 * @param places - The number of places the group competes for
+	 * @param supervisors - The supervisors that are full
+	 * @param natSciSupervisors - The supervisors whose nat sci places are full
+	 * @param topicAreas - The topic areas at their capped percentage
+	 */
+	BlockingGroup(ArrayList<String> unallocated, int students, int places, ArrayList<String> supervisors, ArrayList<String> natSciSupervisors, ArrayList<String> topicAreas) {
+		this.unallocated 		= unallocated;
+		this.students 			= students;
+		this.places 			= places;
+		this.supervisors 		= supervisors;
+		this.natSciSupervisors 	= natSciSupervisors;
+		this.topicAreas 		= topicAreas;
+	}
+
+	/**
+	 * Gets the students in the group that were not allocated
+	 * @return A copy of the usernames of the unallocated students
+	 */
+	public ArrayList<String> getUnallocated() {
+		return new ArrayList<String>(unallocated);
+	}
+
+	/**
+	 * Gets the number of students in the group, allocated or not
+	 * @return The number of students competing for the group's places
+	 */
+	public int getStudents() {
+		return students;
+	}
+
+	/**
+	 * Gets the number of places the group competes for
+	 * @return The number of places, the number of students allocated in the group
+	 */
+	public int getPlaces() {
+		return places;
+	}
+
+	/**
+	 * Gets the supervisors that are full
+	 * @return A copy of the supervisor names
+	 */
+	public ArrayList<String> getSupervisors() {
+		return new ArrayList<String>(supervisors);
+	}
+
+	/**
+	 * Gets the supervisors whose nat sci places are full
+	 * @return A copy of the supervisor names
+	 */
+	public ArrayList<String> getNatSciSupervisors() {
+		return new ArrayList<String>(natSciSupervisors);
+	}
+
+	/**
+	 * Gets the topic areas at their capped percentage
+	 * @return A copy of the topic area names
+	 */
+	public ArrayList<String> getTopicAreas() {
+		return new ArrayList<String>(topicAreas);
+	}
+
+	@Override
+	public String toString() {
+		if (supervisors.isEmpty() && natSciSupervisors.isEmpty() && topicAreas.isEmpty()) {
+			return "Students " + unallocated + " have no supervisor they may be matched with";
+		}
+		String reason = "Students " + unallocated + " not allocated, " + students + " students compete for " + places + " places";
+		if (!supervisors.isEmpty()) {
+			reason += ", full supervisors " + supervisors;
+		}
+		if (!natSciSupervisors.isEmpty()) {
+			reason += ", full nat sci places " + natSciSupervisors;
+		}
+		if (!topicAreas.isEmpty()) {
+			reason += ", topic areas at cap " + topicAreas;
+		}
+		return reason;
+	}
+}
@@ -0,0 +1,194 @@
+package matcher;
+
+import java.util.Arrays;
+
+/**
+ * Dial bucket queue of node indexes keyed on a small non negative integer distance,
+ * supporting decrease key.
+ * <br>
+ * Keys must be monotone: no key may be inserted below the key last polled. The buckets form a ring
+ * of lists, so inserting and decreasing are O(1) and polling costs at most one pass around the ring.
+ * The ring grows, doubling, when a key is inserted further past the last key polled than it reaches,
+ * so the largest arc cost of a search need not be known before it starts.
+ * Each bucket is an intrusive doubly linked list, so nothing is allocated after the ring has grown
+ * to the size needed.
+ *
+ * @author Robert Cobb <br>
+ * Bath University<br>
+ * Email: rbc31@bath.ac.uk
+ */
+class BucketQueue {
+
+	/**
+	 * The number of buckets the ring starts with
+	 */
+	private static final int INITIAL_BUCKETS = 16;
+
+	/**
+	 * The first node in each bucket, -1 if the bucket is empty
+	 */
+	private int [] buckets;
+
+	/**
+	 * The number of buckets in the ring, more than the spread of the keys in the queue
+	 */
+	private int bucketCount;
+
+	/**
+	 * The next node in the same bucket, -1 if none
+	 */
+	private final int [] next;
+
+	/**
+	 * The previous node in the same bucket, -1 if the node is first
+	 */
+	private final int [] previous;
+
+	/**
+	 * The key of each node in the queue
+	 */
+	private final int [] keys;
+
+	/**
+	 * Whether each node is in the queue
+	 */
+	private final boolean [] queued;
+
+	/**
+	 * The number of nodes currently in the queue
+	 */
+	private int size;
+
+	/**
+	 * The smallest key that may still be in the queue
+	 */
+	private int cursor;
+
+	/**
+	 * Creates an empty queue that can hold the nodes 0 to capacity-1
+	 * @param capacity - The number of nodes the queue can hold
+	 */
+	BucketQueue(int capacity) {
+		this.buckets 	= new int[INITIAL_BUCKETS];
+		this.bucketCount = INITIAL_BUCKETS;
+		this.next 		= new int[capacity];
+		this.previous 	= new int[capacity];
+		this.keys 		= new int[capacity];
+		this.queued 	= new boolean[capacity];
+		Arrays.fill(buckets, -1);
+	}
+
+	/**
+	 * Empties the queue ready for a new search, only visiting buckets up to the last one still
+	 * holding a node. The ring keeps the size it grew to
+	 */
+	void reset() {
+		for (int i = 0; i < bucketCount && size > 0; i++) {
+			for (int node = buckets[i]; node != -1; node = next[node]) {
+				queued[node] = false;
+				size--;
+			}
+			buckets[i] = -1;
+		}
+		size = 0;
+		cursor = 0;
+	}
+
+	/**
+	 * Returns true if the queue holds no nodes
+	 * @return true if the queue is empty
+	 */
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Inserts the node with the given key, or lowers its key if it is already in the queue
+	 * with a larger key
+	 * @param node - The node to insert
+	 * @param key - The key of the node
+	 */
+	void insertOrDecrease(int node, int key) {
+		if (key - cursor >= bucketCount) {
+			grow(key - cursor + 1);
+		}
+		if (queued[node]) {
+			if (key >= keys[node]) {
+				return;
+			}
+			unlink(node);
+		}else {
+			queued[node] = true;
+			size++;
+		}
+		keys[node] = key;
+		link(node);
+	}
+
+	/**
+	 * Removes and returns a node with the smallest key
+	 * @return A node with the smallest key
+	 */
+	int poll() {
+		while (buckets[cursor % bucketCount] == -1) {
+			cursor++;
+		}
+		int node = buckets[cursor % bucketCount];
+		unlink(node);
+		queued[node] = false;
+		size--;
+		return node;
+	}
+
+	/**
+	 * Grows the ring to hold keys spread over at least the given number of buckets, moving every
+	 * queued node to its bucket in the larger ring
+	 * @param required - The number of buckets needed
+	 */
+	private void grow(int required) {
+		int [] old = buckets;
+		int oldCount = bucketCount;
+		bucketCount = Math.max(required, bucketCount * 2);
+		buckets = new int[bucketCount];
+		Arrays.fill(buckets, -1);
+		for (int i = 0; i < oldCount; i++) {
+			int node = old[i];
+			while (node != -1) {
+				int following = next[node];
+				link(node);
+				node = following;
+			}
+		}
+	}
+
+	/**
+	 * Adds the node to the front of the bucket list for its key
+	 * @param node - The node to add
+	 */
+	private void link(int node) {
+		int bucket = keys[node] % bucketCount;
+		int head = buckets[bucket];
+		next[node] = head;
+		previous[node] = -1;
+		if (head != -1) {
+			previous[head] = node;
+		}
+		buckets[bucket] = node;
+	}
+
+	/**
+	 * Removes the node from its bucket list
+	 * @param node - The node to remove
+	 */
+	private void unlink(int node) {
+		int bucket = keys[node] % bucketCount;
+		if (previous[node] != -1) {
+			next[previous[node]] = next[node];
+		}else {
+			buckets[bucket] = next[node];
+		}
+		if (next[node] != -1) {
+			previous[next[node]] = previous[node];
+		}
+	}
+}
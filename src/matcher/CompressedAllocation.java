@@ -0,0 +1,181 @@
+package matcher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.logging.Logger;
+
+/**
+ * An allocation graph with students of identical profiles merged into one node.
+ * <br>
+ * Students with the same choices, course, topic areas and keywords get arcs to the same supervisor
+ * nodes at the same costs, so the solver gains nothing from telling them apart. Each group of such
+ * students, compared by their arcs, is given one node with an arc from the source of capacity the
+ * size of the group and arcs to the supervisors of the same capacity. The other students' nodes are
+ * left out and the rest renumbered, so the compressed graph only has as many student nodes as groups.
+ * After solving, the flow from each group is split back between its students in the order of the
+ * student data, which is the order {@link main.Table#randomiseRows()} left it in, the first student
+ * getting the cheapest supervisor.
+ *
+ * @author Robert Cobb <br>
+ * Bath University<br>
+ * Email: rbc31@bath.ac.uk
+ */
+class CompressedAllocation {
+
+	/**
+	 * The logger for this class
+	 */
+	private static Logger logger = Logger.getLogger(CompressedAllocation.class.getName());
+
+	/**
+	 * The allocation graph compressed
+	 */
+	final AllocationGraph network;
+
+	/**
+	 * The compressed flow network. It has one student node per group, and every other node of the
+	 * allocation graph in the same order
+	 */
+	final ResidualGraph graph;
+
+	/**
+	 * The index of the sink node in the compressed graph
+	 */
+	final int sinkNode;
+
+	/**
+	 * The node of the allocation graph each node of the compressed graph stands for,
+	 * a group's node standing for its first student
+	 */
+	private final int [] originalNodes;
+
+	/**
+	 * The students in each group, in the order of the student data
+	 */
+	private final ArrayList<ArrayList<Integer>> groups;
+
+	/**
+	 * The arcs from each group to the supervisors, in the order of the arcs of its students
+	 */
+	private final ArrayList<int []> groupArcs;
+
+	/**
+	 * Merges the students of the given allocation graph that have identical arcs
+	 * @param network - The allocation graph to compress, it is not changed
+	 */
+	CompressedAllocation(AllocationGraph network) {
+		this.network = network;
+		ResidualGraph original = network.graph;
+
+		//group the students by their arcs
+		HashMap<String,Integer> groupOf = new HashMap<String,Integer>();
+		this.groups = new ArrayList<ArrayList<Integer>>();
+		for (int i=0;i<network.studentCount;i++) {
+			if (original.getCapacity(network.sourceArcs[i]) == 0) {
+				continue;
+			}
+			StringBuilder profile = new StringBuilder();
+			for (int arc : network.studentArcs[i]) {
+				profile.append(original.getHead(arc)).append(':').append(original.getCapacity(arc))
+					.append(':').append(original.getCost(arc)).append(',');
+			}
+			String key = profile.toString();
+			if (!groupOf.containsKey(key)) {
+				groupOf.put(key, groups.size());
+				groups.add(new ArrayList<Integer>());
+			}
+			groups.get(groupOf.get(key)).add(i);
+		}
+
+		//only the first student of each group keeps a node, with arcs sized for the whole group
+		int [] size = new int[original.getNodeCount()];
+		for (ArrayList<Integer> group : groups) {
+			size[network.studentNodes[group.get(0)]] = group.size();
+		}
+		int [] nodeOf = new int[original.getNodeCount()];
+		int nodeCount = 0;
+		for (int node = 0; node < original.getNodeCount(); node++) {
+			nodeOf[node] = network.isStudentNode(node) && size[node] == 0 ? -1 : nodeCount++;
+		}
+		this.originalNodes = new int[nodeCount];
+		for (int node = 0; node < original.getNodeCount(); node++) {
+			if (nodeOf[node] != -1) {
+				originalNodes[nodeOf[node]] = node;
+			}
+		}
+		this.sinkNode = nodeOf[network.sinkNode];
+
+		this.graph = new ResidualGraph(nodeCount, original.getArcCount() / 2);
+		HashMap<Integer,Integer> arcOf = new HashMap<Integer,Integer>();
+		for (int arc = 0; arc < original.getArcCount(); arc += 2) {
+			int tail = original.getTail(arc);
+			int head = original.getHead(arc);
+			if (nodeOf[tail] == -1 || nodeOf[head] == -1) {
+				continue;
+			}
+			int capacity = original.getCapacity(arc);
+			if (tail == 0 || network.isStudentNode(tail)) {
+				capacity = size[tail == 0 ? head : tail] * Math.min(1, capacity);
+			}
+			arcOf.put(arc, graph.addArc(nodeOf[tail], nodeOf[head], capacity, original.getCost(arc)));
+		}
+
+		this.groupArcs = new ArrayList<int []>(groups.size());
+		for (ArrayList<Integer> group : groups) {
+			int [] arcs = network.studentArcs[group.get(0)].clone();
+			for (int j=0;j<arcs.length;j++) {
+				arcs[j] = arcOf.get(arcs[j]);
+			}
+			groupArcs.add(arcs);
+		}
+		logger.info("Compressed " + network.activeStudents + " students into " + groups.size() + " groups of identical students, "
+				+ original.getNodeCount() + " nodes into " + nodeCount);
+	}
+
+	/**
+	 * Gets the number of groups of identical students
+	 * @return The number of student nodes in the compressed graph
+	 */
+	int getGroupCount() {
+		return groups.size();
+	}
+
+	/**
+	 * Splits the flow from each group back between its students, in the order of the student data,
+	 * the first getting the cheapest supervisor the group's flow reaches
+	 * @param result - The flow found over the compressed graph
+	 * @return The matching found as a hashmap of student usernames to supervisor names,
+	 * a student who was not matched will not have a value in the hashmap
+	 */
+	HashMap<String,String> getMatch(FlowResult result) {
+		HashMap<String,String> match = new HashMap<String,String>();
+		for (int g=0;g<groups.size();g++) {
+			ArrayList<Integer> group = groups.get(g);
+
+			//the group's arcs, cheapest first and in arc order where the costs tie
+			Integer [] arcs = new Integer[groupArcs.get(g).length];
+			for (int j=0;j<arcs.length;j++) {
+				arcs[j] = groupArcs.get(g)[j];
+			}
+			Arrays.sort(arcs, new Comparator<Integer>() {
+				@Override
+				public int compare(Integer a, Integer b) {
+					int byCost = Integer.compare(graph.getCost(a), graph.getCost(b));
+					return byCost != 0 ? byCost : Integer.compare(a, b);
+				}
+			});
+
+			int next = 0;
+			for (int arc : arcs) {
+				String supervisor = network.nodeNames.get(originalNodes[graph.getHead(arc)]).replace("nat_sci", "").trim();
+				for (int unit = 0; unit < result.getFlow(arc); unit++) {
+					match.put(network.nodeNames.get(network.studentNodes[group.get(next++)]), supervisor);
+				}
+			}
+		}
+		logger.info("Match created: " + match);
+		return match;
+	}
+}
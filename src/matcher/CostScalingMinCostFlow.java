@@ -0,0 +1,234 @@
+package matcher;
+
+import java.util.logging.Logger;
+
+/**
+ * Goldberg-Tarjan cost scaling push-relabel min cost max flow solver.
+ * <br>
+ * A maximum flow is first found with {@link MaxFlow}, ignoring costs. The cost of that flow is
+ * then minimised as a min cost circulation on the residual graph: costs are multiplied by n+1 and
+ * the flow is refined through a sequence of epsilon-optimal flows, dividing epsilon by
+ * {@link #ALPHA} each phase, until it is optimal. The amount of flow never changes during the
+ * refinement, so the running time depends on the size of the graph and the largest cost but
+ * not on the number of students allocated.
+ *
+ * @author Robert Cobb <br>
+ * Bath University<br>
+ * Email: rbc31@bath.ac.uk
+ */
+public class CostScalingMinCostFlow implements FlowSolver {
+
+	/**
+	 * The logger for this class
+	 */
+	private static Logger logger = Logger.getLogger(CostScalingMinCostFlow.class.getName());
+
+	/**
+	 * The factor epsilon is divided by between refinement phases
+	 */
+	private static final long ALPHA = 8;
+
+	/**
+	 * The solvers working copy of the network, the flow found is kept on its arcs
+	 */
+	private final ResidualGraph graph;
+
+	/**
+	 * The price of each node, the reduced cost of arc (v,w) is scaledCost + price[v] - price[w]
+	 */
+	private final long [] prices;
+
+	/**
+	 * The cost of each arc multiplied by n+1
+	 */
+	private final long [] scaledCosts;
+
+	/**
+	 * The flow each node must still push out (positive) or take in (negative)
+	 * before conservation is restored
+	 */
+	private final long [] excess;
+
+	/**
+	 * The adjacency offset of the next arc to try from each node
+	 */
+	private final int [] currentArc;
+
+	/**
+	 * FIFO queue of active nodes, used as a ring buffer
+	 */
+	private final int [] active;
+
+	/**
+	 * Whether each node is in the active queue
+	 */
+	private final boolean [] queued;
+
+	/**
+	 * true once the flow has been solved
+	 */
+	private boolean solved;
+
+	/**
+	 * Creates a solver for the given network.
+	 * The network is copied, so one network may be shared by several solvers running on
+	 * different threads as long as it is not modified while they are being created.
+	 * @param network - The network to solve, any flow already on it is kept
+	 */
+	public CostScalingMinCostFlow(ResidualGraph network) {
+		this.graph = network.copy();
+		int n = graph.getNodeCount();
+		this.prices 	 = new long[n];
+		this.excess 	 = new long[n];
+		this.currentArc  = new int[n];
+		this.active 	 = new int[n];
+		this.queued 	 = new boolean[n];
+		this.scaledCosts = new long[graph.getArcCount()];
+	}
+
+	/**
+	 * Gets the maximum flow, minimum cost solution from source to sink
+	 * @param source - The index of the source node in the graph
+	 * @param sink - The index of the sink node in the graph
+	 * @return The result of the solve holding the total flow, the total cost and the flow on each arc
+	 */
+	@Override
+	public FlowResult solve(int source, int sink) {
+		logger.info("Getting max flow by cost scaling over " + graph.getNodeCount() + " nodes and " + graph.getArcCount() + " arcs...");
+		MaxFlow.getMaxFlow(graph, source, sink);
+
+		int n = graph.getNodeCount();
+		long epsilon = 0;
+		for (int arc = 0; arc < graph.getArcCount(); arc++) {
+			scaledCosts[arc] = (long) graph.getCost(arc) * (n + 1);
+			epsilon = Math.max(epsilon, Math.abs(scaledCosts[arc]));
+		}
+
+		int phases = 0;
+		while (epsilon > 1) {
+			epsilon = Math.max(1, epsilon / ALPHA);
+			refine(epsilon);
+			phases++;
+		}
+
+		solved = true;
+		FlowResult result = new FlowResult(graph, source);
+		logger.info("Max flow of " + result.getTotalFlow() + " found at cost " + result.getTotalCost() + " after " + phases + " refinement phases");
+		return result;
+	}
+
+	/**
+	 * Gets node potentials for the flow found. The prices leave every residual arc with a reduced
+	 * cost of at least -1 for the costs scaled by n+1, and there are fewer prices than the scale, so
+	 * they round back exactly to potentials for the unscaled costs, see {@link AssignmentNetwork#unscalePrices(long[], long)}
+	 * @return The potential of each node, null before the first solve or if they don't fit in an int
+	 */
+	@Override
+	public int [] getPotentials() {
+		if (!solved) {
+			return null;
+		}
+		int n = graph.getNodeCount();
+		long [] rounded = AssignmentNetwork.unscalePrices(prices, n + 1);
+		long lowest = Long.MAX_VALUE;
+		long highest = Long.MIN_VALUE;
+		for (long price : rounded) {
+			lowest = Math.min(lowest, price);
+			highest = Math.max(highest, price);
+		}
+		if (highest - lowest > Integer.MAX_VALUE) {
+			return null;
+		}
+		int [] potentials = new int[n];
+		for (int i = 0; i < n; i++) {
+			potentials[i] = (int) (rounded[i] - lowest);
+		}
+		return potentials;
+	}
+
+	/**
+	 * Gets the reduced cost of the given arc under the current prices
+	 * @param arc - The arc index
+	 * @return The reduced cost of the arc
+	 */
+	private long reducedCost(int arc) {
+		return scaledCosts[arc] + prices[graph.getTail(arc)] - prices[graph.getHead(arc)];
+	}
+
+	/**
+	 * Turns the current 2*epsilon optimal circulation into an epsilon optimal one.
+	 * Every residual arc with a negative reduced cost is saturated, the excess this creates is
+	 * then discharged with push and relabel operations until every node is balanced again.
+	 * @param epsilon - The optimality to reach
+	 */
+	private void refine(long epsilon) {
+		int n = graph.getNodeCount();
+
+		for (int arc = 0; arc < graph.getArcCount(); arc++) {
+			int residual = graph.getResidual(arc);
+			if (residual > 0 && reducedCost(arc) < 0) {
+				graph.push(arc, residual);
+				excess[graph.getTail(arc)] -= residual;
+				excess[graph.getHead(arc)] += residual;
+			}
+		}
+
+		int headIndex = 0;
+		int size = 0;
+		for (int i = 0; i < n; i++) {
+			currentArc[i] = graph.getFirstArc(i);
+			if (excess[i] > 0) {
+				active[(headIndex + size++) % n] = i;
+				queued[i] = true;
+			}
+		}
+
+		while (size > 0) {
+			int node = active[headIndex];
+			headIndex = (headIndex + 1) % n;
+			size--;
+			queued[node] = false;
+
+			//discharge the node
+			while (excess[node] > 0) {
+				if (currentArc[node] == graph.getEndArc(node)) {
+					relabel(node, epsilon);
+					currentArc[node] = graph.getFirstArc(node);
+					continue;
+				}
+				int arc = graph.getAdjacentArc(currentArc[node]);
+				int residual = graph.getResidual(arc);
+				if (residual > 0 && reducedCost(arc) < 0) {
+					int amount = (int) Math.min(excess[node], residual);
+					int next = graph.getHead(arc);
+					graph.push(arc, amount);
+					excess[node] -= amount;
+					excess[next] += amount;
+					if (excess[next] > 0 && !queued[next]) {
+						active[(headIndex + size++) % n] = next;
+						queued[next] = true;
+					}
+				}else {
+					currentArc[node]++;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Lowers the price of the given node as little as possible so that one of its residual arcs
+	 * becomes admissible while every residual arc stays epsilon optimal
+	 * @param node - The node to relabel, it must have excess and no admissible arcs
+	 * @param epsilon - The current optimality
+	 */
+	private void relabel(int node, long epsilon) {
+		long best = Long.MIN_VALUE;
+		for (int offset = graph.getFirstArc(node); offset < graph.getEndArc(node); offset++) {
+			int arc = graph.getAdjacentArc(offset);
+			if (graph.getResidual(arc) > 0) {
+				best = Math.max(best, prices[graph.getHead(arc)] - scaledCosts[arc]);
+			}
+		}
+		prices[node] = best - epsilon;
+	}
+}
@@ -0,0 +1,376 @@
+package matcher;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Parallel delta-stepping shortest path search over reduced costs.
+ * <br>
+ * Nodes are kept in buckets of width delta by tentative distance. The lowest bucket is settled by
+ * relaxing its light arcs (reduced cost no more than delta) in parallel until it stops changing,
+ * then the heavy arcs of every node settled in it are relaxed in parallel. The search stops once
+ * the bucket holding the sink is settled.
+ * <br>
+ * The distance and arc used to reach each node are packed into one long, distance in the high
+ * bits, and lowered with compare and swap, so the two always agree. A node is only updated when
+ * its distance strictly drops, which keeps the arcs used free of cycles through arcs with a
+ * reduced cost of 0. Which of several equally short paths is found depends on thread timing, so
+ * the flow found may differ between runs, but its cost is always the minimum.
+ *
+ * @author Robert Cobb <br>
+ * Bath University<br>
+ * Email: rbc31@bath.ac.uk
+ */
+class DeltaStepping {
+
+	/**
+	 * The largest number of frontier nodes relaxed by one task
+	 */
+	private static final int GRAIN = 256;
+
+	/**
+	 * Packed distance and arc of a node that hasn't been reached
+	 */
+	private static final long UNREACHED = Long.MAX_VALUE;
+
+	/**
+	 * The graph searched
+	 */
+	private final ResidualGraph graph;
+
+	/**
+	 * The pool the relaxations run on
+	 */
+	private final ForkJoinPool pool;
+
+	/**
+	 * The tentative distance of each node in the high 32 bits and the arc used to reach it in the low 32 bits
+	 */
+	private final AtomicLongArray tentative;
+
+	/**
+	 * The round each node was last lowered in, so it is recorded once per round
+	 */
+	private final AtomicIntegerArray loweredRound;
+
+	/**
+	 * The nodes lowered in the current round
+	 */
+	private final int [] lowered;
+
+	/**
+	 * The number of nodes lowered in the current round
+	 */
+	private final AtomicInteger loweredCount;
+
+	/**
+	 * The frontier round each node was last added to, so a node is in a frontier once
+	 */
+	private final int [] frontierRound;
+
+	/**
+	 * The nodes settled in the current bucket
+	 */
+	private final IntList settled;
+
+	/**
+	 * The nodes being relaxed
+	 */
+	private final IntList frontier;
+
+	/**
+	 * The buckets of nodes, a node may be in an old bucket after being lowered so entries are checked when used
+	 */
+	private IntList [] buckets;
+
+	/**
+	 * The current round
+	 */
+	private int round;
+
+	/**
+	 * The potentials of the current search
+	 */
+	private int [] potentials;
+
+	/**
+	 * The bucket width of the current search
+	 */
+	private int delta;
+
+	/**
+	 * Growable list of node indexes
+	 */
+	private static class IntList {
+
+		/**
+		 * The nodes in the list
+		 */
+		int [] data = new int[16];
+
+		/**
+		 * The number of nodes in the list
+		 */
+		int size;
+
+		/**
+		 * Adds a node to the end of the list
+		 * @param node - The node to add
+		 */
+		void add(int node) {
+			if (size == data.length) {
+				data = Arrays.copyOf(data, size * 2);
+			}
+			data[size++] = node;
+		}
+	}
+
+	/**
+	 * Creates a search over the given graph
+	 * @param graph - The graph to search
+	 * @param pool - The pool to run the relaxations on
+	 */
+	DeltaStepping(ResidualGraph graph, ForkJoinPool pool) {
+		int n = graph.getNodeCount();
+		this.graph 			= graph;
+		this.pool 			= pool;
+		this.tentative 		= new AtomicLongArray(n);
+		this.loweredRound 	= new AtomicIntegerArray(n);
+		this.lowered 		= new int[n];
+		this.loweredCount 	= new AtomicInteger();
+		this.frontierRound 	= new int[n];
+		this.settled 		= new IntList();
+		this.frontier 		= new IntList();
+		this.buckets 		= new IntList[0];
+	}
+
+	/**
+	 * Finds the shortest distance over reduced costs from the source to every node up to the sink
+	 * @param source - The index of the source node
+	 * @param sink - The index of the sink node
+	 * @param potentials - The node potentials, every residual arc must have a non negative reduced cost
+	 * @param maxReducedCost - The largest reduced cost of any residual arc
+	 * @param dist - Filled with the distance of each node, unchanged for nodes not reached before the sink
+	 * @param parentArcs - Filled with the arc used to reach each node, unchanged for nodes not reached
+	 * @return true if the sink was reached
+	 */
+	boolean search(int source, int sink, int [] potentials, int maxReducedCost, int [] dist, int [] parentArcs) {
+		int n = graph.getNodeCount();
+		//build the lazy adjacency list here, before several threads read it
+		graph.getFirstArc(source);
+		this.potentials = potentials;
+		this.delta = Math.max(1, maxReducedCost / 2);
+		for (int i = 0; i < n; i++) {
+			tentative.set(i, UNREACHED);
+			loweredRound.set(i, 0);
+			frontierRound[i] = 0;
+		}
+		for (int i = 0; i < buckets.length; i++) {
+			if (buckets[i] != null) {
+				buckets[i].size = 0;
+			}
+		}
+		round = 0;
+
+		tentative.set(source, 0L);
+		bucket(0).add(source);
+
+		for (int current = 0; current < buckets.length; current++) {
+			if (buckets[current] == null || buckets[current].size == 0) {
+				continue;
+			}
+
+			//settle the bucket by relaxing light arcs until no node in it is lowered
+			settled.size = 0;
+			while (nextFrontier(current)) {
+				relax(true);
+				for (int i = 0; i < frontier.size; i++) {
+					settled.add(frontier.data[i]);
+				}
+				moveLowered();
+			}
+
+			long sinkValue = tentative.get(sink);
+			if (sinkValue != UNREACHED && distance(sinkValue) / delta <= current) {
+				break;
+			}
+
+			//heavy arcs can only reach later buckets
+			frontier.size = 0;
+			round++;
+			for (int i = 0; i < settled.size; i++) {
+				int node = settled.data[i];
+				if (frontierRound[node] != round) {
+					frontierRound[node] = round;
+					frontier.add(node);
+				}
+			}
+			relax(false);
+			moveLowered();
+		}
+
+		for (int i = 0; i < n; i++) {
+			long value = tentative.get(i);
+			if (value != UNREACHED) {
+				dist[i] = distance(value);
+				parentArcs[i] = i == source ? -1 : (int) value;
+			}
+		}
+		return tentative.get(sink) != UNREACHED;
+	}
+
+	/**
+	 * Gets the distance part of a packed value
+	 * @param value - The packed distance and arc
+	 * @return The distance
+	 */
+	private static int distance(long value) {
+		return (int) (value >>> 32);
+	}
+
+	/**
+	 * Gets the bucket with the given index, growing the bucket array if needed
+	 * @param index - The bucket index
+	 * @return The bucket
+	 */
+	private IntList bucket(int index) {
+		if (index >= buckets.length) {
+			buckets = Arrays.copyOf(buckets, Math.max(index + 1, buckets.length * 2));
+		}
+		if (buckets[index] == null) {
+			buckets[index] = new IntList();
+		}
+		return buckets[index];
+	}
+
+	/**
+	 * Moves the nodes in the given bucket whose distance still belongs to it into the frontier
+	 * and empties the bucket
+	 * @param current - The bucket index
+	 * @return true if the frontier holds any nodes
+	 */
+	private boolean nextFrontier(int current) {
+		IntList bucket = buckets[current];
+		frontier.size = 0;
+		round++;
+		for (int i = 0; i < bucket.size; i++) {
+			int node = bucket.data[i];
+			if (distance(tentative.get(node)) / delta == current && frontierRound[node] != round) {
+				frontierRound[node] = round;
+				frontier.add(node);
+			}
+		}
+		bucket.size = 0;
+		return frontier.size > 0;
+	}
+
+	/**
+	 * Puts every node lowered in the last relaxation into the bucket of its new distance
+	 */
+	private void moveLowered() {
+		int count = loweredCount.getAndSet(0);
+		for (int i = 0; i < count; i++) {
+			int node = lowered[i];
+			bucket(distance(tentative.get(node)) / delta).add(node);
+		}
+	}
+
+	/**
+	 * Relaxes the light or heavy arcs of every frontier node, in parallel when the frontier is large
+	 * @param light - true to relax the arcs with a reduced cost of at most delta, false for the others
+	 */
+	private void relax(boolean light) {
+		if (frontier.size <= GRAIN) {
+			relax(0, frontier.size, light);
+		}else {
+			pool.invoke(new RelaxTask(0, frontier.size, light));
+		}
+	}
+
+	/**
+	 * Relaxes the light or heavy arcs of the given range of frontier nodes
+	 * @param from - The first frontier position
+	 * @param to - One past the last frontier position
+	 * @param light - true to relax the arcs with a reduced cost of at most delta, false for the others
+	 */
+	private void relax(int from, int to, boolean light) {
+		for (int k = from; k < to; k++) {
+			int node = frontier.data[k];
+			int nodeDist = distance(tentative.get(node));
+			for (int offset = graph.getFirstArc(node); offset < graph.getEndArc(node); offset++) {
+				int arc = graph.getAdjacentArc(offset);
+				if (graph.getResidual(arc) <= 0) {
+					continue;
+				}
+				int next = graph.getHead(arc);
+				int reduced = graph.getCost(arc) + potentials[node] - potentials[next];
+				if ((reduced <= delta) != light) {
+					continue;
+				}
+				int candidateDist = nodeDist + reduced;
+				long candidate = ((long) candidateDist << 32) | arc;
+				while (true) {
+					long value = tentative.get(next);
+					if (value != UNREACHED && candidateDist >= distance(value)) {
+						break;
+					}
+					if (tentative.compareAndSet(next, value, candidate)) {
+						if (loweredRound.getAndSet(next, round) != round) {
+							lowered[loweredCount.getAndIncrement()] = next;
+						}
+						break;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Fork join task relaxing a range of frontier nodes, split in half until it is no bigger than {@link #GRAIN}
+	 */
+	private class RelaxTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * The first frontier position
+		 */
+		private final int from;
+
+		/**
+		 * One past the last frontier position
+		 */
+		private final int to;
+
+		/**
+		 * true to relax light arcs, false for heavy arcs
+		 */
+		private final boolean light;
+
+		/**
+		 * Creates a task for the given range
+		 * @param from - The first frontier position
+		 * @param to - One past the last frontier position
+		 * @param light - true to relax light arcs, false for heavy arcs
+		 */
+		RelaxTask(int from, int to, boolean light) {
+			this.from 	= from;
+			this.to 	= to;
+			this.light 	= light;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= GRAIN) {
+				relax(from, to, light);
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new RelaxTask(from, middle, light), new RelaxTask(middle, to, light));
+		}
+	}
+}
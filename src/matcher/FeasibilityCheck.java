@@ -0,0 +1,27 @@
+package matcher;
+
+/**
+ * Whether an allocation first checks how many students can be matched at all, with a max flow
+ * over the graph it has already built
+ *
+ * @author Robert Cobb <br>
+ * Bath University<br>
+ * Email: rbc31@bath.ac.uk
+ */
+public enum FeasibilityCheck {
+
+	/**
+	 * No check is made, the allocation is solved straight away
+	 */
+	NONE,
+
+	/**
+	 * A warning is added if not every student can be matched, then the allocation is solved
+	 */
+	WARN,
+
+	/**
+	 * A warning is added if not every student can be matched and no allocation is solved
+	 */
+	ONLY;
+}
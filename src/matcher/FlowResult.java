@@ -0,0 +1,134 @@
+package matcher;
+
+/**
+ * Immutable result of a min cost max flow solve.
+ * <br>
+ * Holds the total flow and cost found together with a snapshot of every forward arc of the
+ * solved graph, its tail, head and the flow assigned to it. Arc indexes are the indexes
+ * returned by {@link ResidualGraph#addArc(int, int, int, int)} when the graph was built.
+ *
+ * @author Robert Cobb <br>
+ * Bath University<br>
+ * Email: rbc31@bath.ac.uk
+ */
+public final class FlowResult {
+
+	/**
+	 * The total flow from source to sink
+	 */
+	private final int totalFlow;
+
+	/**
+	 * The total cost of the flow
+	 */
+	private final int totalCost;
+
+	/**
+	 * The tail node of each forward arc, indexed by arc / 2
+	 */
+	private final int [] tails;
+
+	/**
+	 * The head node of each forward arc, indexed by arc / 2
+	 */
+	private final int [] heads;
+
+	/**
+	 * The flow on each forward arc, indexed by arc / 2
+	 */
+	private final int [] flows;
+
+	/**
+	 * Creates a result from the flow currently on the given graph
+	 * @param graph - The solved graph, it is copied so may be modified afterwards
+	 * @param source - The source node the flow was found from
+	 */
+	FlowResult(ResidualGraph graph, int source) {
+		int arcs = graph.getArcCount() / 2;
+		this.tails = new int[arcs];
+		this.heads = new int[arcs];
+		this.flows = new int[arcs];
+
+		int flow = 0;
+		int cost = 0;
+		for (int i=0;i<arcs;i++) {
+			int arc = 2 * i;
+			tails[i] = graph.getTail(arc);
+			heads[i] = graph.getHead(arc);
+			flows[i] = graph.getFlow(arc);
+			cost += flows[i] * graph.getCost(arc);
+			if (tails[i] == source) {
+				flow += flows[i];
+			}
+			if (heads[i] == source) {
+				flow -= flows[i];
+			}
+		}
+		this.totalFlow = flow;
+		this.totalCost = cost;
+	}
+
+	/**
+	 * Gets the total flow from the source to the sink
+	 * @return The total flow found
+	 */
+	public int getTotalFlow() {
+		return totalFlow;
+	}
+
+	/**
+	 * Gets the total cost of the flow
+	 * @return The total cost found
+	 */
+	public int getTotalCost() {
+		return totalCost;
+	}
+
+	/**
+	 * Gets the number of forward arcs in the solved graph
+	 * @return The number of forward arcs
+	 */
+	public int getArcCount() {
+		return flows.length;
+	}
+
+	/**
+	 * Gets the flow assigned to the given arc
+	 * @param arc - The arc index, a reverse arc returns the negated flow of its forward arc
+	 * @return The flow on the arc
+	 */
+	public int getFlow(int arc) {
+		return (arc & 1) == 0 ? flows[arc >> 1] : -flows[arc >> 1];
+	}
+
+	/**
+	 * Gets the node the given arc leaves
+	 * @param arc - The arc index
+	 * @return The tail node of the arc
+	 */
+	public int getTail(int arc) {
+		return (arc & 1) == 0 ? tails[arc >> 1] : heads[arc >> 1];
+	}
+
+	/**
+	 * Gets the node the given arc enters
+	 * @param arc - The arc index
+	 * @return The head node of the arc
+	 */
+	public int getHead(int arc) {
+		return (arc & 1) == 0 ? heads[arc >> 1] : tails[arc >> 1];
+	}
+
+	/**
+	 * Gets the flow as a dense matrix, cell i,j is the flow along the arc from i to j
+	 * @param nodeCount - The number of nodes in the solved graph
+	 * @return The dense flow matrix
+	 */
+	public int [][] toFlowMatrix(int nodeCount) {
+		int [][] matrix = new int[nodeCount][nodeCount];
+		for (int i=0;i<flows.length;i++) {
+			matrix[tails[i]][heads[i]] += flows[i];
+		}
+		return matrix;
+	}
+}
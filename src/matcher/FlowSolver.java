@@ -0,0 +1,30 @@
+package matcher;
+
+/**
+ * A min cost max flow solver.
+ * <br>
+ * Implementations hold their own copy of the network they were created with and all of
+ * their working state, so separate solvers can be run at the same time on different threads.
+ *
+ * @author Robert Cobb <br>
+ * Bath University<br>
+ * Email: rbc31@bath.ac.uk
+ */
+public interface FlowSolver {
+
+	/**
+	 * Gets the maximum flow, minimum cost solution from source to sink
+	 * @param source - The index of the source node in the graph
+	 * @param sink - The index of the sink node in the graph
+	 * @return The result of the solve holding the total flow, the total cost and the flow on each arc
+	 */
+	FlowResult solve(int source, int sink);
+
+	/**
+	 * Gets node potentials for the flow of the last solve. Every arc left with residual capacity has
+	 * a non negative reduced cost under them, cost(u,v) + potential(u) - potential(v), which certifies
+	 * the flow is of minimum cost, see {@link FlowVerifier}
+	 * @return The potential of each node, null before the first solve or if the solver has none
+	 */
+	int [] getPotentials();
+}
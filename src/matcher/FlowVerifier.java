@@ -0,0 +1,202 @@
+package matcher;
+
+import java.util.ArrayList;
+import java.util.logging.Logger;
+
+import exceptions.UnexpectedException;
+
+/**
+ * Checks a solved flow in time linear in the size of the network, so a result can be trusted
+ * without solving again with a second algorithm.
+ * <br>
+ * A flow is feasible when every arc holds between 0 and its capacity and every node other than
+ * the source and sink passes on all the flow it receives. It is maximum when the sink can't be
+ * reached from the source through arcs with residual capacity. It is of minimum cost for its value
+ * when there are node potentials under which no arc with residual capacity has a negative reduced
+ * cost, cost(u,v) + potential(u) - potential(v), as the potentials are then a solution to the dual
+ * of equal value.
+ *
+ * @author Robert Cobb <br>
+ * Bath University<br>
+ * Email: rbc31@bath.ac.uk
+ */
+public class FlowVerifier {
+
+	/**
+	 * The logger for this class
+	 */
+	private static Logger logger = Logger.getLogger(FlowVerifier.class.getName());
+
+	/**
+	 * Checks a flow found for an allocation, logging each problem found
+	 * @param network - The network the flow was found over
+	 * @param result - The flow found
+	 * @param source - The index of the source node
+	 * @param sink - The index of the sink node
+	 * @param potentials - The node potentials the solver finished with, null to skip the cost check
+	 * @param name - What was solved, for the log and the exception
+	 * @throws UnexpectedException Thrown if the flow failed verification
+	 */
+	static void check(ResidualGraph network, FlowResult result, int source, int sink, int [] potentials, String name) throws UnexpectedException {
+		report(verify(network, result, source, sink, potentials), name, potentials != null);
+	}
+
+	/**
+	 * Checks a flow found for a lexicographic objective, logging each problem found
+	 * @param network - The network the flow was found over
+	 * @param result - The flow found
+	 * @param source - The index of the source node
+	 * @param sink - The index of the sink node
+	 * @param levels - The level of each forward arc, indexed by arc / 2
+	 * @param dimension - The number of places in each cost vector
+	 * @param potentials - The potential vectors the solver finished with, dimension places per node
+	 * @param name - What was solved, for the log and the exception
+	 * @throws UnexpectedException Thrown if the flow failed verification
+	 */
+	static void checkLexicographic(ResidualGraph network, FlowResult result, int source, int sink, int [] levels, int dimension, long [] potentials, String name) throws UnexpectedException {
+		report(verifyLexicographic(network, result, source, sink, levels, dimension, potentials), name, true);
+	}
+
+	/**
+	 * Logs the problems found with a flow and throws if there are any
+	 * @param problems - The problems found
+	 * @param name - What was solved, for the log and the exception
+	 * @param optimal - true if the cost was checked as well
+	 * @throws UnexpectedException Thrown if there are any problems
+	 */
+	private static void report(ArrayList<String> problems, String name, boolean optimal) throws UnexpectedException {
+		if (!problems.isEmpty()) {
+			for (String problem : problems) {
+				logger.severe(problem);
+			}
+			throw new UnexpectedException("Error, the flow found by " + name + " failed verification: " + problems.get(0));
+		}
+		logger.info("Flow found by " + name + (optimal ? " verified optimal" : " verified feasible and maximum"));
+	}
+
+	/**
+	 * Checks the given flow is a feasible maximum flow and, if potentials are given, that it is of
+	 * minimum cost
+	 * @param network - The network the flow was found over, its capacities and costs are used and any flow on it ignored
+	 * @param result - The flow found
+	 * @param source - The index of the source node
+	 * @param sink - The index of the sink node
+	 * @param potentials - The node potentials the solver finished with, null to skip the cost check
+	 * @return A description of each problem found, empty if the flow is verified
+	 */
+	public static ArrayList<String> verify(ResidualGraph network, FlowResult result, int source, int sink, int [] potentials) {
+		ArrayList<String> problems = new ArrayList<String>();
+		int n = network.getNodeCount();
+		if (2 * result.getArcCount() != network.getArcCount()) {
+			problems.add("The flow has " + 2 * result.getArcCount() + " arcs but the network has " + network.getArcCount());
+			return problems;
+		}
+		if (potentials != null && potentials.length != n) {
+			problems.add("Expected " + n + " potentials but got " + potentials.length);
+			return problems;
+		}
+
+		//capacity bounds, and the flow left over at each node
+		int [] excess = new int[n];
+		int [] residual = new int[network.getArcCount()];
+		for (int arc = 0; arc < residual.length; arc += 2) {
+			int flow = result.getFlow(arc);
+			if (flow < 0 || flow > network.getCapacity(arc)) {
+				problems.add("Arc <" + network.getTail(arc) + "> to <" + network.getHead(arc) + "> holds " + flow
+						+ " outside its capacity of " + network.getCapacity(arc));
+			}
+			excess[network.getTail(arc)] -= flow;
+			excess[network.getHead(arc)] += flow;
+			residual[arc] = network.getCapacity(arc) - flow;
+			residual[arc + 1] = flow;
+		}
+
+		//conservation
+		for (int i = 0; i < n; i++) {
+			if (i != source && i != sink && excess[i] != 0) {
+				problems.add("Node <" + i + "> has " + excess[i] + " more flow in than out");
+			}
+		}
+		if (excess[sink] != -excess[source]) {
+			problems.add("The sink receives " + excess[sink] + " but the source sends " + -excess[source]);
+		}
+
+		//complementary slackness
+		if (potentials != null) {
+			for (int arc = 0; arc < residual.length; arc++) {
+				if (residual[arc] > 0 && network.getCost(arc) + potentials[network.getTail(arc)] - potentials[network.getHead(arc)] < 0) {
+					problems.add("Arc <" + network.getTail(arc) + "> to <" + network.getHead(arc) + "> has residual capacity and a negative reduced cost");
+				}
+			}
+		}
+
+		//no augmenting path
+		boolean [] reached = new boolean[n];
+		int [] queue = new int[n];
+		int head = 0;
+		int tail = 0;
+		queue[tail++] = source;
+		reached[source] = true;
+		while (head < tail) {
+			int node = queue[head++];
+			for (int offset = network.getFirstArc(node); offset < network.getEndArc(node); offset++) {
+				int arc = network.getAdjacentArc(offset);
+				int next = network.getHead(arc);
+				if (residual[arc] > 0 && !reached[next]) {
+					reached[next] = true;
+					queue[tail++] = next;
+				}
+			}
+		}
+		if (reached[sink]) {
+			problems.add("More flow can still be pushed from the source to the sink");
+		}
+		return problems;
+	}
+
+	/**
+	 * Checks the given flow is a feasible maximum flow of lexicographically smallest cost, where the
+	 * cost of each arc is the vector over the levels used by {@link LexicographicMinCostFlow}. The
+	 * cost is minimum when, under the given potential vectors, no arc with residual capacity has a
+	 * reduced cost vector that is lexicographically negative
+	 * @param network - The network the flow was found over, its capacities are used and any flow on it ignored
+	 * @param result - The flow found
+	 * @param source - The index of the source node
+	 * @param sink - The index of the sink node
+	 * @param levels - The level of each forward arc, indexed by arc / 2
+	 * @param dimension - The number of places in each cost vector
+	 * @param potentials - The potential vectors the solver finished with, dimension places per node
+	 * @return A description of each problem found, empty if the flow is verified
+	 */
+	public static ArrayList<String> verifyLexicographic(ResidualGraph network, FlowResult result, int source, int sink, int [] levels, int dimension, long [] potentials) {
+		ArrayList<String> problems = verify(network, result, source, sink, null);
+		if (!problems.isEmpty()) {
+			return problems;
+		}
+		if (levels.length != network.getArcCount() / 2 || potentials.length != network.getNodeCount() * dimension) {
+			problems.add("Expected " + network.getArcCount() / 2 + " levels and " + network.getNodeCount() * dimension 
+					+ " potentials but got " + levels.length + " and " + potentials.length);
+			return problems;
+		}
+
+		for (int arc = 0; arc < network.getArcCount(); arc++) {
+			int flow = result.getFlow(arc & ~1);
+			int residual = (arc & 1) == 0 ? network.getCapacity(arc) - flow : flow;
+			if (residual <= 0) {
+				continue;
+			}
+			int tail = network.getTail(arc) * dimension;
+			int head = network.getHead(arc) * dimension;
+			for (int k = 0; k < dimension; k++) {
+				long reduced = LexicographicMinCostFlow.getCost(levels, arc, k) + potentials[tail + k] - potentials[head + k];
+				if (reduced < 0) {
+					problems.add("Arc <" + network.getTail(arc) + "> to <" + network.getHead(arc) + "> has residual capacity and a negative reduced cost vector");
+				}
+				if (reduced != 0) {
+					break;
+				}
+			}
+		}
+		return problems;
+	}
+}
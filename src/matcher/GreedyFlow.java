@@ -0,0 +1,105 @@
+package matcher;
+
+/**
+ * Greedy initial flow used to warm start a min cost flow solve.
+ * <br>
+ * The arcs leaving the source's neighbours are tried in the order given, for the allocation graph
+ * that is each student's supervisor choices in preference order. A unit is pushed along an arc when
+ * its tail still has flow from the source and a path of forward arcs with residual capacity leads
+ * from its head to the sink, so every capacity on the way is respected. Most students get their
+ * first or second choice, so the greedy pass places most of the flow and the solver is left to
+ * repair the cost and place the rest.
+ * <br>
+ * The flow found is feasible but not always of minimum cost for its value, so the residual graph may
+ * hold negative cost cycles. {@link MinCostMaxFlow} cancels them before it starts augmenting.
+ *
+ * @author Robert Cobb <br>
+ * Bath University<br>
+ * Email: rbc31@bath.ac.uk
+ */
+public class GreedyFlow {
+
+	/**
+	 * Pushes a greedy flow onto the given graph
+	 * @param graph - The graph to push flow on, any existing flow is kept
+	 * @param source - The index of the source node
+	 * @param sink - The index of the sink node
+	 * @param arcs - The forward arcs to try in order, each must leave a node the source has an arc to.
+	 * Entries of -1 are skipped
+	 * @return The number of units of flow pushed
+	 * @throws IllegalArgumentException Thrown if an arc doesn't leave a node the source has an arc to
+	 */
+	public static int push(ResidualGraph graph, int source, int sink, int [] arcs) throws IllegalArgumentException {
+		int n = graph.getNodeCount();
+
+		//the arc from the source to each node, -1 if none
+		int [] sourceArc = new int[n];
+		for (int i = 0; i < n; i++) {
+			sourceArc[i] = -1;
+		}
+		for (int offset = graph.getFirstArc(source); offset < graph.getEndArc(source); offset++) {
+			int arc = graph.getAdjacentArc(offset);
+			if (graph.isForward(arc)) {
+				sourceArc[graph.getHead(arc)] = arc;
+			}
+		}
+
+		int [] pathArcs = new int[n];
+		int [] nextArc 	= new int[n];
+		int [] visited 	= new int[n];
+		int stamp 		= 0;
+		int pushed 		= 0;
+
+		for (int arc : arcs) {
+			if (arc == -1) {
+				continue;
+			}
+			int student = graph.getTail(arc);
+			if (sourceArc[student] == -1) {
+				throw new IllegalArgumentException("Arc <" + arc + "> does not leave a node the source has an arc to");
+			}
+			if (graph.getResidual(sourceArc[student]) <= 0 || graph.getResidual(arc) <= 0) {
+				continue;
+			}
+
+			//depth first search over forward arcs from the head of the arc to the sink
+			stamp++;
+			int depth = 0;
+			int current = graph.getHead(arc);
+			visited[current] = stamp;
+			nextArc[current] = graph.getFirstArc(current);
+			while (current != sink) {
+				int next = -1;
+				while (nextArc[current] < graph.getEndArc(current)) {
+					int candidate = graph.getAdjacentArc(nextArc[current]++);
+					int head = graph.getHead(candidate);
+					if (graph.isForward(candidate) && graph.getResidual(candidate) > 0 && visited[head] != stamp) {
+						pathArcs[depth++] = candidate;
+						visited[head] = stamp;
+						nextArc[head] = graph.getFirstArc(head);
+						next = head;
+						break;
+					}
+				}
+				if (next != -1) {
+					current = next;
+				}else if (depth == 0) {
+					break;
+				}else {
+					current = graph.getTail(pathArcs[--depth]);
+				}
+			}
+			if (current != sink) {
+				continue;
+			}
+
+			graph.push(sourceArc[student], 1);
+			graph.push(arc, 1);
+			for (int i = 0; i < depth; i++) {
+				graph.push(pathArcs[i], 1);
+			}
+			pushed++;
+		}
+		return pushed;
+	}
+}
@@ -0,0 +1,213 @@
+package matcher;
+
+import java.util.Arrays;
+
+/**
+ * Binary min heap of node indexes keyed on an integer distance, supporting decrease key.
+ * <br>
+ * All storage is allocated once for a fixed number of nodes and reused between searches,
+ * so inserting, decreasing and polling never allocate. Ties are broken on the lowest node index.
+ * <br>
+ * A heap can instead be ordered by a {@link NodeOrder} for keys the heap can't hold as an integer,
+ * such as the cost vectors of {@link LexicographicMinCostFlow}. The caller then keeps the keys and
+ * tells the heap when one has decreased.
+ *
+ * @author Robert Cobb <br>
+ * Bath University<br>
+ * Email: rbc31@bath.ac.uk
+ */
+class IndexedMinHeap {
+
+	/**
+	 * An order over node indexes, for keys kept outside the heap
+	 */
+	interface NodeOrder {
+
+		/**
+		 * Compares the keys of two nodes
+		 * @param a - The first node
+		 * @param b - The second node
+		 * @return Less than 0, 0 or more than 0 as the key of a is less than, equal to or more than the key of b
+		 */
+		int compare(int a, int b);
+	}
+
+	/**
+	 * The nodes in heap order
+	 */
+	private final int [] heap;
+
+	/**
+	 * The position of each node in the heap, -1 if the node is not in the heap
+	 */
+	private final int [] position;
+
+	/**
+	 * The key of each node in the heap, null if the heap is ordered by {@link #order}
+	 */
+	private final int [] keys;
+
+	/**
+	 * The order of the nodes when the keys are kept by the caller, null if they are kept in {@link #keys}
+	 */
+	private final NodeOrder order;
+
+	/**
+	 * The number of nodes currently in the heap
+	 */
+	private int size;
+
+	/**
+	 * Creates an empty heap that can hold the nodes 0 to capacity-1
+	 * @param capacity - The number of nodes the heap can hold
+	 */
+	IndexedMinHeap(int capacity) {
+		this.heap 		= new int[capacity];
+		this.position 	= new int[capacity];
+		this.keys 		= new int[capacity];
+		this.order 		= null;
+		this.size 		= 0;
+		Arrays.fill(position, -1);
+	}
+
+	/**
+	 * Creates an empty heap that can hold the nodes 0 to capacity-1, ordered by keys the caller keeps
+	 * @param capacity - The number of nodes the heap can hold
+	 * @param order - The order of the nodes, which must not change for a node while it is in the heap
+	 * unless {@link #decreased(int)} is called
+	 */
+	IndexedMinHeap(int capacity, NodeOrder order) {
+		this.heap 		= new int[capacity];
+		this.position 	= new int[capacity];
+		this.keys 		= null;
+		this.order 		= order;
+		this.size 		= 0;
+		Arrays.fill(position, -1);
+	}
+
+	/**
+	 * Returns true if the heap holds no nodes
+	 * @return true if the heap is empty
+	 */
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Removes all nodes from the heap
+	 */
+	void clear() {
+		for (int i=0;i<size;i++) {
+			position[heap[i]] = -1;
+		}
+		size = 0;
+	}
+
+	/**
+	 * Inserts the node with the given key, or lowers its key if it is already in the heap
+	 * with a larger key
+	 * @param node - The node to insert
+	 * @param key - The key of the node
+	 */
+	void insertOrDecrease(int node, int key) {
+		int pos = position[node];
+		if (pos == -1) {
+			pos = size++;
+			heap[pos] = node;
+			position[node] = pos;
+		}else if (key >= keys[node]) {
+			return;
+		}
+		keys[node] = key;
+		siftUp(pos);
+	}
+
+	/**
+	 * Inserts a node into a heap ordered by a {@link NodeOrder}, or restores the heap order if the node
+	 * is already in it and its key has decreased
+	 * @param node - The node whose key is new or has decreased
+	 */
+	void decreased(int node) {
+		int pos = position[node];
+		if (pos == -1) {
+			pos = size++;
+			heap[pos] = node;
+			position[node] = pos;
+		}
+		siftUp(pos);
+	}
+
+	/**
+	 * Removes and returns the node with the smallest key
+	 * @return The node with the smallest key
+	 */
+	int poll() {
+		int top = heap[0];
+		position[top] = -1;
+		size--;
+		if (size > 0) {
+			heap[0] = heap[size];
+			position[heap[0]] = 0;
+			siftDown(0);
+		}
+		return top;
+	}
+
+	/**
+	 * Returns true if node a should be above node b in the heap
+	 * @param a - The first node
+	 * @param b - The second node
+	 * @return true if a has a smaller key, or the same key and a lower index
+	 */
+	private boolean less(int a, int b) {
+		if (order != null) {
+			int compare = order.compare(a, b);
+			return compare < 0 || (compare == 0 && a < b);
+		}
+		return keys[a] < keys[b] || (keys[a] == keys[b] && a < b);
+	}
+
+	/**
+	 * Moves the node at the given position up until the heap order is restored
+	 * @param pos - The position of the node to move
+	 */
+	private void siftUp(int pos) {
+		int node = heap[pos];
+		while (pos > 0) {
+			int parent = (pos - 1) >> 1;
+			if (!less(node, heap[parent])) {
+				break;
+			}
+			heap[pos] = heap[parent];
+			position[heap[pos]] = pos;
+			pos = parent;
+		}
+		heap[pos] = node;
+		position[node] = pos;
+	}
+
+	/**
+	 * Moves the node at the given position down until the heap order is restored
+	 * @param pos - The position of the node to move
+	 */
+	private void siftDown(int pos) {
+		int node = heap[pos];
+		while (true) {
+			int child = 2 * pos + 1;
+			if (child >= size) {
+				break;
+			}
+			if (child + 1 < size && less(heap[child+1], heap[child])) {
+				child++;
+			}
+			if (!less(heap[child], node)) {
+				break;
+			}
+			heap[pos] = heap[child];
+			position[heap[pos]] = pos;
+			pos = child;
+		}
+		heap[pos] = node;
+		position[node] = pos;
+	}
+}
@@ -0,0 +1,262 @@
+package matcher;
+
+import java.util.Arrays;
+import java.util.logging.Logger;
+
+/**
+ * Jonker-Volgenant shortest augmenting path solver for allocation shaped networks.
+ * <br>
+ * When the network is an {@link AssignmentNetwork}, which is the case whenever the topic area caps
+ * can't bind (a capped percentage of 100 for example), supervisor capacity is expanded into one
+ * column per place and the allocation is solved as a dense rectangular assignment problem. Each
+ * student row also has a dummy column of its own for staying unallocated, priced so that the
+ * number of students allocated is maximised first. Most rows are assigned by row reduction, the rest
+ * are added one at a time, each with a Dijkstra search over the dense rows of reduced costs, keeping
+ * dual prices on the rows and columns.
+ * Otherwise the solve falls back to {@link MinCostMaxFlow}.
+ *
+ * @author Robert Cobb <br>
+ * Bath University<br>
+ * Email: rbc31@bath.ac.uk
+ */
+public class JonkerVolgenantMinCostFlow implements FlowSolver {
+
+	/**
+	 * The logger for this class
+	 */
+	private static Logger logger = Logger.getLogger(JonkerVolgenantMinCostFlow.class.getName());
+
+	/**
+	 * Cost marking a student and column that can't be paired
+	 */
+	private static final long FORBIDDEN = Long.MAX_VALUE;
+
+	/**
+	 * The solvers working copy of the network, the flow found is kept on its arcs
+	 */
+	private final ResidualGraph graph;
+
+	/**
+	 * The solver the last solve fell back to, null if it was solved as an assignment
+	 */
+	private MinCostMaxFlow fallback;
+
+	/**
+	 * The network seen as an assignment, null until it is solved as one
+	 */
+	private AssignmentNetwork assignment;
+
+	/**
+	 * The dual price of each row of the last assignment solved
+	 */
+	private long [] rowPrice;
+
+	/**
+	 * The dual price of each column of the last assignment solved
+	 */
+	private long [] columnPrice;
+
+	/**
+	 * Creates a solver for the given network.
+	 * The network is copied, so one network may be shared by several solvers running on
+	 * different threads as long as it is not modified while they are being created.
+	 * @param network - The network to solve, any flow already on it is replaced
+	 */
+	public JonkerVolgenantMinCostFlow(ResidualGraph network) {
+		this.graph = network.copy();
+	}
+
+	/**
+	 * Gets the maximum flow, minimum cost solution from source to sink
+	 * @param source - The index of the source node in the graph
+	 * @param sink - The index of the sink node in the graph
+	 * @return The result of the solve holding the total flow, the total cost and the flow on each arc
+	 */
+	@Override
+	public FlowResult solve(int source, int sink) {
+		graph.clearFlow();
+		fallback = null;
+		assignment = null;
+		AssignmentNetwork built = AssignmentNetwork.build(graph, source, sink);
+		if (built.getReason() != null) {
+			logger.info("Network can't be solved as an assignment (" + built.getReason() + "), falling back to successive shortest paths");
+			fallback = new MinCostMaxFlow(graph);
+			return fallback.solve(source, sink);
+		}
+		assignment = built;
+
+		int rows = assignment.studentCount;
+		int columns = assignment.slotCount + rows;
+		logger.info("Getting max flow by Jonker-Volgenant over a " + rows + " x " + columns + " cost matrix...");
+
+		//dense cost matrix, slot columns first then one dummy column per student
+		long [] cost = new long[rows * columns];
+		Arrays.fill(cost, FORBIDDEN);
+		for (int i = 0; i < rows; i++) {
+			for (int c = assignment.candidateStart[i]; c < assignment.candidateStart[i+1]; c++) {
+				int pool = assignment.candidatePool[c];
+				for (int slot = assignment.slotStart[pool]; slot < assignment.slotStart[pool+1]; slot++) {
+					cost[i * columns + slot] = assignment.candidateCost[c];
+				}
+			}
+			cost[i * columns + assignment.slotCount + i] = assignment.getAllocationValue();
+		}
+
+		rowPrice = new long[rows];
+		columnPrice = new long[columns];
+		int [] columnForRow = solveAssignment(cost, rows, columns, rowPrice, columnPrice);
+
+		for (int i = 0; i < rows; i++) {
+			if (columnForRow[i] < assignment.slotCount) {
+				assignment.allocate(graph, i, assignment.slotPool[columnForRow[i]], sink);
+			}
+		}
+
+		FlowResult result = new FlowResult(graph, source);
+		logger.info("Max flow of " + result.getTotalFlow() + " found at cost " + result.getTotalCost());
+		return result;
+	}
+
+	/**
+	 * Gets node potentials for the flow found, mapped from the row and column prices of the
+	 * assignment, see {@link AssignmentNetwork#getPotentials(ResidualGraph, long[], long[])}.
+	 * Free columns are never repriced and the prices of the others only fall, so every slot
+	 * price is at most 0 and an empty slot is priced 0 as the mapping needs
+	 * @return The potential of each node, null before the first solve or if they don't fit in an int
+	 */
+	@Override
+	public int [] getPotentials() {
+		if (fallback != null) {
+			return fallback.getPotentials();
+		}
+		if (assignment == null) {
+			return null;
+		}
+		return assignment.getPotentials(graph, rowPrice, Arrays.copyOf(columnPrice, assignment.slotCount));
+	}
+
+	/**
+	 * Solves a dense rectangular assignment problem, giving every row the column that minimises
+	 * the total cost. Row reduction first gives each row its cheapest column where it is still
+	 * free, the remaining rows are then added with a shortest augmenting path search over the
+	 * reduced costs. Ties between columns go to a free column so paths stay short.
+	 * @param cost - The row major cost matrix, {@link #FORBIDDEN} where a row can't take a column
+	 * @param rows - The number of rows
+	 * @param columns - The number of columns, at least the number of rows
+	 * @param rowPrice - Set to the dual price of each row
+	 * @param columnPrice - Set to the dual price of each column, the reduced cost of a pair is its cost
+	 * less the price of its row and column
+	 * @return The column assigned to each row
+	 */
+	private static int [] solveAssignment(long [] cost, int rows, int columns, long [] rowPrice, long [] columnPrice) {
+		int [] columnForRow = new int[rows];
+		int [] rowForColumn = new int[columns];
+		Arrays.fill(columnForRow, -1);
+		Arrays.fill(rowForColumn, -1);
+
+		long [] distance = new long[columns];
+		int [] pathRow 	 = new int[columns];
+		int [] remaining = new int[columns];
+		boolean [] scannedRow 	 = new boolean[rows];
+		boolean [] scannedColumn = new boolean[columns];
+
+		//row reduction, each row takes its cheapest column if no earlier row has it
+		for (int i = 0; i < rows; i++) {
+			int offset = i * columns;
+			int best = -1;
+			for (int j = 0; j < columns; j++) {
+				long c = cost[offset + j];
+				if (c != FORBIDDEN && (best == -1 || c < cost[offset + best] || (c == cost[offset + best] && rowForColumn[best] != -1 && rowForColumn[j] == -1))) {
+					best = j;
+				}
+			}
+			if (best == -1) {
+				throw new IllegalStateException("Assignment problem has no feasible solution");
+			}
+			rowPrice[i] = cost[offset + best];
+			if (rowForColumn[best] == -1) {
+				rowForColumn[best] = i;
+				columnForRow[i] = best;
+			}
+		}
+
+		for (int current = 0; current < rows; current++) {
+			if (columnForRow[current] != -1) {
+				continue;
+			}
+			Arrays.fill(distance, FORBIDDEN);
+			Arrays.fill(pathRow, -1);
+			Arrays.fill(scannedRow, false);
+			Arrays.fill(scannedColumn, false);
+			for (int j = 0; j < columns; j++) {
+				remaining[j] = columns - j - 1;
+			}
+			int remainingCount = columns;
+
+			long shortest = 0;
+			int row = current;
+			int sinkColumn = -1;
+			while (sinkColumn == -1) {
+				scannedRow[row] = true;
+				int offset = row * columns;
+				int bestIndex = -1;
+				long lowest = FORBIDDEN;
+				for (int k = 0; k < remainingCount; k++) {
+					int j = remaining[k];
+					long c = cost[offset + j];
+					if (c != FORBIDDEN) {
+						long reduced = shortest + c - rowPrice[row] - columnPrice[j];
+						if (reduced < distance[j]) {
+							pathRow[j] = row;
+							distance[j] = reduced;
+						}
+					}
+					if (distance[j] < lowest || (distance[j] == lowest && lowest != FORBIDDEN && rowForColumn[j] == -1)) {
+						lowest = distance[j];
+						bestIndex = k;
+					}
+				}
+				if (bestIndex == -1) {
+					throw new IllegalStateException("Assignment problem has no feasible solution");
+				}
+
+				shortest = lowest;
+				int j = remaining[bestIndex];
+				scannedColumn[j] = true;
+				remaining[bestIndex] = remaining[--remainingCount];
+				if (rowForColumn[j] == -1) {
+					sinkColumn = j;
+				}else {
+					row = rowForColumn[j];
+				}
+			}
+
+			//update the prices so every reduced cost stays non negative
+			rowPrice[current] += shortest;
+			for (int i = 0; i < rows; i++) {
+				if (scannedRow[i] && i != current) {
+					rowPrice[i] += shortest - distance[columnForRow[i]];
+				}
+			}
+			for (int j = 0; j < columns; j++) {
+				if (scannedColumn[j]) {
+					columnPrice[j] -= shortest - distance[j];
+				}
+			}
+
+			//augment back along the path
+			int j = sinkColumn;
+			while (true) {
+				int i = pathRow[j];
+				rowForColumn[j] = i;
+				int previous = columnForRow[i];
+				columnForRow[i] = j;
+				if (i == current) {
+					break;
+				}
+				j = previous;
+			}
+		}
+		return columnForRow;
+	}
+}
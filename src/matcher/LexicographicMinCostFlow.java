@@ -0,0 +1,267 @@
+package matcher;
+
+import java.util.logging.Logger;
+
+/**
+ * Min cost max flow solver for a lexicographic objective, for example as many students as possible
+ * on their first choice, then as many as possible on their second choice and so on, without
+ * folding the objective into one cost with exponentially separated weights.
+ * <br>
+ * Each arc is given a level, for a student's arc the rank of the choice it stands for. The cost
+ * of an arc on level L is the vector with a 1 in each of its first L places, so the cost of a flow
+ * holds in place k the number of units on arcs above level k. For a maximum flow of value F that is
+ * F less the units on levels 0 to k, and the lexicographically smallest cost has the most units on
+ * level 0, then the most on level 1 and so on.
+ * <br>
+ * Vectors under lexicographic order can be added and compared like integers, so successive shortest
+ * paths with node potentials work unchanged over them. Each entry only ever counts units of flow,
+ * so nothing can overflow however many levels there are.
+ *
+ * @author Robert Cobb <br>
+ * Bath University<br>
+ * Email: rbc31@bath.ac.uk
+ */
+public class LexicographicMinCostFlow implements FlowSolver {
+
+	/**
+	 * The logger for this class
+	 */
+	private static Logger logger = Logger.getLogger(LexicographicMinCostFlow.class.getName());
+
+	/**
+	 * The graph being solved, a copy of the network with no flow on it
+	 */
+	private final ResidualGraph graph;
+
+	/**
+	 * The level of each forward arc, indexed by arc / 2
+	 */
+	private final int [] levels;
+
+	/**
+	 * The number of places in each cost vector, the highest level
+	 */
+	private final int dimension;
+
+	/**
+	 * The potential of each node, dimension places per node
+	 */
+	private final long [] potentials;
+
+	/**
+	 * The distance of each node found by the last search, dimension places per node
+	 */
+	private final long [] dist;
+
+	/**
+	 * true for each node the last search reached
+	 */
+	private final boolean [] reached;
+
+	/**
+	 * true for each node the last search settled
+	 */
+	private final boolean [] settled;
+
+	/**
+	 * The arc used to reach each node by the last search
+	 */
+	private final int [] parentArcs;
+
+	/**
+	 * The nodes waiting to be settled, ordered by distance
+	 */
+	private final IndexedMinHeap heap;
+
+	/**
+	 * Scratch space for the distance through the arc being relaxed
+	 */
+	private final long [] candidate;
+
+	/**
+	 * Creates a lexicographic solver
+	 * @param network - The network to solve, copied. Any flow on it is ignored and its costs are only
+	 * used for the total cost reported
+	 * @param levels - The level of each forward arc, indexed by arc / 2, from 0 to dimension
+	 * @param dimension - The highest level
+	 * @throws IllegalArgumentException Thrown if there is not a level for each arc or a level is out of range
+	 */
+	public LexicographicMinCostFlow(ResidualGraph network, int [] levels, int dimension) throws IllegalArgumentException {
+		if (levels.length != network.getArcCount() / 2) {
+			throw new IllegalArgumentException("Expected " + network.getArcCount() / 2 + " levels but got " + levels.length);
+		}
+		for (int level : levels) {
+			if (level < 0 || level > dimension) {
+				throw new IllegalArgumentException("Level <" + level + "> is not between 0 and " + dimension);
+			}
+		}
+		this.graph 		= network.copy();
+		this.graph.clearFlow();
+		this.levels 	= levels.clone();
+		this.dimension 	= dimension;
+
+		int n = graph.getNodeCount();
+		this.potentials = new long[n * dimension];
+		this.dist 		= new long[n * dimension];
+		this.reached 	= new boolean[n];
+		this.settled 	= new boolean[n];
+		this.parentArcs = new int[n];
+		this.heap 		= new IndexedMinHeap(n, new IndexedMinHeap.NodeOrder() {
+			@Override
+			public int compare(int a, int b) {
+				return LexicographicMinCostFlow.this.compare(dist, a * dimension, dist, b * dimension);
+			}
+		});
+		this.candidate 	= new long[dimension];
+	}
+
+	/**
+	 * Gets the maximum flow with the lexicographically smallest cost from source to sink.
+	 * Every arc cost is non negative so the search starts from potentials of 0
+	 * @param source - The index of the source node in the graph
+	 * @param sink - The index of the sink node in the graph
+	 * @return The result of the solve, its total cost is found with the costs of the network
+	 */
+	@Override
+	public FlowResult solve(int source, int sink) {
+		logger.info("Getting lexicographic max flow over " + graph.getNodeCount() + " nodes, " + graph.getArcCount() + " arcs and " + dimension + " levels...");
+		int paths = 0;
+		while (getCheapestPath(source, sink)) {
+			int amount = Integer.MAX_VALUE;
+			for (int node = sink; node != source; node = graph.getTail(parentArcs[node])) {
+				amount = Math.min(amount, graph.getResidual(parentArcs[node]));
+			}
+			for (int node = sink; node != source; node = graph.getTail(parentArcs[node])) {
+				graph.push(parentArcs[node], amount);
+			}
+			paths++;
+		}
+		FlowResult result = new FlowResult(graph, source);
+		logger.info("Lexicographic max flow of " + result.getTotalFlow() + " found using " + paths + " augmenting paths");
+		return result;
+	}
+
+	/**
+	 * Gets the units of flow on the arcs of each level
+	 * @return The units of flow on each level, indexed by level. Level 0 counts every unit on
+	 * every arc on it, so for the allocation graph it includes the arcs from the source and to the sink
+	 */
+	public int [] getLevelCounts() {
+		int [] counts = new int[dimension + 1];
+		for (int arc = 0; arc < graph.getArcCount(); arc += 2) {
+			counts[levels[arc >> 1]] += graph.getFlow(arc);
+		}
+		return counts;
+	}
+
+	/**
+	 * The potentials kept are vectors over the levels, and the flow found is not of minimum cost
+	 * for the scalar costs of the network, so there are none to give
+	 * @return null
+	 */
+	@Override
+	public int [] getPotentials() {
+		return null;
+	}
+
+	/**
+	 * Gets the potential vectors the solver finished with, under which every arc with residual
+	 * capacity has a lexicographically non negative reduced cost vector
+	 * @return The potentials, dimension places per node
+	 */
+	public long [] getLevelPotentials() {
+		return potentials.clone();
+	}
+
+	/**
+	 * Gets one place of the cost vector of an arc
+	 * @param levels - The level of each forward arc, indexed by arc / 2
+	 * @param arc - The arc index, a reverse arc has the negated cost of its forward arc
+	 * @param place - The place in the vector
+	 * @return The cost in that place, 1, 0 or -1
+	 */
+	static int getCost(int [] levels, int arc, int place) {
+		if (levels[arc >> 1] <= place) {
+			return 0;
+		}
+		return (arc & 1) == 0 ? 1 : -1;
+	}
+
+	/**
+	 * Finds the cheapest path from the source to the sink using Dijkstra over reduced cost vectors,
+	 * stopping once the sink is settled, then updates the potentials so reduced costs stay
+	 * lexicographically non negative
+	 * @param source - The index of the source node
+	 * @param sink - The index of the sink node
+	 * @return true if a path was found, parentArcs then holds the arc used to reach each node on it
+	 */
+	private boolean getCheapestPath(int source, int sink) {
+		int n = graph.getNodeCount();
+		for (int i = 0; i < n; i++) {
+			reached[i] = false;
+			settled[i] = false;
+		}
+		heap.clear();
+
+		reached[source] = true;
+		for (int k = 0; k < dimension; k++) {
+			dist[source * dimension + k] = 0;
+		}
+		heap.decreased(source);
+
+		while (!heap.isEmpty()) {
+			int current = heap.poll();
+			settled[current] = true;
+			if (current == sink) {
+				break;
+			}
+			for (int offset = graph.getFirstArc(current); offset < graph.getEndArc(current); offset++) {
+				int arc = graph.getAdjacentArc(offset);
+				int next = graph.getHead(arc);
+				if (settled[next] || graph.getResidual(arc) <= 0) {
+					continue;
+				}
+				for (int k = 0; k < dimension; k++) {
+					candidate[k] = dist[current * dimension + k] + getCost(levels, arc, k)
+							+ potentials[current * dimension + k] - potentials[next * dimension + k];
+				}
+				if (!reached[next] || compare(candidate, 0, dist, next * dimension) < 0) {
+					System.arraycopy(candidate, 0, dist, next * dimension, dimension);
+					parentArcs[next] = arc;
+					reached[next] = true;
+					heap.decreased(next);
+				}
+			}
+		}
+
+		if (!settled[sink]) {
+			return false;
+		}
+
+		//nodes beyond the sink were not settled, capping at the sink distance keeps reduced costs non negative
+		for (int i = 0; i < n; i++) {
+			int from = reached[i] && compare(dist, i * dimension, dist, sink * dimension) < 0 ? i : sink;
+			for (int k = 0; k < dimension; k++) {
+				potentials[i * dimension + k] += dist[from * dimension + k];
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Compares two vectors lexicographically
+	 * @param a - The array holding the first vector
+	 * @param aStart - The index of the first vector in its array
+	 * @param b - The array holding the second vector
+	 * @param bStart - The index of the second vector in its array
+	 * @return Less than 0, 0 or more than 0 as the first vector is less than, equal to or more than the second
+	 */
+	private int compare(long [] a, int aStart, long [] b, int bStart) {
+		for (int k = 0; k < dimension; k++) {
+			if (a[aStart + k] != b[bStart + k]) {
+				return a[aStart + k] < b[bStart + k] ? -1 : 1;
+			}
+		}
+		return 0;
+	}
+}
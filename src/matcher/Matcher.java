@@ -2,7 +2,9 @@ package matcher;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.logging.Logger;
 
 import org.json.JSONException;
@@ -10,14 +12,12 @@ import org.json.JSONException;
 import Exceptions.ConfigNotValidException;
 import Exceptions.CustomValidationException;
 import Exceptions.InvalidTypeException;
-import dataManager.Config;
 import dataManager.Students;
 import dataManager.Supervisors;
 import exceptions.StudentNotFoundException;
 import exceptions.SupervisorNotFoundException;
 import exceptions.UnexpectedException;
 import utils.GetStackTrace;
-import utils.MatchingUtils;
 
 /**
  * Class to perform all matching functions
@@ -56,250 +56,399 @@ public class Matcher {
 	 * @throws ConfigNotValidException Thrown if the config is not valid
 	 */ 
 	public static HashMap<String, String> allocate(Students students, Supervisors supervisors, int percentage, ArrayList<String> warnings) throws UnexpectedException, ConfigNotValidException{
+		return allocate(students, supervisors, percentage, warnings, SolverMode.SUCCESSIVE_SHORTEST_PATH);
+	}
+	
+	/**
+	 * Attempts to match the given set of students to the given set of superiors
+	 * whilst adhering to supervisor and topic area hard constraints and maximising
+	 * student preferences, using the given min cost max flow algorithm.
+	 * 
+	 * @param students - The student object that holds the student to match
+	 * @param supervisors - The supervisor object that holds the supervisors 
+	 * to match student to
+	 * @param percentage - The percentage to cap the topic areas at
+	 * for example if set to 5, only 5 percent of students will be allowed
+	 * to have matching with any of the topic areas
+	 * @param warnings A non null ArrayList of string. warnings will be added to this list and 
+	 * the caller should monitor this variable for warnings
+	 * @param mode - The algorithm used to solve the flow network. Every mode finds an allocation
+	 * of the same size and cost, but where there are ties the allocation chosen may differ
+	 * @return The matching found as a hashmap of students to supervisors
+	 * a set of key value pairs where the key is the student username
+	 * and the value is the supervisor name they are matched to.
+	 * Note: that a student who was not matched will not have a value in the
+	 * hashmap
+	 * @throws UnexpectedException Thrown if an unexpected exception occurred
+	 * @throws ConfigNotValidException Thrown if the config is not valid
+	 */ 
+	public static HashMap<String, String> allocate(Students students, Supervisors supervisors, int percentage, ArrayList<String> warnings, SolverMode mode) throws UnexpectedException, ConfigNotValidException{
+		return allocate(students, supervisors, percentage, warnings, mode, null);
+	}
+	
+	/**
+	 * Attempts to match the given set of students to the given set of superiors
+	 * whilst adhering to supervisor and topic area hard constraints and maximising
+	 * student preferences, using the given min cost max flow algorithm, and reports
+	 * why any students were left unallocated.
+	 * 
+	 * @param students - The student object that holds the student to match
+	 * @param supervisors - The supervisor object that holds the supervisors 
+	 * to match student to
+	 * @param percentage - The percentage to cap the topic areas at
+	 * for example if set to 5, only 5 percent of students will be allowed
+	 * to have matching with any of the topic areas
+	 * @param warnings A non null ArrayList of string. warnings will be added to this list and 
+	 * the caller should monitor this variable for warnings
+	 * @param mode - The algorithm used to solve the flow network. Every mode finds an allocation
+	 * of the same size and cost, but where there are ties the allocation chosen may differ
+	 * @param blocking - A list to add a group to for each set of unallocated students blocked by the same
+	 * full supervisors, nat sci places and topic areas, read from the solved flow. null to skip
+	 * @return The matching found as a hashmap of students to supervisors
+	 * a set of key value pairs where the key is the student username
+	 * and the value is the supervisor name they are matched to.
+	 * Note: that a student who was not matched will not have a value in the
+	 * hashmap
+	 * @throws UnexpectedException Thrown if an unexpected exception occurred
+	 * @throws ConfigNotValidException Thrown if the config is not valid
+	 */ 
+	public static HashMap<String, String> allocate(Students students, Supervisors supervisors, int percentage, ArrayList<String> warnings, SolverMode mode, ArrayList<BlockingGroup> blocking) throws UnexpectedException, ConfigNotValidException{
+		return allocate(students, supervisors, percentage, warnings, mode, blocking, FeasibilityCheck.NONE);
+	}
+	
+	/**
+	 * Attempts to match the given set of students to the given set of superiors
+	 * whilst adhering to supervisor and topic area hard constraints and maximising
+	 * student preferences, using the given min cost max flow algorithm, and reports
+	 * why any students were left unallocated. Optionally first checks how many students
+	 * can be matched at all, as {@link #checkFeasibility(Students, Supervisors, int, ArrayList)}
+	 * does, over the same graph so it is only built once.
+	 * 
+	 * @param students - The student object that holds the student to match
+	 * @param supervisors - The supervisor object that holds the supervisors 
+	 * to match student to
+	 * @param percentage - The percentage to cap the topic areas at
+	 * for example if set to 5, only 5 percent of students will be allowed
+	 * to have matching with any of the topic areas
+	 * @param warnings A non null ArrayList of string. warnings will be added to this list and 
+	 * the caller should monitor this variable for warnings
+	 * @param mode - The algorithm used to solve the flow network. Every mode finds an allocation
+	 * of the same size and cost, but where there are ties the allocation chosen may differ
+	 * @param blocking - A list to add a group to for each set of unallocated students blocked by the same
+	 * full supervisors, nat sci places and topic areas, read from the solved flow. null to skip
+	 * @param check - Whether to check feasibility first, and whether to stop after doing so
+	 * @return The matching found as a hashmap of students to supervisors
+	 * a set of key value pairs where the key is the student username
+	 * and the value is the supervisor name they are matched to.
+	 * Note: that a student who was not matched will not have a value in the
+	 * hashmap. Empty if the check is {@link FeasibilityCheck#ONLY}
+	 * @throws UnexpectedException Thrown if an unexpected exception occurred
+	 * @throws ConfigNotValidException Thrown if the config is not valid
+	 */ 
+	public static HashMap<String, String> allocate(Students students, Supervisors supervisors, int percentage, ArrayList<String> warnings, SolverMode mode, ArrayList<BlockingGroup> blocking, FeasibilityCheck check) throws UnexpectedException, ConfigNotValidException{
 		try {
+			AllocationGraph network = AllocationGraph.build(students, supervisors, percentage, warnings);
+			ResidualGraph graph = network.graph;
 			
-			//Check that all student chose valid supervisors
-			
-			for (int i=0;i<students.size();i++) {
-				for (int j=0;j<students.getNumOfPreferenceChoice();j++) {
-					try {
-						supervisors.getIndex(students.getChoice(i, j));
-					}catch (SupervisorNotFoundException e) {
-						warnings.add("Student <" + students.getName(i) + "> chose a non existant supervisor <" + students.getChoice(i, j) + ">");
-					}
+			if (check != FeasibilityCheck.NONE) {
+				checkFeasibility(network, students.size(), warnings);
+				if (check == FeasibilityCheck.ONLY) {
+					return new HashMap<String, String>();
 				}
+				//the solve starts from the greedy warm start, not from the max flow
+				graph.clearFlow();
 			}
 			
+			//warm start from each student in turn getting their best choice that still has room,
+			//first choices first, so the solver only has to repair the cost and place the rest
+			long solveStart = System.nanoTime();
+			int greedy = GreedyFlow.push(graph, 0, network.sinkNode, network.getChoiceOrder());
+			logger.info("Greedy warm start placed " + greedy + " of " + students.size() + " students");
 			
+			logger.info("Performing match using " + mode + "...");
+			FlowSolver solver = mode.createSolver(graph);
+			FlowResult result = solver.solve(0, network.sinkNode);
+			logger.info("Match using " + mode + " took " + (System.nanoTime() - solveStart) / 1000000 + "ms");
 			
+			//check the flow against the network, and that it is optimal where the solver gives its potentials
+			FlowVerifier.check(graph, result, 0, network.sinkNode, solver.getPotentials(), mode.toString());
 			
-			String [] TOPIC_AREAS = Config.getConfig().getStrListValue(Config.MATCHING_TOPIC_AREAS);
-			logger.info("Narrow run stated with capped percentage of "+percentage);
-			// Nodes = source + student + supervisors + categories + sinks
-			
-			//set up list of nodes
-			ArrayList<String> nodeNames 			= new ArrayList<String>();
-			HashMap<String,Integer>  nodeNamesMap 	= new HashMap<String,Integer>();
-			
-			// ** Construct node name list
-			logger.info("Construct node name list");
-			nodeNames.add("source"); //source node is number 1
-			
-			int studentStartIndex = 1;
-			logger.info("Adding students to node name list");
-			for (int i =0;i<students.size();i++) {
-				logger.info("Adding <"+students.getUsername(i)+'>');
-				nodeNames.add(students.getUsername(i));
-			}
-			int studentLastIndex = nodeNames.size();//first supervisor index, before is students
-			
-			int supervisorStartIndex = studentLastIndex;
-			logger.info("Adding supervisros to node name list");
-			for (int i =0;i<supervisors.size();i++) {
-				logger.info("Adding <"+supervisors.getSupervisorName(i) +'>');
-				nodeNames.add(supervisors.getSupervisorName(i));
-			}
-			int superviosrLastIndex  = nodeNames.size();
-			
-			int supervisorNatSciStartIndex = superviosrLastIndex;
-			logger.info("Adding all supervisors again as natural science supervisors to node name list");
-			for (int i =0;i<supervisors.size();i++) {
-				logger.info("Adding <"+supervisors.getSupervisorName(i)+" nat_sci" +'>');
-				nodeNames.add(supervisors.getSupervisorName(i)+" nat_sci");
-			}
-			int supervisorNatSciLastIndex  = nodeNames.size();
-			
-			int topicAreaStartIndex = supervisorNatSciLastIndex;
-			logger.info("Adding topic areas to node name list");
-			for (int i=0;i<TOPIC_AREAS.length;i++) {
-				logger.info("Adding <"+TOPIC_AREAS[i] +'>');
-				nodeNames.add(TOPIC_AREAS[i]);
-			}
-			int topicAreaLastIndex  = nodeNames.size();
-			
-			nodeNames.add("sink");
-			logger.info("Adding sink");
-			
-			
-			// ** Creating node map
-			for (int i=0;i<nodeNames.size();i++) {
-				if (nodeNamesMap.get(nodeNames.get(i)) == null) {
-					nodeNamesMap.put(nodeNames.get(i), i);
-				}else {
-					logger.severe("Collision in node creation");
-					throw new UnexpectedException("Internal Error: Collision in node creation map");
-				}
-			}
-			
-			
-			// ** Creating capacities matrix
-			int [] [] capacities = new int [nodeNames.size()][nodeNames.size()];
-			
-			logger.info("Setting source to student capacities to 1");
-			//set capacities from source to student nodes to 1
-			for (int i=studentStartIndex;i<studentLastIndex;i++) {
-				capacities[0][i] = 1;
-			}
-			
-			
-			for (int i=0;i<students.size();i++) {
-				String student = students.getUsername(i);
-				
-				for (int j=0;j<supervisors.size();j++) {
-					String supervisor = supervisors.getSupervisorName(j);
-					
-					int flow = MatchingUtils.getFlowBetween(students, supervisors, student, supervisor);
-					
-					if (flow > 0) {
-						String supervisorNodeName = supervisor;
-						if (students.isNatSci(student)) {
-							supervisorNodeName += " nat_sci";
-						}
-						
-						logger.info("Setting <"+student+"> to match with "+supervisorNodeName);
-						try {
-							capacities[nodeNamesMap.get(student)][nodeNamesMap.get(supervisorNodeName)] = flow;	
-						}catch (IndexOutOfBoundsException e) {
-							logger.severe("IndexOutOfBoundsException when trying to set capacity edge of <" +
-									student + "> and <" + supervisorNodeName +'>');
-							throw new UnexpectedException("Internal error: failed to find arc between <" +
-									student + "> and <" + supervisorNodeName +'>');
-						}
-						
-					}
-					
-				}
-			}
-			
-			//** add capacities from supervisor nat sci node to master supervisor node
-			logger.info("Linking supervisor nat sci notes to master nodes...");
-			for (int i=supervisorNatSciStartIndex;i<supervisorNatSciLastIndex;i++) {
-				String slaveNodeName = nodeNames.get(i);
-				String masterNodeName = slaveNodeName.replace(" nat_sci", "").trim();
-				int index = supervisors.getIndex(masterNodeName);
-				
-				int masterNode = nodeNamesMap.get(masterNodeName);
-				
-				if (masterNode == -1) {
-					logger.severe("Failed to find master node for <"+masterNodeName+'>');
-					throw new UnexpectedException("Failed to find master node for <"+masterNodeName+'>');
-				}
-				
-				capacities[i][masterNode] = supervisors.getSupervisorCapcity(index)-1;
-				logger.info("setting capacity from "+slaveNodeName + " to "+masterNodeName + " at " +(supervisors.getSupervisorCapcity(index)-1));
-			}
-			
-			
-			logger.info("Connecting supervisor to topic areas");
-			for (int i=0;i<supervisors.size();i++) {
-				String topicArea = supervisors.getSupervisorTopic(i).toLowerCase();
-				
-				//check the topic area is valid
-				boolean valid = false;
-				for (int j=0;j<TOPIC_AREAS.length;j++) {
-					if (topicArea.equals(TOPIC_AREAS[j])) {
-						valid = true;
-						break;
-					}
-				}
-				
-				if (valid) {
-					int topicAreaNodeNum = nodeNamesMap.get(topicArea);
-					
-					//set capacity equal to lab capacity
-					capacities[supervisorStartIndex+i][topicAreaNodeNum] = supervisors.getSupervisorCapcity(i);
-				}else {
-					warnings.add("Topic Area <"+topicArea+"> is not recognised for supervisor <"+ supervisors.getSupervisorName(i) +'>');
+			if (blocking != null) {
+				blocking.addAll(network.getBlockingGroups(result));
+				for (BlockingGroup group : blocking) {
+					logger.info(group.toString());
 				}
 			}
 			
+			//** Interpret matching data into return hashmap
+			return network.getMatch(result);
+		}catch (StudentNotFoundException e) {
+			logger.severe("Encountered an unexpected StudentNotFoundException when performing a narror run");
+			logger.severe("Stack trace: " + GetStackTrace.getStackTrace(e));
+			throw new UnexpectedException(e);
+		} catch (IOException | JSONException | CustomValidationException | InvalidTypeException | ConfigNotValidException e) {
+			logger.severe("Encountered an exception when performing a narror run");
+			logger.severe("Stack trace: " + GetStackTrace.getStackTrace(e));
+			throw new ConfigNotValidException(e);
+		} catch (SupervisorNotFoundException e) {
+			logger.severe("Encountered an unexpected SupervisorNotFoundException when performing a narror run");
+			logger.severe("Stack trace: " + GetStackTrace.getStackTrace(e));
+			throw new UnexpectedException(e);
+		}
+	}
 	
-			// ** Setting capacities from topic areas to sink
-			int sinkNode = nodeNames.size()-1;// sink node is last node
+	/**
+	 * Attempts to match the given set of students to the given set of superiors in the same way
+	 * as {@link #allocate(Students, Supervisors, int, ArrayList)}, but with students of identical
+	 * profiles merged into one node before solving, see {@link CompressedAllocation}. The allocation
+	 * found is of the same size and cost, where there are ties students earlier in the student data
+	 * get the cheaper supervisors of their group
+	 * 
+	 * @param students - The student object that holds the student to match
+	 * @param supervisors - The supervisor object that holds the supervisors 
+	 * to match student to
+	 * @param percentage - The percentage to cap the topic areas at
+	 * @param warnings A non null ArrayList of string. warnings will be added to this list and 
+	 * the caller should monitor this variable for warnings
+	 * @return The matching found as a hashmap of students to supervisors,
+	 * a student who was not matched will not have a value in the hashmap
+	 * @throws UnexpectedException Thrown if an unexpected exception occurred
+	 * @throws ConfigNotValidException Thrown if the config is not valid
+	 */
+	public static HashMap<String, String> allocateCompressed(Students students, Supervisors supervisors, int percentage, ArrayList<String> warnings) throws UnexpectedException, ConfigNotValidException {
+		try {
+			AllocationGraph network = AllocationGraph.build(students, supervisors, percentage, warnings);
 			
-			//calculate the capacity for each topic area
-			double capacity = ((double)students.size()/100) * percentage;
-			logger.info("Capacity of topic area is <" + (int)Math.floor(capacity)+'>');
+			long solveStart = System.nanoTime();
+			CompressedAllocation compressed = new CompressedAllocation(network);
+			MinCostMaxFlow solver = new MinCostMaxFlow(compressed.graph);
+			FlowResult result = solver.solve(0, compressed.sinkNode);
+			logger.info("Compressed match over " + compressed.getGroupCount() + " groups took " + (System.nanoTime() - solveStart) / 1000000 + "ms");
 			
-			//add to matrix 
-			for (int i=topicAreaStartIndex;i< topicAreaLastIndex;i++) {
-				capacities[i][sinkNode] = (int) Math.floor(capacity);
+			FlowVerifier.check(compressed.graph, result, 0, compressed.sinkNode, solver.getPotentials(), "the compressed solve");
+			return compressed.getMatch(result);
+		}catch (StudentNotFoundException e) {
+			logger.severe("Encountered an unexpected StudentNotFoundException when performing a compressed run");
+			logger.severe("Stack trace: " + GetStackTrace.getStackTrace(e));
+			throw new UnexpectedException(e);
+		} catch (IOException | JSONException | CustomValidationException | InvalidTypeException | ConfigNotValidException e) {
+			logger.severe("Encountered an exception when performing a compressed run");
+			logger.severe("Stack trace: " + GetStackTrace.getStackTrace(e));
+			throw new ConfigNotValidException(e);
+		} catch (SupervisorNotFoundException e) {
+			logger.severe("Encountered an unexpected SupervisorNotFoundException when performing a compressed run");
+			logger.severe("Stack trace: " + GetStackTrace.getStackTrace(e));
+			throw new UnexpectedException(e);
+		}
+	}
+	
+	/**
+	 * Matches as many of the given students as possible, and of those allocations the one
+	 * with the most students on their first choice, then the most on their second choice and so on,
+	 * whatever the configured costs. Students matched on keywords or topic area come after every choice.
+	 * The objective is solved directly by {@link LexicographicMinCostFlow}, so there is no need for
+	 * exponentially separated choice weights, which overflow at scale
+	 * 
+	 * @param students - The student object that holds the student to match
+	 * @param supervisors - The supervisor object that holds the supervisors 
+	 * to match student to
+	 * @param percentage - The percentage to cap the topic areas at
+	 * @param warnings A non null ArrayList of string. warnings will be added to this list and 
+	 * the caller should monitor this variable for warnings
+	 * @return The matching found as a hashmap of students to supervisors,
+	 * a student who was not matched will not have a value in the hashmap
+	 * @throws UnexpectedException Thrown if an unexpected exception occurred
+	 * @throws ConfigNotValidException Thrown if the config is not valid
+	 */
+	public static HashMap<String, String> allocateRankMaximal(Students students, Supervisors supervisors, int percentage, ArrayList<String> warnings) throws UnexpectedException, ConfigNotValidException {
+		try {
+			AllocationGraph network = AllocationGraph.build(students, supervisors, percentage, warnings);
+			
+			long solveStart = System.nanoTime();
+			int [] levels = network.getArcLevels();
+			LexicographicMinCostFlow solver = new LexicographicMinCostFlow(network.graph, levels, students.getNumOfPreferenceChoice());
+			FlowResult result = solver.solve(0, network.sinkNode);
+			
+			//every other arc is on level 0 too, so the first choices are the students left over
+			int [] signature = solver.getLevelCounts();
+			signature[0] = result.getTotalFlow();
+			for (int i=1;i<signature.length;i++) {
+				signature[0] -= signature[i];
 			}
+			logger.info("Rank maximal match took " + (System.nanoTime() - solveStart) / 1000000 + "ms, students on each choice then on keywords or topic area: " 
+					+ Arrays.toString(signature));
 			
-			//logger.info("Capacity matrix created: \n"+ matrixToStr(capacities));
-			
-			int [] [] costs = new int [nodeNames.size()] [nodeNames.size()];
-			
-			logger.info("Creating cost matrix...");
+			FlowVerifier.checkLexicographic(network.graph, result, 0, network.sinkNode, levels, 
+					students.getNumOfPreferenceChoice(), solver.getLevelPotentials(), "the rank maximal solve");
+			return network.getMatch(result);
+		}catch (StudentNotFoundException e) {
+			logger.severe("Encountered an unexpected StudentNotFoundException when performing a rank maximal run");
+			logger.severe("Stack trace: " + GetStackTrace.getStackTrace(e));
+			throw new UnexpectedException(e);
+		} catch (IOException | JSONException | CustomValidationException | InvalidTypeException | ConfigNotValidException e) {
+			logger.severe("Encountered an exception when performing a rank maximal run");
+			logger.severe("Stack trace: " + GetStackTrace.getStackTrace(e));
+			throw new ConfigNotValidException(e);
+		} catch (SupervisorNotFoundException e) {
+			logger.severe("Encountered an unexpected SupervisorNotFoundException when performing a rank maximal run");
+			logger.severe("Stack trace: " + GetStackTrace.getStackTrace(e));
+			throw new UnexpectedException(e);
+		}
+	}
+	
+	/**
+	 * Finds how many of the given students can be matched at all under the supervisor capacities,
+	 * the nat sci places and the topic area caps, without matching them. Only a max flow is found,
+	 * ignoring preferences, so this is much cheaper than {@link #allocate(Students, Supervisors, int, ArrayList)}.
+	 * If not every student can be matched a warning is added
+	 * 
+	 * @param students - The student object that holds the student to match
+	 * @param supervisors - The supervisor object that holds the supervisors 
+	 * to match student to
+	 * @param percentage - The percentage to cap the topic areas at
+	 * @param warnings A non null ArrayList of string. warnings will be added to this list and 
+	 * the caller should monitor this variable for warnings
+	 * @return The number of students in the largest matching
+	 * @throws UnexpectedException Thrown if an unexpected exception occurred
+	 * @throws ConfigNotValidException Thrown if the config is not valid
+	 */
+	public static int checkFeasibility(Students students, Supervisors supervisors, int percentage, ArrayList<String> warnings) throws UnexpectedException, ConfigNotValidException {
+		try {
+			AllocationGraph network = AllocationGraph.build(students, supervisors, percentage, warnings);
+			return checkFeasibility(network, students.size(), warnings);
+		}catch (StudentNotFoundException e) {
+			logger.severe("Encountered an unexpected StudentNotFoundException when checking feasibility");
+			logger.severe("Stack trace: " + GetStackTrace.getStackTrace(e));
+			throw new UnexpectedException(e);
+		} catch (IOException | JSONException | CustomValidationException | InvalidTypeException | ConfigNotValidException e) {
+			logger.severe("Encountered an exception when checking feasibility");
+			logger.severe("Stack trace: " + GetStackTrace.getStackTrace(e));
+			throw new ConfigNotValidException(e);
+		} catch (SupervisorNotFoundException e) {
+			logger.severe("Encountered an unexpected SupervisorNotFoundException when checking feasibility");
+			logger.severe("Stack trace: " + GetStackTrace.getStackTrace(e));
+			throw new UnexpectedException(e);
+		}
+	}
+	
+	/**
+	 * Finds how many students can be matched at all over the given graph with a max flow,
+	 * adding a warning if not every student can be
+	 * @param network - The allocation graph, the max flow is left on it
+	 * @param studentCount - The number of students in the graph
+	 * @param warnings - The list to add the warning to
+	 * @return The number of students in the largest matching
+	 */
+	private static int checkFeasibility(AllocationGraph network, int studentCount, ArrayList<String> warnings) {
+		long checkStart = System.nanoTime();
+		int feasible = MaxFlow.getMaxFlow(network.graph, 0, network.sinkNode);
+		logger.info("Feasibility check found " + feasible + " of " + studentCount + " students can be matched in " 
+				+ (System.nanoTime() - checkStart) / 1000000 + "ms");
+		if (feasible < studentCount) {
+			warnings.add("Only " + feasible + " of " + studentCount + " students can be matched under the current "
+					+ "choices, capacities and capped percentage");
+		}
+		return feasible;
+	}
+	
+	/**
+	 * Matches the given students at each of the given capped percentages in one pass.
+	 * The graph is built once and the topic area caps raised step by step, each solve continuing
+	 * from the allocation found at the last percentage, so the whole curve costs about as much as
+	 * one full allocation.
+	 * 
+	 * @param students - The student object that holds the student to match
+	 * @param supervisors - The supervisor object that holds the supervisors 
+	 * to match student to
+	 * @param percentages - The percentages to cap the topic areas at, in any order
+	 * @param warnings A non null ArrayList of string. warnings will be added to this list and 
+	 * the caller should monitor this variable for warnings
+	 * @return The allocation found at each percentage, in increasing order of percentage
+	 * @throws UnexpectedException Thrown if an unexpected exception occurred
+	 * @throws ConfigNotValidException Thrown if the config is not valid
+	 */
+	public static ArrayList<SweepResult> sweep(Students students, Supervisors supervisors, int [] percentages, ArrayList<String> warnings) throws UnexpectedException, ConfigNotValidException {
+		ArrayList<SweepResult> results = new ArrayList<SweepResult>();
+		if (percentages.length == 0) {
+			return results;
+		}
+		int [] sorted = percentages.clone();
+		Arrays.sort(sorted);
+		
+		long sweepStart = System.nanoTime();
+		AllocationSession session = new AllocationSession(students, supervisors, sorted[0], warnings);
+		for (int i=0;i<sorted.length;i++) {
+			HashMap<String,String> match = i == 0 ? session.getMatch() : session.setPercentage(sorted[i]);
+			results.add(new SweepResult(sorted[i], match, session.getTotalCost(), session.getTopicAreaCounts()));
+			logger.info("Sweep " + results.get(i));
+		}
+		logger.info("Sweep over " + sorted.length + " percentages took " + (System.nanoTime() - sweepStart) / 1000000 + "ms");
+		return results;
+	}
+	
+	/**
+	 * Finds the smallest capped percentage at which as many students are matched as with no cap
+	 * on the topic areas, normally every student, and matches the students at it.
+	 * The percentage is found by a binary search in which each step only finds the size of the
+	 * largest matching with a max flow, ignoring preferences, so the min cost solve is run once,
+	 * at the percentage chosen
+	 * 
+	 * @param students - The student object that holds the student to match
+	 * @param supervisors - The supervisor object that holds the supervisors 
+	 * to match student to
+	 * @param warnings A non null ArrayList of string. warnings will be added to this list and 
+	 * the caller should monitor this variable for warnings
+	 * @return The smallest percentage found and the allocation at it
+	 * @throws UnexpectedException Thrown if an unexpected exception occurred
+	 * @throws ConfigNotValidException Thrown if the config is not valid
+	 */
+	public static SweepResult findMinimumPercentage(Students students, Supervisors supervisors, ArrayList<String> warnings) throws UnexpectedException, ConfigNotValidException {
+		try {
+			AllocationGraph network = AllocationGraph.build(students, supervisors, 100, warnings);
 			
-			for (int i=0;i<students.size();i++) {
-				String studentName = students.getUsername(i);
-				
-				for (int j=0;j<supervisors.size();j++) {
-					String supervisorName = supervisors.getSupervisorName(j);
-					
-					int cost = MatchingUtils.getCostBetween(students, supervisors, studentName, supervisorName);
-					
-					if (students.isNatSci(studentName)) {
-						supervisorName += " nat_sci";
-					}
-					int studentNode 	= nodeNamesMap.get(studentName);
-					int supervisorNode 	= nodeNamesMap.get(supervisorName);
-					
-					costs[studentNode][supervisorNode] = cost;
-					
-				}
-				
+			long searchStart = System.nanoTime();
+			int target = network.getMaxAllocation(100);
+			if (target < students.size()) {
+				warnings.add("Only " + target + " of " + students.size() + " students can be matched whatever the capped percentage");
 			}
 			
-			logger.info("Performing match...");
-			MinCostMaxFlow.getMaxFlow(capacities, costs, 0, sinkNode);
-			int [][] flow2 = MinCostMaxFlow.flow;
-			
-			
-			//** Interpret matching data into return hashmap
-			HashMap<String,String> match = new HashMap<String,String>();
-			
-			//for each student node
-			for (int i = studentStartIndex;i<studentLastIndex;i++) {
-				boolean matched = false;
-				//find the edge node they got matched too
-				for (int j=0;j<flow2[i].length;j++) {
-					if (flow2[i][j] == 1) {
-						if (matched) { // if 2 matches found log error
-							logger.severe("Student "+ nodeNames.get(i)+" matched twice");
-							throw new UnexpectedException("Error, student "+ nodeNames.get(i)+" matched twice!");
-						}else {//put matching in hashmap
-							matched = true;
-							match.put(nodeNames.get(i), nodeNames.get(j));
-						}
-					}
+			//the largest matching only grows with the percentage, so search for the first that reaches the target
+			int low = 0;
+			int high = 100;
+			while (low < high) {
+				int mid = (low + high) / 2;
+				if (network.getMaxAllocation(mid) == target) {
+					high = mid;
+				}else {
+					low = mid + 1;
 				}
 			}
-			
-			for (String username: match.keySet()) {
-				if (match.get(username).contains("nat_sci")) {
-					String temp = match.get(username).replace("nat_sci", "").trim();
-					match.put(username, temp);
-				}
+			logger.info("Minimum capped percentage of " + low + " found in " + (System.nanoTime() - searchStart) / 1000000 + "ms");
+			
+			network.setPercentage(low);
+			ResidualGraph graph = network.graph;
+			GreedyFlow.push(graph, 0, network.sinkNode, network.getChoiceOrder());
+			FlowSolver solver = SolverMode.SUCCESSIVE_SHORTEST_PATH.createSolver(graph);
+			FlowResult result = solver.solve(0, network.sinkNode);
+			FlowVerifier.check(graph, result, 0, network.sinkNode, solver.getPotentials(), "the minimum percentage solve");
+			
+			LinkedHashMap<String,Integer> counts = new LinkedHashMap<String,Integer>();
+			for (int arc : network.sinkArcs) {
+				counts.put(network.nodeNames.get(graph.getTail(arc)), result.getFlow(arc));
 			}
-			
-			//log and return matching data
-			logger.info("Match created: "+match);
-			
-			return match;
+			return new SweepResult(low, network.getMatch(result), result.getTotalCost(), counts);
 		}catch (StudentNotFoundException e) {
-			logger.severe("Encountered an unexpected StudentNotFoundException when performing a narror run");
+			logger.severe("Encountered an unexpected StudentNotFoundException when searching for the minimum percentage");
 			logger.severe("Stack trace: " + GetStackTrace.getStackTrace(e));
 			throw new UnexpectedException(e);
 		} catch (IOException | JSONException | CustomValidationException | InvalidTypeException | ConfigNotValidException e) {
-			logger.severe("Encountered an exception when performing a narror run");
+			logger.severe("Encountered an exception when searching for the minimum percentage");
 			logger.severe("Stack trace: " + GetStackTrace.getStackTrace(e));
 			throw new ConfigNotValidException(e);
 		} catch (SupervisorNotFoundException e) {
-			logger.severe("Encountered an unexpected SupervisorNotFoundException when performing a narror run");
+			logger.severe("Encountered an unexpected SupervisorNotFoundException when searching for the minimum percentage");
 			logger.severe("Stack trace: " + GetStackTrace.getStackTrace(e));
 			throw new UnexpectedException(e);
 		}
-	}	
+	}
 }
@@ -0,0 +1,201 @@
+package matcher;
+
+import java.util.Arrays;
+
+/**
+ * Dinic's maximum flow algorithm over a {@link ResidualGraph}.
+ * <br>
+ * Costs are ignored. The flow found is pushed onto the arcs of the graph given,
+ * so callers that need to keep the graph unchanged should pass a copy.
+ *
+ * @author Robert Cobb <br>
+ * Bath University<br>
+ * Email: rbc31@bath.ac.uk
+ */
+public class MaxFlow {
+
+	/**
+	 * The graph to push flow on
+	 */
+	private final ResidualGraph graph;
+
+	/**
+	 * The BFS level of each node from the source, -1 if the node can't be reached
+	 */
+	private final int [] level;
+
+	/**
+	 * The adjacency offset of the next arc to try from each node in the current phase
+	 */
+	private final int [] nextArc;
+
+	/**
+	 * The arcs on the current DFS path, pathArcs[i] is the arc leaving the i'th node on the path
+	 */
+	private final int [] pathArcs;
+
+	/**
+	 * BFS queue
+	 */
+	private final int [] queue;
+
+	/**
+	 * Node potentials limiting the search to arcs with a reduced cost of 0, null to use every arc
+	 */
+	private int [] potentials;
+
+	/**
+	 * Creates a max flow solver that pushes flow onto the given graph
+	 * @param graph - The graph to push flow on, any existing flow is kept
+	 */
+	public MaxFlow(ResidualGraph graph) {
+		int n = graph.getNodeCount();
+		this.graph 	 	= graph;
+		this.level 	 	= new int[n];
+		this.nextArc 	= new int[n];
+		this.pathArcs 	= new int[n];
+		this.queue 		= new int[n];
+	}
+
+	/**
+	 * Pushes as much extra flow as possible from the source to the sink
+	 * @param graph - The graph to push flow on, any existing flow is kept
+	 * @param source - The index of the source node
+	 * @param sink - The index of the sink node
+	 * @return The amount of flow added
+	 */
+	public static int getMaxFlow(ResidualGraph graph, int source, int sink) {
+		return new MaxFlow(graph).augment(source, sink);
+	}
+
+	/**
+	 * Pushes as much extra flow as possible from the source to the sink
+	 * @param source - The index of the source node
+	 * @param sink - The index of the sink node
+	 * @return The amount of flow added
+	 */
+	public int augment(int source, int sink) {
+		return augment(source, sink, null);
+	}
+
+	/**
+	 * Pushes as much extra flow as possible from the source to the sink using only arcs with a
+	 * reduced cost, cost(u,v) + potential(u) - potential(v), of 0.
+	 * When every residual arc has a non negative reduced cost these are exactly the arcs on
+	 * cheapest paths, so the flow added keeps the flow minimum cost
+	 * @param source - The index of the source node
+	 * @param sink - The index of the sink node
+	 * @param potentials - The node potentials, null to use every arc
+	 * @return The amount of flow added
+	 */
+	public int augment(int source, int sink, int [] potentials) {
+		this.potentials = potentials;
+		int total = 0;
+		while (buildLevels(source, sink)) {
+			for (int i=0;i<nextArc.length;i++) {
+				nextArc[i] = graph.getFirstArc(i);
+			}
+			int pushed;
+			while ((pushed = blockingPath(source, sink)) > 0) {
+				total += pushed;
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * Gets the BFS level of the given node found by the last phase.
+	 * After {@link #augment(int, int)} returns the nodes with a level of 0 or more are exactly
+	 * the nodes on the source side of a minimum cut
+	 * @param node - The node to get the level of
+	 * @return The level of the node, -1 if it can't be reached from the source
+	 */
+	public int getLevel(int node) {
+		return level[node];
+	}
+
+	/**
+	 * Returns true if flow can be pushed along the given arc in the current search
+	 * @param arc - The arc index
+	 * @return true if the arc has residual capacity and, when potentials are set, a reduced cost of 0
+	 */
+	private boolean isUsable(int arc) {
+		if (graph.getResidual(arc) <= 0) {
+			return false;
+		}
+		return potentials == null ||
+				graph.getCost(arc) + potentials[graph.getTail(arc)] - potentials[graph.getHead(arc)] == 0;
+	}
+
+	/**
+	 * Labels each node with its BFS distance from the source over the usable arcs
+	 * @param source - The index of the source node
+	 * @param sink - The index of the sink node
+	 * @return true if the sink can be reached
+	 */
+	private boolean buildLevels(int source, int sink) {
+		Arrays.fill(level, -1);
+		int headIndex = 0;
+		int tailIndex = 0;
+		level[source] = 0;
+		queue[tailIndex++] = source;
+		while (headIndex < tailIndex) {
+			int current = queue[headIndex++];
+			for (int offset = graph.getFirstArc(current); offset < graph.getEndArc(current); offset++) {
+				int arc = graph.getAdjacentArc(offset);
+				int next = graph.getHead(arc);
+				if (level[next] == -1 && isUsable(arc)) {
+					level[next] = level[current] + 1;
+					queue[tailIndex++] = next;
+				}
+			}
+		}
+		return level[sink] != -1;
+	}
+
+	/**
+	 * Finds one path from source to sink in the level graph with an iterative DFS,
+	 * pushes the bottleneck flow along it and retreats from dead ends
+	 * @param source - The index of the source node
+	 * @param sink - The index of the sink node
+	 * @return The flow pushed, 0 if the level graph holds no more paths
+	 */
+	private int blockingPath(int source, int sink) {
+		int depth = 0;
+		int current = source;
+		while (true) {
+			if (current == sink) {
+				int flow = Integer.MAX_VALUE;
+				for (int i=0;i<depth;i++) {
+					flow = Math.min(flow, graph.getResidual(pathArcs[i]));
+				}
+				for (int i=0;i<depth;i++) {
+					graph.push(pathArcs[i], flow);
+				}
+				return flow;
+			}
+
+			boolean advanced = false;
+			for (; nextArc[current] < graph.getEndArc(current); nextArc[current]++) {
+				int arc = graph.getAdjacentArc(nextArc[current]);
+				int next = graph.getHead(arc);
+				if (level[next] == level[current] + 1 && isUsable(arc)) {
+					pathArcs[depth++] = arc;
+					current = next;
+					advanced = true;
+					break;
+				}
+			}
+
+			if (!advanced) {
+				//dead end, remove the node from the level graph and retreat
+				level[current] = -1;
+				if (depth == 0) {
+					return 0;
+				}
+				current = graph.getTail(pathArcs[--depth]);
+				nextArc[current]++;
+			}
+		}
+	}
+}
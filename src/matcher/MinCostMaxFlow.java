@@ -1,11 +1,15 @@
 package matcher;
 
-import java.util.*;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
 import java.util.logging.Logger;
 
 /**
  * MinCostMaxFlow class to calculate the maximum cost max flow
  * for network flows.
+ * <br>
+ * Each solver holds its own copy of the network and all of its working state, so separate
+ * solvers can be run at the same time on different threads.
  * 
  * @author Robert Cobb <br>
  * Bath University<br>
@@ -13,7 +17,7 @@ import java.util.logging.Logger;
  *
  * Based off implementation: by jaehyunp (https://github.com/jaehyunp/stanfordacm/blob/master/code/MinCostMaxFlow.java)
  */
-public class MinCostMaxFlow {
+public class MinCostMaxFlow implements FlowSolver {
     
 	/**
 	 * The logger for this class
@@ -24,18 +28,393 @@ public class MinCostMaxFlow {
 	 * Definition of infinity. Half max size to avoid overflow errors
 	 */
 	private static final int INFINTY = Integer.MAX_VALUE/2;
-    
+	
 	/**
-	 * The flkow created by the matching algorithm
+	 * The number of nodes a graph needs before {@link ShortestPathMode#DELTA_STEPPING} searches in
+	 * parallel, smaller graphs use the sequential Dial search as the parallel overhead outweighs the gain
 	 */
-	public static int[][] flow;
+	public static final int DEFAULT_PARALLEL_THRESHOLD = 20000;
     
-    /**
-     * Private hashmap that contains the directions of flow for each parent, child pair of nodes
-     * used to talk between the getMaxFlow and getCheapestPath methods
-     */
-	private static  HashMap<String,String> globFlowDir;
+	/**
+	 * The solvers working copy of the network, the flow found is kept on its arcs
+	 */
+	private final ResidualGraph graph;
+	
+	/**
+	 * The shortest path search used to find each augmenting path
+	 */
+	private final ShortestPathMode mode;
+	
+	/**
+	 * Scratch space for the path searches, reused for every augmentation
+	 */
+	private SearchSpace space;
+	
+	/**
+	 * Blocking flow search used after each shortest path search in primal-dual mode,
+	 * null when one path is augmented per search
+	 */
+	private MaxFlow blockingFlow;
+	
+	/**
+	 * The number of nodes the network needs before a {@link ShortestPathMode#DELTA_STEPPING} search runs in parallel
+	 */
+	private final int parallelThreshold;
+	
+	/**
+	 * The largest cost of any arc in either direction, kept up to date as arcs are added and replaced
+	 */
+	private int maxArcCost;
+	
+	/**
+	 * The node potentials, kept between augmentations and between solves.
+	 * null until the first solve, or until they are set with {@link #setPotentials(int[])}
+	 */
+	private int [] potentials;
+	
+	/**
+	 * Scratch space for the path searches. Allocated once per solver and reused for every
+	 * augmentation so the search loops never allocate
+	 */
+	private static class SearchSpace {
+		
+		/**
+		 * The distance of each node from the source
+		 */
+		final int [] dist;
+		
+		/**
+		 * The arc used to reach each node, -1 if the node was not reached
+		 */
+		final int [] parentArcs;
+		
+		/**
+		 * Whether each node has been expanded (linear scan) or settled (heap or buckets)
+		 */
+		final boolean [] visited;
+		
+		/**
+		 * The heap used by the heap based search
+		 */
+		final IndexedMinHeap heap;
+		
+		/**
+		 * The bucket queue used by the Dial search
+		 */
+		final BucketQueue buckets;
+		
+		/**
+		 * The parallel search, null unless delta-stepping is used on a graph above the threshold
+		 */
+		final DeltaStepping deltaStepping;
+		
+		/**
+		 * Creates the scratch space for the given graph
+		 * @param graph - The graph to search
+		 * @param parallel - true to create the parallel delta-stepping search
+		 */
+		SearchSpace(ResidualGraph graph, boolean parallel) {
+			int n = graph.getNodeCount();
+			this.dist 		= new int[n];
+			this.parentArcs = new int[n];
+			this.visited 	= new boolean[n];
+			this.heap 		= new IndexedMinHeap(n);
+			this.buckets 	= new BucketQueue(n);
+			this.deltaStepping = parallel ? new DeltaStepping(graph, ForkJoinPool.commonPool()) : null;
+		}
+		
+		/**
+		 * Resets the space ready for a new search
+		 */
+		void reset() {
+			Arrays.fill(dist, INFINTY);
+			Arrays.fill(parentArcs, -1);
+			Arrays.fill(visited, false);
+			heap.clear();
+		}
+	}
+	
+	/**
+	 * Creates a solver for the given network using the heap based search.
+	 * The network is copied, so one network may be shared by several solvers running on
+	 * different threads as long as it is not modified while they are being created.
+	 * @param network - The network to solve, any flow already on it is kept, such as a
+	 * {@link GreedyFlow} warm start, and negative cost cycles it leaves are cancelled before augmenting
+	 */
+	public MinCostMaxFlow(ResidualGraph network) {
+		this(network, ShortestPathMode.BINARY_HEAP);
+	}
+	
+	/**
+	 * Creates a solver for the given network.
+	 * The network is copied, so one network may be shared by several solvers running on
+	 * different threads as long as it is not modified while they are being created.
+	 * @param network - The network to solve, any flow already on it is kept, such as a
+	 * {@link GreedyFlow} warm start, and negative cost cycles it leaves are cancelled before augmenting
+	 * @param mode - The shortest path search used to find each augmenting path
+	 */
+	public MinCostMaxFlow(ResidualGraph network, ShortestPathMode mode) {
+		this(network, mode, false);
+	}
+	
+	/**
+	 * Creates a solver for the given network.
+	 * The network is copied, so one network may be shared by several solvers running on
+	 * different threads as long as it is not modified while they are being created.
+	 * <br>
+	 * In primal-dual mode each shortest path search is followed by a Dinic style blocking flow over
+	 * every arc with a reduced cost of 0, so one search can allocate many students at once
+	 * rather than one.
+	 * @param network - The network to solve, any flow already on it is kept, such as a
+	 * {@link GreedyFlow} warm start, and negative cost cycles it leaves are cancelled before augmenting
+	 * @param mode - The shortest path search used to find each augmenting path
+	 * @param primalDual - true to push a blocking flow after each search, false to augment one path
+	 * @throws IllegalArgumentException Thrown if primal-dual is asked for with a search that keeps no potentials
+	 */
+	public MinCostMaxFlow(ResidualGraph network, ShortestPathMode mode, boolean primalDual) throws IllegalArgumentException {
+		this(network, mode, primalDual, DEFAULT_PARALLEL_THRESHOLD);
+	}
+	
+	/**
+	 * Creates a solver for the given network.
+	 * The network is copied, so one network may be shared by several solvers running on
+	 * different threads as long as it is not modified while they are being created.
+	 * @param network - The network to solve, any flow already on it is kept, such as a
+	 * {@link GreedyFlow} warm start, and negative cost cycles it leaves are cancelled before augmenting
+	 * @param mode - The shortest path search used to find each augmenting path
+	 * @param primalDual - true to push a blocking flow after each search, false to augment one path
+	 * @param parallelThreshold - The number of nodes the network needs before a
+	 * {@link ShortestPathMode#DELTA_STEPPING} search runs in parallel
+	 * @throws IllegalArgumentException Thrown if primal-dual is asked for with a search that keeps no potentials
+	 */
+	public MinCostMaxFlow(ResidualGraph network, ShortestPathMode mode, boolean primalDual, int parallelThreshold) throws IllegalArgumentException {
+		if (primalDual && mode == ShortestPathMode.LINEAR_SCAN) {
+			throw new IllegalArgumentException("Primal-dual needs node potentials, which " + mode + " does not keep");
+		}
+		this.graph 	= network.copy();
+		this.mode 	= mode;
+		this.parallelThreshold = parallelThreshold;
+		this.space 	= new SearchSpace(graph,
+				mode == ShortestPathMode.DELTA_STEPPING && graph.getNodeCount() >= parallelThreshold);
+		this.blockingFlow = primalDual ? new MaxFlow(graph) : null;
+		for (int arc = 0; arc < graph.getArcCount(); arc += 2) {
+			maxArcCost = Math.max(maxArcCost, Math.abs(graph.getCost(arc)));
+		}
+	}
     
+	/**
+	 * Gets the node potentials the last solve finished with. Every arc left with residual capacity has
+	 * a non negative reduced cost under them, which certifies the flow is of minimum cost,
+	 * see {@link FlowVerifier}
+	 * @return A copy of the potential of each node, null before the first solve or in
+	 * {@link ShortestPathMode#LINEAR_SCAN} mode, which does not keep them up to date
+	 */
+	@Override
+	public int [] getPotentials() {
+		if (potentials == null || mode == ShortestPathMode.LINEAR_SCAN) {
+			return null;
+		}
+		return potentials.clone();
+	}
+	
+	/**
+	 * Gets the graph the solver pushes flow on, holding the flow of the last solve.
+	 * It must not be changed other than through the solver
+	 * @return The solver's graph
+	 */
+	ResidualGraph getGraph() {
+		return graph;
+	}
+	
+	/**
+	 * Sets the node potentials the next solve starts from, so a solve continuing from a flow whose
+	 * potentials are already known skips the Bellman-Ford pass
+	 * @param potentials - The potential of each node, copied. Every arc with residual capacity
+	 * must have a non negative reduced cost
+	 * @throws IllegalArgumentException Thrown if there is not one potential per node or a residual arc
+	 * has a negative reduced cost
+	 */
+	public void setPotentials(int [] potentials) throws IllegalArgumentException {
+		if (potentials.length != graph.getNodeCount()) {
+			throw new IllegalArgumentException("Expected " + graph.getNodeCount() + " potentials but got " + potentials.length);
+		}
+		for (int arc = 0; arc < graph.getArcCount(); arc++) {
+			if (graph.getResidual(arc) > 0 && 
+					graph.getCost(arc) + potentials[graph.getTail(arc)] - potentials[graph.getHead(arc)] < 0) {
+				throw new IllegalArgumentException("Arc <" + graph.getTail(arc) + "> to <" + graph.getHead(arc) + "> has a negative reduced cost");
+			}
+		}
+		this.potentials = potentials.clone();
+	}
+	
+	/**
+	 * Adds a node with no arcs to the solvers copy of the network. The scratch space is
+	 * reallocated, so this is meant for occasional edits rather than building a network
+	 * @return The index of the new node, the old node count
+	 */
+	public int addNode() {
+		int node = graph.addNode();
+		this.space = new SearchSpace(graph,
+				mode == ShortestPathMode.DELTA_STEPPING && graph.getNodeCount() >= parallelThreshold);
+		if (blockingFlow != null) {
+			this.blockingFlow = new MaxFlow(graph);
+		}
+		if (potentials != null) {
+			//any value is valid for a node with no arcs, arcs added to it are repaired by the next solve
+			potentials = Arrays.copyOf(potentials, graph.getNodeCount());
+		}
+		return node;
+	}
+	
+	/**
+	 * Adds an arc to the solvers copy of the network. The next solve continues from the flow
+	 * already found and repairs it if the new arc makes it more costly than it needs to be
+	 * @param from - The node the arc leaves
+	 * @param to - The node the arc enters
+	 * @param capacity - The capacity of the arc
+	 * @param cost - The cost per unit of flow along the arc
+	 * @return The index of the forward arc, the reverse arc has index + 1
+	 * @throws IllegalArgumentException Thrown if either node is not in the graph or the capacity is negative
+	 */
+	public int addArc(int from, int to, int capacity, int cost) throws IllegalArgumentException {
+		int arc = graph.addArc(from, to, capacity, cost);
+		maxArcCost = Math.max(maxArcCost, Math.abs(cost));
+		return arc;
+	}
+	
+	/**
+	 * Changes the capacity of an arc in the solvers copy of the network. If the arc carries more
+	 * flow than the new capacity, each unit over is taken off a path of flow from the source through
+	 * the arc to the sink. The next solve continues from the flow left and repairs it, so only the
+	 * flow taken off has to be placed again
+	 * @param arc - The index of a forward arc
+	 * @param capacity - The new capacity of the arc
+	 * @param source - The index of the source node the flow was found from
+	 * @param sink - The index of the sink node the flow was found to
+	 * @throws IllegalArgumentException Thrown if the arc is a reverse arc or the capacity is negative
+	 */
+	public void setCapacity(int arc, int capacity, int source, int sink) throws IllegalArgumentException {
+		if (!graph.isForward(arc)) {
+			throw new IllegalArgumentException("Only the capacity of a forward arc can be changed");
+		}
+		if (capacity < 0) {
+			throw new IllegalArgumentException("Arc capacity must not be negative");
+		}
+		while (graph.getFlow(arc) > capacity) {
+			removeFlow(arc, source, sink);
+		}
+		graph.setCapacity(arc, capacity);
+	}
+	
+	/**
+	 * Points an arc in the solvers copy of the network at a new node, with a new capacity and cost.
+	 * Any flow on the arc is taken off first, as by {@link #setCapacity(int, int, int, int)}, and the
+	 * next solve repairs the flow left as it does for an added arc
+	 * @param arc - The index of a forward arc
+	 * @param to - The node the arc now enters
+	 * @param capacity - The new capacity of the arc
+	 * @param cost - The new cost per unit of flow along the arc
+	 * @param source - The index of the source node the flow was found from
+	 * @param sink - The index of the sink node the flow was found to
+	 * @throws IllegalArgumentException Thrown if the arc is a reverse arc, the node is not in the graph or the capacity is negative
+	 */
+	public void replaceArc(int arc, int to, int capacity, int cost, int source, int sink) throws IllegalArgumentException {
+		setCapacity(arc, 0, source, sink);
+		graph.replaceArc(arc, to, capacity, cost);
+		maxArcCost = Math.max(maxArcCost, Math.abs(cost));
+	}
+	
+	/**
+	 * Removes arcs with no flow on them from the solvers copy of the network, see {@link ResidualGraph#removeArcs(boolean[])}.
+	 * The flow and potentials are kept, so the next solve continues from them
+	 * @param removed - true for each forward arc to remove, indexed by arc / 2
+	 * @return The new index of each old arc, -1 for an arc removed
+	 * @throws IllegalArgumentException Thrown if there is not an entry for each forward arc or an arc to remove carries flow
+	 */
+	public int [] removeArcs(boolean [] removed) throws IllegalArgumentException {
+		return graph.removeArcs(removed);
+	}
+	
+	/**
+	 * Takes one unit of flow off a path from the source through the given arc to the sink.
+	 * Any cycle of flow met while walking the path is cancelled as well
+	 * @param arc - The index of a forward arc carrying flow
+	 * @param source - The index of the source node
+	 * @param sink - The index of the sink node
+	 */
+	private void removeFlow(int arc, int source, int sink) {
+		int n 			= graph.getNodeCount();
+		int [] path 	= new int[n];
+		int [] position = new int[n];
+		
+		int length = walkFlow(graph.getTail(arc), source, true, path, position);
+		for (int i = 0; i < length; i++) {
+			graph.push(path[i], -1);
+		}
+		graph.push(arc, -1);
+		length = walkFlow(graph.getHead(arc), sink, false, path, position);
+		for (int i = 0; i < length; i++) {
+			graph.push(path[i], -1);
+		}
+	}
+	
+	/**
+	 * Follows arcs carrying flow from one node to another, forwards along the flow or backwards
+	 * against it. Flow is conserved at every node other than the source and sink, so there is
+	 * always an arc to follow. If the walk comes back to a node on it, the cycle of flow found is
+	 * cancelled and the walk carries on from that node
+	 * @param from - The node to start from
+	 * @param to - The node to stop at
+	 * @param backward - true to walk against the flow, false to walk along it
+	 * @param path - Filled with the forward arcs walked, in the order walked
+	 * @param position - Scratch space of one entry per node
+	 * @return The number of arcs walked
+	 * @throws IllegalStateException Thrown if the walk reaches a node with no flow to follow
+	 */
+	private int walkFlow(int from, int to, boolean backward, int [] path, int [] position) throws IllegalStateException {
+		Arrays.fill(position, -1);
+		int length = 0;
+		int node = from;
+		position[node] = 0;
+		while (node != to) {
+			int carrying = -1;
+			for (int offset = graph.getFirstArc(node); offset < graph.getEndArc(node); offset++) {
+				int arc = graph.getAdjacentArc(offset);
+				//walking backwards leaves each node over the reverse of an arc carrying flow into it
+				if (graph.isForward(arc) != backward && graph.getFlow(backward ? arc ^ 1 : arc) > 0) {
+					carrying = backward ? arc ^ 1 : arc;
+					break;
+				}
+			}
+			if (carrying == -1) {
+				throw new IllegalStateException("No flow to follow from node <" + node + ">");
+			}
+			path[length++] = carrying;
+			int next = backward ? graph.getTail(carrying) : graph.getHead(carrying);
+			
+			if (position[next] != -1) {
+				//cancel the cycle of flow from next back to next
+				int start = position[next];
+				int amount = INFINTY;
+				for (int i = start; i < length; i++) {
+					amount = Math.min(amount, graph.getFlow(path[i]));
+				}
+				for (int i = start; i < length; i++) {
+					graph.push(path[i], -amount);
+					int visited = backward ? graph.getTail(path[i]) : graph.getHead(path[i]);
+					if (visited != next) {
+						position[visited] = -1;
+					}
+				}
+				length = start;
+			}else {
+				position[next] = length;
+			}
+			node = next;
+		}
+		return length;
+	}
+	
 	/**
 	 * Gets the maximum flow, minimum cost solution from source to sink
 	 * of the given input network
@@ -46,132 +425,331 @@ public class MinCostMaxFlow {
 	 * cell i,j should be the cost along the direct edge of 1 flow from i to j.
 	 * @param source - The index of the source node in the cap and cost matrix
 	 * @param sink - The index of the sink node in the cap and cost matrix
-	 * @return A int array of 2 values, val[0] is the total flow found
-	 * val[1] is the total cost found
-	 */
-    public static int [] getMaxFlow(int cap[][], int cost[][], int source, int sink) {
-    	//logMessage("Starting to get max flow");
-    	int n = cap.length;
-    	int [][] flow = new int[n][n];
-    	HashMap<Integer,Integer> parents = null;
-    	
-    	int totalcost = 0;
-    	int totalFlow = 0;
-    	
-    	//while there is a flow to augment
-    	while((parents = getCheapestPath(flow,cap,cost,source,sink))!= null) {
-    		int flowAug = INFINTY;
-    		
-    		int current = sink;
-    		//iterate over the path to find max flow that can be augmented
-    		while (current != source) {
-    			int parent = parents.getOrDefault(current,-1);
-    			flowAug = globFlowDir.get(current + " to " + parent).equals("NORMAL_FLOW")? 
-    					Math.min(flowAug, cap[parent][current] - flow[parent][current]) :
-    						Math.min(flowAug, flow[current][parent]);
-    			current = parent;
-    		}
-    		
-    		//update the flows and calulate the costs, by iteratate along the path again
-    		int costAug = 0;
-    		current = sink;
-    		while (current != source) {
-    			int parent = parents.getOrDefault(current,-1);
-    			
-    			if (globFlowDir.get(current + " to " + parent).equals("NORMAL_FLOW")) {
-    				flow[parent][current] += flowAug;
-        			costAug += flowAug * cost[parent][current];
-    			}else {
-    				flow[current][parent] -= flowAug; //going back on an arc
-    				costAug -= flowAug * cost[current][parent];
-    			}
-    			
-    			current = parent;
-    		}
-    		//update total cost and flow
-    		totalcost += costAug;
-    		totalFlow += flowAug;
-    		}
-    	MinCostMaxFlow.flow = flow;
-    	return new int[]{totalFlow,totalcost};
-    }
-
-    /**
-     * Gets the cheapest flow to augment from the source to the sink using a variation on dikstras
-     * @param flow - The flow matrix <br>
-     * 	cell i,j represents the flow from i to j
-     * @param cap - The capacity matrix <br>
-     * 	cell i,j represents the capacity of flow from i to j, 0 is no arc connects i to j directly
-     * @param cost - The cost matrix
-     * 	cell i,j represents the cost per flow from i to j
-     * @param source - The index of the source node
-     * @param sink - The index of the sink node 
-     * @return parents object, A hashmap with each nodes direct parent under the search.
-     * To find the cheapest node from source to sink. Start at the sink and interatativly find the parent untril
-     * you get to the source
-     * <br>
-     * null is returned if no flow can be augmented from source to sink
-     */
-	private static HashMap<Integer, Integer> getCheapestPath(int[][] flow, int[][] cap, int[][] cost, int source, int sink) {
-		logger.info("Getting cheapest path...");
-		int n               = flow.length;
+	 * @return The result of the solve, use {@link FlowResult#toFlowMatrix(int)} to get the flow
+	 * between each pair of nodes
+	 */
+	public static FlowResult getMaxFlow(int cap[][], int cost[][], int source, int sink) {
+		return new MinCostMaxFlow(ResidualGraph.fromMatrices(cap, cost)).solve(source, sink);
+	}
+	
+	/**
+	 * Gets the maximum flow, minimum cost solution from source to sink.
+	 * Calling solve again continues from the flow already found.
+	 * @param source - The index of the source node in the graph
+	 * @param sink - The index of the sink node in the graph
+	 * @return The result of the solve holding the total flow, the total cost and the flow on each arc
+	 */
+	@Override
+	public FlowResult solve(int source, int sink) {
+		logger.info("Getting max flow over " + graph.getNodeCount() + " nodes and " + graph.getArcCount() + " arcs...");
+		//also needed by the linear scan, which copes with negative arcs but not negative cycles
+		potentials = getInitialPotentials(graph, potentials);
+		
+		if (blockingFlow != null) {
+			int searches = 0;
+			//after each search push flow along every cheapest path at once
+			while (getCheapestPath(source, sink, potentials)) {
+				blockingFlow.augment(source, sink, potentials);
+				searches++;
+			}
+			FlowResult result = new FlowResult(graph, source);
+			logger.info("Max flow of " + result.getTotalFlow() + " found at cost " + result.getTotalCost() + " using " + searches + " primal-dual phases");
+			return result;
+		}
+		
+		int paths = 0;
+		
+		//while there is a flow to augment
+		while(mode != ShortestPathMode.LINEAR_SCAN ? 
+				getCheapestPath(source,sink,potentials) : getCheapestPath(source,sink)) {
+			int [] parentArcs = space.parentArcs;
+			int flowAug = INFINTY;
+			
+			//iterate over the path to find max flow that can be augmented
+			int current = sink;
+			while (current != source) {
+				int arc = parentArcs[current];
+				flowAug = Math.min(flowAug, graph.getResidual(arc));
+				current = graph.getTail(arc);
+			}
+			
+			//update the flows by iteratate along the path again
+			current = sink;
+			while (current != source) {
+				int arc = parentArcs[current];
+				graph.push(arc, flowAug);
+				current = graph.getTail(arc);
+			}
+			paths++;
+		}
+		FlowResult result = new FlowResult(graph, source);
+		logger.info("Max flow of " + result.getTotalFlow() + " found at cost " + result.getTotalCost() + " using " + paths + " augmenting paths");
+		return result;
+	}
+	
+	/**
+	 * Cancels every negative cost cycle left in the residual graph by the flow already on it, then
+	 * calculates node potentials such that every arc with residual capacity has a non negative
+	 * reduced cost, cost(u,v) + potential(u) - potential(v) >= 0.
+	 * <br>
+	 * If no residual arc has a negative reduced cost the potentials given are returned unchanged.
+	 * Otherwise Bellman-Ford is run over reduced costs from every node at once, all distances starting
+	 * at 0. After each round the arcs used to reach each node are checked for cycles, any cycle among
+	 * them has a negative cost, and flow is pushed around each one until an arc on it is full, after
+	 * which the search starts again. Each cancel lowers the cost of the flow, so this ends with a
+	 * minimum cost flow for the flow already on the graph and the potentials plus the final distances
+	 * are the new potentials. After a small edit to a solved graph only a few arcs are negative and
+	 * few rounds are needed.
+	 * @param graph - The residual graph, negative cycles are cancelled in place
+	 * @param start - The potentials to start from, null to start from 0
+	 * @return The potential of each node
+	 */
+	private static int [] getInitialPotentials(ResidualGraph graph, int [] start) {
+		int n = graph.getNodeCount();
+		int [] base = start != null ? start : new int[n];
+		
+		boolean negative = false;
+		for (int arc = 0; arc < graph.getArcCount(); arc++) {
+			if (graph.getResidual(arc) > 0 && 
+					graph.getCost(arc) + base[graph.getTail(arc)] - base[graph.getHead(arc)] < 0) {
+				negative = true;
+				break;
+			}
+		}
+		if (!negative) {
+			return base;
+		}
+		
 		int [] dist 		= new int[n];
-		boolean [] visited 	= new boolean[n];
-		globFlowDir = new HashMap<String,String>();
-		HashMap<Integer,Integer> parents = new HashMap<Integer,Integer>();
+		int [] parentArcs 	= new int[n];
+		int [] stamps 		= new int[n];
+		int cancelled 		= 0;
+		boolean changed 	= true;
+		Arrays.fill(parentArcs, -1);
+		while (changed) {
+			changed = false;
+			for (int arc = 0; arc < graph.getArcCount(); arc++) {
+				if (graph.getResidual(arc) > 0) {
+					int from = graph.getTail(arc);
+					int to = graph.getHead(arc);
+					int temp = dist[from] + graph.getCost(arc) + base[from] - base[to];
+					if (temp < dist[to]) {
+						dist[to] = temp;
+						parentArcs[to] = arc;
+						changed = true;
+					}
+				}
+			}
+			
+			int found = cancelParentCycles(graph, parentArcs, stamps);
+			if (found > 0) {
+				//distances found before the cancel may use arcs that are now full, start again
+				cancelled += found;
+				Arrays.fill(dist, 0);
+				Arrays.fill(parentArcs, -1);
+				changed = true;
+			}
+		}
+		if (cancelled > 0) {
+			logger.info("Cancelled " + cancelled + " negative cycles in the starting flow");
+		}
+		for (int i = 0; i < n; i++) {
+			dist[i] += base[i];
+		}
+		return dist;
+	}
+	
+	/**
+	 * Finds the cycles formed by following the arc used to reach each node back to its tail, and
+	 * pushes as much flow as possible around each one. The cycles found never share a node.
+	 * @param graph - The residual graph
+	 * @param parentArcs - The arc used to reach each node, -1 if none
+	 * @param stamps - Scratch space of one entry per node
+	 * @return The number of cycles cancelled
+	 */
+	private static int cancelParentCycles(ResidualGraph graph, int [] parentArcs, int [] stamps) {
+		int n = graph.getNodeCount();
+		Arrays.fill(stamps, 0);
+		int cancelled = 0;
+		for (int start = 0; start < n; start++) {
+			//walk back from start marking nodes with start+1 until a node already walked is found
+			int current = start;
+			while (current != -1 && stamps[current] == 0) {
+				stamps[current] = start + 1;
+				current = parentArcs[current] == -1 ? -1 : graph.getTail(parentArcs[current]);
+			}
+			if (current == -1 || stamps[current] != start + 1) {
+				continue;
+			}
+			
+			//current is on a cycle found by this walk
+			int flowAug = INFINTY;
+			long cycleCost = 0;
+			int node = current;
+			do {
+				int arc = parentArcs[node];
+				flowAug = Math.min(flowAug, graph.getResidual(arc));
+				cycleCost += graph.getCost(arc);
+				node = graph.getTail(arc);
+			} while (node != current);
+			if (cycleCost >= 0) {
+				continue;
+			}
+			do {
+				int arc = parentArcs[node];
+				graph.push(arc, flowAug);
+				node = graph.getTail(arc);
+			} while (node != current);
+			cancelled++;
+		}
+		return cancelled;
+	}
+	
+	/**
+	 * Finds the cheapest flow to augment from the source to the sink of the network
+	 * using Dijkstra over reduced costs, with a binary heap or, in {@link ShortestPathMode#DIAL} mode,
+	 * a bucket queue. In {@link ShortestPathMode#DELTA_STEPPING} mode large graphs are searched in
+	 * parallel and small graphs use the bucket queue.
+	 * The search stops as soon as the sink is settled, the potentials are then updated so reduced
+	 * costs stay non negative for the next search.
+	 * <br>
+	 * On success space.parentArcs holds the arc used to reach each node. To find the cheapest path
+	 * from source to sink. Start at the sink and iteratively follow the arc back to its tail until
+	 * you get to the source
+	 * @param source - The index of the source node
+	 * @param sink - The index of the sink node
+	 * @param potentials - The node potentials, updated in place
+	 * @return true if a path was found, false if no flow can be augmented from source to sink
+	 */
+	private boolean getCheapestPath(int source, int sink, int [] potentials) {
+		int n               = graph.getNodeCount();
+		int [] dist 		= space.dist;
+		int [] parentArcs	= space.parentArcs;
+		boolean [] settled 	= space.visited;
+		IndexedMinHeap heap = space.heap;
+		BucketQueue buckets = space.buckets;
+		boolean dial 		= mode == ShortestPathMode.DIAL || mode == ShortestPathMode.DELTA_STEPPING;
 		
-		Arrays.fill(dist, INFINTY);
-		Arrays.fill(visited, false);
+		space.reset();
+		if (space.deltaStepping != null) {
+			if (!space.deltaStepping.search(source, sink, potentials, getReducedCostBound(potentials), dist, parentArcs)) {
+				return false;
+			}
+			for (int i = 0; i < n; i++) {
+				potentials[i] += Math.min(dist[i], dist[sink]);
+			}
+			return true;
+		}
 		
+		dist[source] = 0;
+		if (dial) {
+			buckets.reset();
+			buckets.insertOrDecrease(source, 0);
+		}else {
+			heap.insertOrDecrease(source, 0);
+		}
+		
+		while(dial ? !buckets.isEmpty() : !heap.isEmpty()) {
+			int current = dial ? buckets.poll() : heap.poll();
+			settled[current] = true;
+			if (current == sink) {
+				break;
+			}
+			
+			for (int offset = graph.getFirstArc(current); offset < graph.getEndArc(current); offset++) {
+				int arc = graph.getAdjacentArc(offset);
+				if (graph.getResidual(arc) <= 0) {
+					continue;
+				}
+				
+				int i = graph.getHead(arc);
+				int temp = dist[current] + graph.getCost(arc) + potentials[current] - potentials[i];
+				
+				if (temp < dist[i] && !settled[i]) {
+					dist[i] = temp;
+					parentArcs[i] = arc;
+					if (dial) {
+						buckets.insertOrDecrease(i, temp);
+					}else {
+						heap.insertOrDecrease(i, temp);
+					}
+				}
+			}
+		}
+		
+		if (!settled[sink]) {
+			return false;
+		}
+		
+		//nodes beyond the sink were not settled, capping at the sink distance keeps reduced costs non negative
+		for (int i = 0; i < n; i++) {
+			potentials[i] += Math.min(dist[i], dist[sink]);
+		}
+		return true;
+	}
+	
+	/**
+	 * Gets a bound on the reduced cost of any arc, the largest arc cost plus the spread of the
+	 * potentials, in time linear in the number of nodes rather than arcs
+	 * @param potentials - The node potentials
+	 * @return The bound, at least the largest reduced cost of any arc with residual capacity
+	 */
+	private int getReducedCostBound(int [] potentials) {
+		int min = Integer.MAX_VALUE;
+		int max = Integer.MIN_VALUE;
+		for (int potential : potentials) {
+			min = Math.min(min, potential);
+			max = Math.max(max, potential);
+		}
+		return (int) Math.min(INFINTY, (long) maxArcCost + max - min);
+	}
+	
+	/**
+	 * Finds the cheapest flow to augment from the source to the sink of the network.
+	 * The next node to expand is found with a linear scan, only the arcs leaving each expanded node
+	 * are scanned and a reverse arc is used to push flow back against an arc that already carries flow.
+	 * <br>
+	 * On success space.parentArcs holds the arc used to reach each node. To find the cheapest path
+	 * from source to sink. Start at the sink and iteratively follow the arc back to its tail until
+	 * you get to the source
+	 * @param source - The index of the source node
+	 * @param sink - The index of the sink node
+	 * @return true if a path was found, false if no flow can be augmented from source to sink
+	 */
+	private boolean getCheapestPath(int source, int sink) {
+		int n               = graph.getNodeCount();
+		int [] dist 		= space.dist;
+		int [] parentArcs	= space.parentArcs;
+		boolean [] visited 	= space.visited;
+		
+		space.reset();
 		dist[source] = 0;
 		visited[source] = true;
-		int next = -1;
 		
 		int current = source;
 		
 		while(true) {
 			visited[current] = true;
 			
-			for (int i = 0; i < n; i++) {
-				if ((cap[current][i] - flow[current][i] <= 0 && flow[i][current] <= 0)) {
+			for (int offset = graph.getFirstArc(current); offset < graph.getEndArc(current); offset++) {
+				int arc = graph.getAdjacentArc(offset);
+				if (graph.getResidual(arc) <= 0) {
 					continue;
 				}
 				
-				String flowDir = "";
-				if (flow[i][current] <= 0) {//if i cant go backwards flow must go forwards
-					flowDir ="NORMAL_FLOW";
-				}else if (cap[current][i] - flow[current][i] <= 0) {//if i cant go forwards must go backwards
-					flowDir = "BACKWARD_FLOW";
-				}else if (cost[current][i] <= -cost[i][current]) {//going forward is same or cheaper
-					flowDir = "NORMAL_FLOW";
-				}else {
-					flowDir = "BACKWARD_FLOW";
-				}
+				int i = graph.getHead(arc);
+				int temp = dist[current] + graph.getCost(arc);
 				
-				if (flowDir == "NORMAL_FLOW") {
-					int temp = dist[current] + cost[current][i];
-	
-					if (temp < dist[i]) {
-						dist[i] = temp;
-						parents.put(i,current);
-						globFlowDir.put(i + " to "+current, "NORMAL_FLOW");
-						visited[i] = false;
-					}
-				}else { //flowDir = "BACKWARD_FLOW"
-					int temp = dist[current] - cost[i][current];
-					
-					if (temp < dist[i]) {
-						dist[i] = temp;
-						parents.put(i,current);
-						globFlowDir.put(i + " to "+current, "BACKWARD_FLOW");
-						visited[i] = false;
-					}
+				if (temp < dist[i]) {
+					dist[i] = temp;
+					parentArcs[i] = arc;
+					visited[i] = false;
 				}
-			} 
+			}
 			
 			//find next node to expand
 			int temp = INFINTY;
-			next = -1;
+			int next = -1;
 			for (int j = 0; j < n; j++) {
 				if (!visited[j] && dist[j] < temp) {
 					temp = dist[j];
@@ -183,6 +761,6 @@ public class MinCostMaxFlow {
 			}
 			current = next;
 		}
-		return visited[sink] ? parents : null;
+		return visited[sink];
 	}
 }
@@ -0,0 +1,471 @@
+package matcher;
+
+import java.util.logging.Logger;
+
+/**
+ * Primal network simplex min cost max flow solver with block search pivoting.
+ * <br>
+ * The maximum flow value F is first found with {@link MaxFlow}. The problem is then solved as a
+ * min cost flow with a supply of F at the source and a demand of F at the sink. An artificial root
+ * node is joined to every node by a big-M arc to give the starting spanning tree, and entering
+ * arcs are chosen with block search: the arcs are scanned in blocks of about sqrt(m) and the most
+ * violating arc of the first block holding a violating arc enters. Leaving arcs are chosen so the
+ * spanning tree stays strongly feasible, which prevents cycling.
+ * <br>
+ * The allocation graph is layered with small integer costs, which is where network simplex
+ * usually needs the fewest pivots.
+ *
+ * @author Robert Cobb <br>
+ * Bath University<br>
+ * Email: rbc31@bath.ac.uk
+ */
+public class NetworkSimplexMinCostFlow implements FlowSolver {
+
+	/**
+	 * The logger for this class
+	 */
+	private static Logger logger = Logger.getLogger(NetworkSimplexMinCostFlow.class.getName());
+
+	/**
+	 * State of a non tree arc with no flow
+	 */
+	private static final int STATE_LOWER = 1;
+
+	/**
+	 * State of a tree arc
+	 */
+	private static final int STATE_TREE = 0;
+
+	/**
+	 * State of a non tree arc with flow equal to its capacity
+	 */
+	private static final int STATE_UPPER = -1;
+
+	/**
+	 * Direction of a tree arc that points from a node up to its parent
+	 */
+	private static final int DIR_UP = 1;
+
+	/**
+	 * Direction of a tree arc that points down from the parent to the node
+	 */
+	private static final int DIR_DOWN = -1;
+
+	/**
+	 * Capacity given to the artificial arcs
+	 */
+	private static final long INFINITE_CAPACITY = Long.MAX_VALUE / 4;
+
+	/**
+	 * The solvers working copy of the network, the flow found is kept on its arcs
+	 */
+	private final ResidualGraph graph;
+
+	/**
+	 * The number of nodes, not including the artificial root
+	 */
+	private int nodeCount;
+
+	/**
+	 * The number of arcs, original forward arcs followed by one artificial arc per node
+	 */
+	private int arcCount;
+
+	/**
+	 * The index of the artificial root node
+	 */
+	private int root;
+
+	/**
+	 * Arc data, arc i < m is the forward arc 2i of the graph
+	 */
+	private int [] source;
+	private int [] target;
+	private long [] capacity;
+	private long [] cost;
+	private long [] flow;
+	private int [] state;
+
+	/**
+	 * Spanning tree data: the parent of each node, the arc joining it to its parent,
+	 * the direction of that arc and the depth of the node
+	 */
+	private int [] parent;
+	private int [] pred;
+	private int [] predDir;
+	private int [] depth;
+
+	/**
+	 * Child lists of the spanning tree
+	 */
+	private int [] firstChild;
+	private int [] nextSibling;
+	private int [] prevSibling;
+
+	/**
+	 * The potential of each node, every tree arc has a reduced cost of 0
+	 */
+	private long [] potential;
+
+	/**
+	 * Stack used to walk subtrees
+	 */
+	private int [] stack;
+
+	/**
+	 * The number of arcs scanned per block when searching for an entering arc
+	 */
+	private int blockSize;
+
+	/**
+	 * The arc the next block search starts from
+	 */
+	private int nextSearchArc;
+
+	/**
+	 * Creates a solver for the given network.
+	 * The network is copied, so one network may be shared by several solvers running on
+	 * different threads as long as it is not modified while they are being created.
+	 * @param network - The network to solve, any flow already on it is replaced
+	 */
+	public NetworkSimplexMinCostFlow(ResidualGraph network) {
+		this.graph = network.copy();
+	}
+
+	/**
+	 * Gets the maximum flow, minimum cost solution from source to sink
+	 * @param sourceNode - The index of the source node in the graph
+	 * @param sinkNode - The index of the sink node in the graph
+	 * @return The result of the solve holding the total flow, the total cost and the flow on each arc
+	 */
+	@Override
+	public FlowResult solve(int sourceNode, int sinkNode) {
+		logger.info("Getting max flow by network simplex over " + graph.getNodeCount() + " nodes and " + graph.getArcCount() + " arcs...");
+		graph.clearFlow();
+		int supply = MaxFlow.getMaxFlow(graph, sourceNode, sinkNode);
+
+		init(sourceNode, sinkNode, supply);
+
+		int pivots = 0;
+		int entering;
+		while ((entering = findEnteringArc()) != -1) {
+			pivot(entering);
+			pivots++;
+		}
+
+		for (int i = 0; i < graph.getArcCount() / 2; i++) {
+			graph.push(2 * i, (int) flow[i] - graph.getFlow(2 * i));
+		}
+		for (int i = graph.getArcCount() / 2; i < arcCount; i++) {
+			if (flow[i] != 0) {
+				logger.severe("Artificial arc carries flow after network simplex, the supply was not feasible");
+			}
+		}
+
+		FlowResult result = new FlowResult(graph, sourceNode);
+		logger.info("Max flow of " + result.getTotalFlow() + " found at cost " + result.getTotalCost() + " after " + pivots + " pivots");
+		return result;
+	}
+
+	/**
+	 * Gets the potentials of the final spanning tree, shifted so the smallest is 0. Tree arcs have
+	 * a reduced cost of 0, arcs with no flow a non negative one and full arcs a non positive one,
+	 * so every arc with residual capacity has a non negative reduced cost
+	 * @return The potential of each node, null before the first solve or if they don't fit in an int
+	 */
+	@Override
+	public int [] getPotentials() {
+		if (potential == null) {
+			return null;
+		}
+		long lowest = Long.MAX_VALUE;
+		long highest = Long.MIN_VALUE;
+		for (int v = 0; v < nodeCount; v++) {
+			lowest = Math.min(lowest, potential[v]);
+			highest = Math.max(highest, potential[v]);
+		}
+		if (highest - lowest > Integer.MAX_VALUE) {
+			logger.warning("Network simplex potentials span " + (highest - lowest) + ", too wide to give as ints");
+			return null;
+		}
+		int [] potentials = new int[nodeCount];
+		for (int v = 0; v < nodeCount; v++) {
+			potentials[v] = (int) (potential[v] - lowest);
+		}
+		return potentials;
+	}
+
+	/**
+	 * Sets up the arc data and the starting spanning tree.
+	 * Every original arc starts at its lower bound and every node hangs off the root by an
+	 * artificial arc carrying its supply.
+	 * @param sourceNode - The index of the source node
+	 * @param sinkNode - The index of the sink node
+	 * @param supply - The flow to send from the source to the sink
+	 */
+	private void init(int sourceNode, int sinkNode, int supply) {
+		nodeCount = graph.getNodeCount();
+		root = nodeCount;
+		int originalArcs = graph.getArcCount() / 2;
+		arcCount = originalArcs + nodeCount;
+
+		source 	 = new int[arcCount];
+		target 	 = new int[arcCount];
+		capacity = new long[arcCount];
+		cost 	 = new long[arcCount];
+		flow 	 = new long[arcCount];
+		state 	 = new int[arcCount];
+
+		long maxCost = 0;
+		for (int i = 0; i < originalArcs; i++) {
+			source[i] 	= graph.getTail(2 * i);
+			target[i] 	= graph.getHead(2 * i);
+			capacity[i] = graph.getCapacity(2 * i);
+			cost[i] 	= graph.getCost(2 * i);
+			state[i] 	= STATE_LOWER;
+			maxCost = Math.max(maxCost, Math.abs(cost[i]));
+		}
+		//big enough that any path through original arcs is cheaper than one artificial arc
+		long artificialCost = (maxCost + 1) * (nodeCount + 1);
+
+		int total = nodeCount + 1;
+		parent 		= new int[total];
+		pred 		= new int[total];
+		predDir 	= new int[total];
+		depth 		= new int[total];
+		firstChild 	= new int[total];
+		nextSibling = new int[total];
+		prevSibling = new int[total];
+		potential 	= new long[total];
+		stack 		= new int[total];
+
+		for (int i = 0; i < total; i++) {
+			firstChild[i] = -1;
+			nextSibling[i] = -1;
+			prevSibling[i] = -1;
+		}
+		parent[root] = -1;
+		pred[root] = -1;
+
+		for (int v = 0; v < nodeCount; v++) {
+			int arc = originalArcs + v;
+			long balance = v == sourceNode ? supply : (v == sinkNode ? -supply : 0);
+			capacity[arc] = INFINITE_CAPACITY;
+			cost[arc] 	  = artificialCost;
+			state[arc] 	  = STATE_TREE;
+			if (balance >= 0) {
+				source[arc] = v;
+				target[arc] = root;
+				flow[arc] 	= balance;
+				predDir[v] 	= DIR_UP;
+				potential[v] = -artificialCost;
+			}else {
+				source[arc] = root;
+				target[arc] = v;
+				flow[arc] 	= -balance;
+				predDir[v] 	= DIR_DOWN;
+				potential[v] = artificialCost;
+			}
+			parent[v] = root;
+			pred[v] = arc;
+			depth[v] = 1;
+			attach(v, root);
+		}
+
+		blockSize = Math.max(10, (int) Math.sqrt(arcCount));
+		nextSearchArc = 0;
+	}
+
+	/**
+	 * Gets the reduced cost of the given arc
+	 * @param arc - The arc index
+	 * @return The reduced cost of the arc under the current potentials
+	 */
+	private long reducedCost(int arc) {
+		return cost[arc] + potential[source[arc]] - potential[target[arc]];
+	}
+
+	/**
+	 * Finds the entering arc using block search
+	 * @return The most violating arc in the first block holding a violating arc,
+	 * -1 if no arc violates the optimality conditions
+	 */
+	private int findEnteringArc() {
+		long best = 0;
+		int bestArc = -1;
+		int count = 0;
+		int arc = nextSearchArc;
+		for (int scanned = 0; scanned < arcCount; scanned++) {
+			long violation = state[arc] * reducedCost(arc);
+			if (violation < best) {
+				best = violation;
+				bestArc = arc;
+			}
+			arc = arc + 1 == arcCount ? 0 : arc + 1;
+			if (++count == blockSize) {
+				if (bestArc != -1) {
+					break;
+				}
+				count = 0;
+			}
+		}
+		nextSearchArc = arc;
+		return bestArc;
+	}
+
+	/**
+	 * Pushes flow around the cycle the entering arc makes with the tree and updates the tree
+	 * @param in - The entering arc
+	 */
+	private void pivot(int in) {
+		int first;
+		int second;
+		if (state[in] == STATE_LOWER) {
+			first = source[in];
+			second = target[in];
+		}else {
+			first = target[in];
+			second = source[in];
+		}
+
+		//find the join node
+		int u = first;
+		int v = second;
+		while (u != v) {
+			if (depth[u] >= depth[v]) {
+				u = parent[u];
+			}else {
+				v = parent[v];
+			}
+		}
+		int join = u;
+
+		//find the leaving arc, ties keep the spanning tree strongly feasible
+		long delta = capacity[in];
+		int outNode = -1;
+		int side = 0;
+		for (u = first; u != join; u = parent[u]) {
+			int arc = pred[u];
+			long d = predDir[u] == DIR_DOWN ? capacity[arc] - flow[arc] : flow[arc];
+			if (d < delta) {
+				delta = d;
+				outNode = u;
+				side = 1;
+			}
+		}
+		for (u = second; u != join; u = parent[u]) {
+			int arc = pred[u];
+			long d = predDir[u] == DIR_UP ? capacity[arc] - flow[arc] : flow[arc];
+			if (d <= delta) {
+				delta = d;
+				outNode = u;
+				side = 2;
+			}
+		}
+
+		//augment around the cycle
+		if (delta > 0) {
+			long value = state[in] * delta;
+			flow[in] += value;
+			for (u = source[in]; u != join; u = parent[u]) {
+				flow[pred[u]] -= predDir[u] * value;
+			}
+			for (u = target[in]; u != join; u = parent[u]) {
+				flow[pred[u]] += predDir[u] * value;
+			}
+		}
+
+		if (side == 0) {
+			//the entering arc reached its other bound, the tree is unchanged
+			state[in] = -state[in];
+			return;
+		}
+
+		int out = pred[outNode];
+		state[in] = STATE_TREE;
+		state[out] = flow[out] == 0 ? STATE_LOWER : STATE_UPPER;
+
+		int inNode = side == 1 ? first : second;
+		int newParentNode = side == 1 ? second : first;
+		rehang(inNode, newParentNode, in, outNode);
+	}
+
+	/**
+	 * Detaches the subtree of outNode and hangs it from newParentNode by the entering arc,
+	 * reversing the tree path from inNode up to outNode, then updates the potentials and depths
+	 * of the moved subtree
+	 * @param inNode - The end of the entering arc inside the moved subtree
+	 * @param newParentNode - The end of the entering arc outside the moved subtree
+	 * @param in - The entering arc
+	 * @param outNode - The node whose arc to its parent leaves the tree
+	 */
+	private void rehang(int inNode, int newParentNode, int in, int outNode) {
+		int node = inNode;
+		int newParent = newParentNode;
+		int newPred = in;
+		while (true) {
+			int oldParent = parent[node];
+			int oldPred = pred[node];
+			detach(node, oldParent);
+			parent[node] = newParent;
+			pred[node] = newPred;
+			predDir[node] = source[newPred] == node ? DIR_UP : DIR_DOWN;
+			attach(node, newParent);
+			if (node == outNode) {
+				break;
+			}
+			newParent = node;
+			newPred = oldPred;
+			node = oldParent;
+		}
+
+		//shift the potentials of the moved subtree so the entering arc has a reduced cost of 0
+		long shift = predDir[inNode] == DIR_UP ?
+				potential[newParentNode] - cost[in] - potential[inNode] :
+				potential[newParentNode] + cost[in] - potential[inNode];
+
+		int size = 0;
+		stack[size++] = inNode;
+		while (size > 0) {
+			int current = stack[--size];
+			potential[current] += shift;
+			depth[current] = depth[parent[current]] + 1;
+			for (int child = firstChild[current]; child != -1; child = nextSibling[child]) {
+				stack[size++] = child;
+			}
+		}
+	}
+
+	/**
+	 * Adds the node to the child list of the given parent
+	 * @param node - The node to add
+	 * @param parentNode - The parent to add it to
+	 */
+	private void attach(int node, int parentNode) {
+		int head = firstChild[parentNode];
+		nextSibling[node] = head;
+		prevSibling[node] = -1;
+		if (head != -1) {
+			prevSibling[head] = node;
+		}
+		firstChild[parentNode] = node;
+	}
+
+	/**
+	 * Removes the node from the child list of the given parent
+	 * @param node - The node to remove
+	 * @param parentNode - The parent to remove it from
+	 */
+	private void detach(int node, int parentNode) {
+		if (prevSibling[node] != -1) {
+			nextSibling[prevSibling[node]] = nextSibling[node];
+		}else {
+			firstChild[parentNode] = nextSibling[node];
+		}
+		if (nextSibling[node] != -1) {
+			prevSibling[nextSibling[node]] = prevSibling[node];
+		}
+		nextSibling[node] = -1;
+		prevSibling[node] = -1;
+	}
+}
@@ -0,0 +1,452 @@
+package matcher;
+
+import java.util.Arrays;
+
+/**
+ * Sparse residual graph used by the flow algorithms.
+ * <br>
+ * Arcs are stored in flat edge arrays. Every arc added with {@link #addArc(int, int, int, int)}
+ * is stored together with its reverse arc, the forward arc is always given an even index and
+ * its reverse arc the following odd index, so the partner of arc <code>a</code> is <code>a ^ 1</code>.
+ * The outgoing arcs of each node are indexed in a compressed (CSR) adjacency list which is
+ * rebuilt lazily whenever arcs have been added since it was last built.
+ * <br>
+ * Memory and the work needed to scan a node both scale with the number of arcs
+ * rather than the square of the number of nodes.
+ *
+ * @author Robert Cobb <br>
+ * Bath University<br>
+ * Email: rbc31@bath.ac.uk
+ */
+public class ResidualGraph {
+
+	/**
+	 * The number of nodes in the graph
+	 */
+	private int nodeCount;
+
+	/**
+	 * The number of arcs in the graph, including reverse arcs
+	 */
+	private int arcCount;
+
+	/**
+	 * The node each arc leaves from
+	 */
+	private int [] tail;
+
+	/**
+	 * The node each arc enters
+	 */
+	private int [] head;
+
+	/**
+	 * The capacity of each arc, reverse arcs have a capacity of 0
+	 */
+	private int [] capacity;
+
+	/**
+	 * The cost per unit of flow along each arc, reverse arcs have the negated cost of their forward arc
+	 */
+	private int [] cost;
+
+	/**
+	 * The flow along each arc, the flow on a reverse arc is always the negated flow of its forward arc
+	 */
+	private int [] flow;
+
+	/**
+	 * CSR offsets, the outgoing arcs of node i are adjArcs[adjStart[i]] to adjArcs[adjStart[i+1]-1]
+	 */
+	private int [] adjStart;
+
+	/**
+	 * CSR arc list, outgoing arcs grouped by tail node and in the order they were added
+	 */
+	private int [] adjArcs;
+
+	/**
+	 * True if arcs have been added since the adjacency list was last built
+	 */
+	private boolean adjacencyDirty;
+
+	/**
+	 * Creates an empty graph with the given number of nodes
+	 * @param nodeCount - The number of nodes in the graph
+	 */
+	public ResidualGraph(int nodeCount) {
+		this(nodeCount, 16);
+	}
+
+	/**
+	 * Creates an empty graph with the given number of nodes and room for the given number
+	 * of arcs before the edge arrays need to grow
+	 * @param nodeCount - The number of nodes in the graph
+	 * @param expectedArcs - The number of arcs (not including reverse arcs) expected to be added
+	 */
+	public ResidualGraph(int nodeCount, int expectedArcs) {
+		if (nodeCount < 0) {
+			throw new IllegalArgumentException("Node count must not be negative");
+		}
+		int size = Math.max(2, expectedArcs * 2);
+		this.nodeCount 	= nodeCount;
+		this.arcCount 	= 0;
+		this.tail 		= new int[size];
+		this.head 		= new int[size];
+		this.capacity 	= new int[size];
+		this.cost 		= new int[size];
+		this.flow 		= new int[size];
+		this.adjacencyDirty = true;
+	}
+
+	/**
+	 * Builds a sparse graph from dense capacity and cost matrices.
+	 * An arc is added for every cell with a positive capacity, a reverse arc is never
+	 * added explicitly as every arc carries its own reverse.
+	 * @param cap - The capacity matrix, cell i,j is the capacity along a direct edge from i to j
+	 * @param cost - The cost matrix, cell i,j is the cost of 1 flow along the edge from i to j
+	 * @return The sparse graph representing the given matrices
+	 */
+	public static ResidualGraph fromMatrices(int [][] cap, int [][] cost) {
+		int n = cap.length;
+		int arcs = 0;
+		for (int i=0;i<n;i++) {
+			for (int j=0;j<n;j++) {
+				if (cap[i][j] > 0) {
+					arcs++;
+				}
+			}
+		}
+
+		ResidualGraph graph = new ResidualGraph(n, arcs);
+		for (int i=0;i<n;i++) {
+			for (int j=0;j<n;j++) {
+				if (cap[i][j] > 0) {
+					graph.addArc(i, j, cap[i][j], cost[i][j]);
+				}
+			}
+		}
+		return graph;
+	}
+
+	/**
+	 * Creates a deep copy of this graph, including the flow on every arc.
+	 * Only the edge arrays are read so several threads may copy the same graph
+	 * as long as none of them modify it.
+	 * @return A copy of this graph that shares no state with it
+	 */
+	public ResidualGraph copy() {
+		ResidualGraph copy = new ResidualGraph(nodeCount, arcCount / 2);
+		copy.arcCount = arcCount;
+		System.arraycopy(tail, 0, copy.tail, 0, arcCount);
+		System.arraycopy(head, 0, copy.head, 0, arcCount);
+		System.arraycopy(capacity, 0, copy.capacity, 0, arcCount);
+		System.arraycopy(cost, 0, copy.cost, 0, arcCount);
+		System.arraycopy(flow, 0, copy.flow, 0, arcCount);
+		return copy;
+	}
+
+	/**
+	 * Adds an arc, and its reverse arc, to the graph
+	 * @param from - The node the arc leaves
+	 * @param to - The node the arc enters
+	 * @param capacity - The capacity of the arc
+	 * @param cost - The cost per unit of flow along the arc
+	 * @return The index of the forward arc, the reverse arc has index + 1
+	 * @throws IllegalArgumentException Thrown if either node is not in the graph or the capacity is negative
+	 */
+	public int addArc(int from, int to, int capacity, int cost) throws IllegalArgumentException {
+		if (from < 0 || from >= nodeCount || to < 0 || to >= nodeCount) {
+			throw new IllegalArgumentException("Arc <" + from + "> to <" + to + "> is not valid for a graph of " + nodeCount + " nodes");
+		}
+		if (capacity < 0) {
+			throw new IllegalArgumentException("Arc capacity must not be negative");
+		}
+
+		ensureArcCapacity(arcCount + 2);
+		int arc = arcCount;
+
+		this.tail[arc] 		= from;
+		this.head[arc] 		= to;
+		this.capacity[arc] 	= capacity;
+		this.cost[arc] 		= cost;
+
+		this.tail[arc+1] 	 = to;
+		this.head[arc+1] 	 = from;
+		this.capacity[arc+1] = 0;
+		this.cost[arc+1] 	 = -cost;
+
+		arcCount += 2;
+		adjacencyDirty = true;
+		return arc;
+	}
+
+	/**
+	 * Adds a node with no arcs to the graph
+	 * @return The index of the new node, the old node count
+	 */
+	public int addNode() {
+		adjacencyDirty = true;
+		return nodeCount++;
+	}
+
+	/**
+	 * Changes the capacity of the given arc
+	 * @param arc - The index of a forward arc
+	 * @param capacity - The new capacity of the arc
+	 * @throws IllegalArgumentException Thrown if the arc is a reverse arc, the capacity is negative
+	 * or the arc carries more flow than the new capacity
+	 */
+	public void setCapacity(int arc, int capacity) throws IllegalArgumentException {
+		if (!isForward(arc)) {
+			throw new IllegalArgumentException("Only the capacity of a forward arc can be changed");
+		}
+		if (capacity < 0) {
+			throw new IllegalArgumentException("Arc capacity must not be negative");
+		}
+		if (flow[arc] > capacity) {
+			throw new IllegalArgumentException("Arc <" + arc + "> carries " + flow[arc] + " flow, more than the new capacity of " + capacity);
+		}
+		this.capacity[arc] = capacity;
+	}
+
+	/**
+	 * Points a forward arc with no flow on it at a new node, with a new capacity and cost, so the
+	 * slot of an arc that is no longer needed can be reused instead of adding another
+	 * @param arc - The index of a forward arc
+	 * @param to - The node the arc now enters
+	 * @param capacity - The new capacity of the arc
+	 * @param cost - The new cost per unit of flow along the arc
+	 * @throws IllegalArgumentException Thrown if the arc is a reverse arc or carries flow, the node is not
+	 * in the graph or the capacity is negative
+	 */
+	public void replaceArc(int arc, int to, int capacity, int cost) throws IllegalArgumentException {
+		if (!isForward(arc)) {
+			throw new IllegalArgumentException("Only a forward arc can be replaced");
+		}
+		if (to < 0 || to >= nodeCount) {
+			throw new IllegalArgumentException("Node <" + to + "> is not valid for a graph of " + nodeCount + " nodes");
+		}
+		if (capacity < 0) {
+			throw new IllegalArgumentException("Arc capacity must not be negative");
+		}
+		if (flow[arc] != 0) {
+			throw new IllegalArgumentException("Arc <" + arc + "> carries " + flow[arc] + " flow and can't be replaced");
+		}
+		if (head[arc] != to) {
+			this.head[arc] 	 = to;
+			this.tail[arc+1] = to;
+			adjacencyDirty = true;
+		}
+		this.capacity[arc] 	= capacity;
+		this.cost[arc] 		= cost;
+		this.cost[arc+1] 	= -cost;
+	}
+
+	/**
+	 * Removes the given arcs, and their reverse arcs, keeping the others in the same order
+	 * @param removed - true for each forward arc to remove, indexed by arc / 2
+	 * @return The new index of each old arc, -1 for an arc removed
+	 * @throws IllegalArgumentException Thrown if there is not an entry for each forward arc or an arc to remove carries flow
+	 */
+	public int [] removeArcs(boolean [] removed) throws IllegalArgumentException {
+		if (removed.length != arcCount / 2) {
+			throw new IllegalArgumentException("Expected " + arcCount / 2 + " arcs but got " + removed.length);
+		}
+		for (int arc = 0; arc < arcCount; arc += 2) {
+			if (removed[arc >> 1] && flow[arc] != 0) {
+				throw new IllegalArgumentException("Arc <" + arc + "> carries " + flow[arc] + " flow and can't be removed");
+			}
+		}
+
+		int [] map = new int[arcCount];
+		int kept = 0;
+		for (int arc = 0; arc < arcCount; arc++) {
+			if (removed[arc >> 1]) {
+				map[arc] = -1;
+				continue;
+			}
+			map[arc] = kept;
+			tail[kept] 		= tail[arc];
+			head[kept] 		= head[arc];
+			capacity[kept] 	= capacity[arc];
+			cost[kept] 		= cost[arc];
+			flow[kept] 		= flow[arc];
+			kept++;
+		}
+		//arcs added later expect no flow on the slots past the last arc
+		Arrays.fill(flow, kept, arcCount, 0);
+		arcCount = kept;
+		adjacencyDirty = true;
+		return map;
+	}
+
+	/**
+	 * Grows the edge arrays so they can hold at least the given number of arcs
+	 * @param required - The number of arcs the arrays must be able to hold
+	 */
+	private void ensureArcCapacity(int required) {
+		if (required <= tail.length) {
+			return;
+		}
+		int size = Math.max(required, tail.length * 2);
+		tail 	 = Arrays.copyOf(tail, size);
+		head 	 = Arrays.copyOf(head, size);
+		capacity = Arrays.copyOf(capacity, size);
+		cost 	 = Arrays.copyOf(cost, size);
+		flow 	 = Arrays.copyOf(flow, size);
+	}
+
+	/**
+	 * Rebuilds the CSR adjacency list if arcs have been added since it was last built.
+	 * A counting sort on the tail node is used so the arcs of each node stay in insertion order.
+	 */
+	private void ensureAdjacency() {
+		if (!adjacencyDirty) {
+			return;
+		}
+		int [] start = new int[nodeCount+1];
+		for (int a=0;a<arcCount;a++) {
+			start[tail[a]+1]++;
+		}
+		for (int i=0;i<nodeCount;i++) {
+			start[i+1] += start[i];
+		}
+
+		int [] next = Arrays.copyOf(start, nodeCount);
+		int [] arcs = new int[arcCount];
+		for (int a=0;a<arcCount;a++) {
+			arcs[next[tail[a]]++] = a;
+		}
+
+		this.adjStart 	= start;
+		this.adjArcs 	= arcs;
+		this.adjacencyDirty = false;
+	}
+
+	/**
+	 * Gets the number of nodes in the graph
+	 * @return The number of nodes in the graph
+	 */
+	public int getNodeCount() {
+		return nodeCount;
+	}
+
+	/**
+	 * Gets the number of arcs in the graph, including reverse arcs
+	 * @return The number of arcs in the graph
+	 */
+	public int getArcCount() {
+		return arcCount;
+	}
+
+	/**
+	 * Gets the offset of the first outgoing arc of the given node in the adjacency list
+	 * @param node - The node to get the first arc of
+	 * @return The offset into the adjacency list, use with {@link #getAdjacentArc(int)}
+	 */
+	public int getFirstArc(int node) {
+		ensureAdjacency();
+		return adjStart[node];
+	}
+
+	/**
+	 * Gets the offset one past the last outgoing arc of the given node in the adjacency list
+	 * @param node - The node to get the end of the arcs of
+	 * @return The offset one past the last outgoing arc of the node
+	 */
+	public int getEndArc(int node) {
+		ensureAdjacency();
+		return adjStart[node+1];
+	}
+
+	/**
+	 * Gets the arc at the given offset in the adjacency list
+	 * @param offset - The offset into the adjacency list
+	 * @return The arc index at the given offset
+	 */
+	public int getAdjacentArc(int offset) {
+		ensureAdjacency();
+		return adjArcs[offset];
+	}
+
+	/**
+	 * Gets the node the given arc leaves
+	 * @param arc - The arc index
+	 * @return The tail node of the arc
+	 */
+	public int getTail(int arc) {
+		return tail[arc];
+	}
+
+	/**
+	 * Gets the node the given arc enters
+	 * @param arc - The arc index
+	 * @return The head node of the arc
+	 */
+	public int getHead(int arc) {
+		return head[arc];
+	}
+
+	/**
+	 * Gets the capacity of the given arc
+	 * @param arc - The arc index
+	 * @return The capacity of the arc, 0 for reverse arcs
+	 */
+	public int getCapacity(int arc) {
+		return capacity[arc];
+	}
+
+	/**
+	 * Gets the cost per unit of flow along the given arc
+	 * @param arc - The arc index
+	 * @return The cost of the arc
+	 */
+	public int getCost(int arc) {
+		return cost[arc];
+	}
+
+	/**
+	 * Gets the flow along the given arc
+	 * @param arc - The arc index
+	 * @return The flow along the arc, negative for a reverse arc carrying flow
+	 */
+	public int getFlow(int arc) {
+		return flow[arc];
+	}
+
+	/**
+	 * Gets the remaining capacity of the given arc in the residual graph
+	 * @param arc - The arc index
+	 * @return The amount of flow that can still be pushed along the arc
+	 */
+	public int getResidual(int arc) {
+		return capacity[arc] - flow[arc];
+	}
+
+	/**
+	 * Returns true if the given arc is a forward arc, that is an arc added with {@link #addArc(int, int, int, int)}
+	 * @param arc - The arc index
+	 * @return true if the arc is a forward arc, false if it is a reverse arc
+	 */
+	public boolean isForward(int arc) {
+		return (arc & 1) == 0;
+	}
+
+	/**
+	 * Pushes the given amount of flow along the given arc, updating its reverse arc
+	 * @param arc - The arc index to push flow along
+	 * @param amount - The amount of flow to push
+	 */
+	public void push(int arc, int amount) {
+		flow[arc] 	+= amount;
+		flow[arc^1] -= amount;
+	}
+
+	/**
+	 * Removes all flow from the graph
+	 */
+	public void clearFlow() {
+		Arrays.fill(flow, 0, arcCount, 0);
+	}
+}
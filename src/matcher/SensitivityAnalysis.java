@@ -0,0 +1,233 @@
+package matcher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+import exceptions.StudentNotFoundException;
+
+/**
+ * Finds the {@link SensitivityReport} of a solved allocation from the residual graph and the node
+ * potentials it was solved with, without solving again.
+ *
+ * @author Robert Cobb <br>
+ * Bath University<br>
+ * Email: rbc31@bath.ac.uk
+ */
+class SensitivityAnalysis {
+
+	/**
+	 * The logger for this class
+	 */
+	private static Logger logger = Logger.getLogger(SensitivityAnalysis.class.getName());
+
+	/**
+	 * The allocation graph the flow was solved over
+	 */
+	private final AllocationGraph network;
+
+	/**
+	 * The solved flow over the allocation graph, its capacities may be lowered but its arcs must match.
+	 * It is only read
+	 */
+	private final ResidualGraph solved;
+
+	/**
+	 * The node potentials the flow was solved with, no arc with residual capacity may have a negative reduced cost
+	 */
+	private final int [] potentials;
+
+	/**
+	 * Creates the analysis of a solved flow
+	 * @param network - The allocation graph the flow was solved over
+	 * @param solved - The solved flow, its capacities may be lowered but its arcs must match. It is only read
+	 * @param potentials - The node potentials the flow was solved with
+	 */
+	SensitivityAnalysis(AllocationGraph network, ResidualGraph solved, int [] potentials) {
+		this.network 	= network;
+		this.solved 	= solved;
+		this.potentials = potentials;
+	}
+
+	/**
+	 * Finds the extra total cost of forcing each student onto each of their choices from the solved
+	 * flow, without solving again. Moving a student from the node their flow goes through to the
+	 * head of another of their arcs means returning a unit from that head to the old node, so the
+	 * extra cost is the arc cost plus the cheapest path back in the residual graph less the cost of
+	 * the arc they have. An unmatched student's unit is returned to the source, leaving another
+	 * student out. Students sharing a node share one search, backwards from that node over reduced
+	 * costs, and the searches are run in parallel
+	 * @param match - The current matching, including students placed outside the flow
+	 * @param threads - The number of searches to run at once
+	 * @return The report of every student that has not withdrawn
+	 * @throws StudentNotFoundException Thrown if a student can't be found
+	 */
+	SensitivityReport getReport(HashMap<String,String> match, int threads) throws StudentNotFoundException {
+		int choices = network.students.getNumOfPreferenceChoice();
+		ArrayList<Integer> reported = new ArrayList<Integer>();
+		for (int i=0;i<network.studentCount;i++) {
+			if (network.graph.getCapacity(network.sourceArcs[i]) > 0) {
+				reported.add(i);
+			}
+		}
+
+		ArrayList<String> usernames = new ArrayList<String>();
+		ArrayList<String> matched = new ArrayList<String>();
+		String [][] names = new String[reported.size()][choices];
+		final int [][] costs = new int[reported.size()][choices];
+		final int [] studentOf = new int[reported.size()];
+		final int [] matchedArcs = new int[reported.size()];
+
+		//group the students by the node their unit would be returned to
+		LinkedHashMap<Integer,ArrayList<Integer>> byTarget = new LinkedHashMap<Integer,ArrayList<Integer>>();
+		for (int k=0;k<reported.size();k++) {
+			int i = reported.get(k);
+			String username = network.nodeNames.get(network.studentNodes[i]);
+			usernames.add(username);
+			matched.add(match.get(username));
+			for (int j=0;j<choices;j++) {
+				names[k][j] = network.students.getChoice(i, j);
+			}
+			Arrays.fill(costs[k], SensitivityReport.NOT_POSSIBLE);
+			studentOf[k] = i;
+			matchedArcs[k] = -1;
+			if (solved.getCapacity(network.sourceArcs[i]) == 0) {
+				continue; //placed outside the flow
+			}
+			for (int arc : network.studentArcs[i]) {
+				if (solved.getFlow(arc) == 1) {
+					matchedArcs[k] = arc;
+				}
+			}
+			int target = matchedArcs[k] == -1 ? 0 : solved.getHead(matchedArcs[k]);
+			if (!byTarget.containsKey(target)) {
+				byTarget.put(target, new ArrayList<Integer>());
+			}
+			byTarget.get(target).add(k);
+		}
+
+		//build the adjacency before the searches share it
+		solved.getFirstArc(0);
+		final int [] targets = new int[byTarget.size()];
+		final ArrayList<ArrayList<Integer>> groups = new ArrayList<ArrayList<Integer>>(byTarget.size());
+		int t = 0;
+		for (Integer target : byTarget.keySet()) {
+			targets[t++] = target;
+			groups.add(byTarget.get(target));
+		}
+
+		int chunks = Math.max(1, Math.min(threads, targets.length));
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(chunks);
+		for (int c=0;c<chunks;c++) {
+			final int first = c;
+			final int step = chunks;
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() {
+					int [] dist = new int[solved.getNodeCount()];
+					boolean [] settled = new boolean[solved.getNodeCount()];
+					IndexedMinHeap heap = new IndexedMinHeap(solved.getNodeCount());
+					for (int g = first; g < targets.length; g += step) {
+						searchBack(targets[g], dist, settled, heap);
+						for (int k : groups.get(g)) {
+							setCosts(targets[g], studentOf[k], matchedArcs[k], dist, costs[k]);
+						}
+					}
+					return null;
+				}
+			});
+		}
+
+		long start = System.nanoTime();
+		if (chunks == 1) {
+			try {
+				tasks.get(0).call();
+			}catch (Exception e) {
+				throw new IllegalStateException("Error finding the sensitivity report", e);
+			}
+		}else {
+			ExecutorService executor = Executors.newFixedThreadPool(chunks);
+			try {
+				for (Future<Void> future : executor.invokeAll(tasks)) {
+					future.get();
+				}
+			}catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while finding the sensitivity report", e);
+			}catch (ExecutionException e) {
+				throw new IllegalStateException("Error finding the sensitivity report", e.getCause());
+			}finally {
+				executor.shutdown();
+			}
+		}
+		logger.info("Sensitivity of " + reported.size() + " students found with " + targets.length + " searches on " 
+				+ chunks + " threads in " + (System.nanoTime() - start) / 1000000 + "ms");
+		return new SensitivityReport(usernames, matched, names, costs);
+	}
+
+	/**
+	 * Finds the reduced cost of the cheapest path from every node to the target through arcs
+	 * with residual capacity, searching backwards from the target
+	 * @param target - The node the paths end at
+	 * @param dist - Set to the reduced cost from each node, {@link Integer#MAX_VALUE} if the target can't be reached
+	 * @param settled - Scratch space, one entry per node
+	 * @param heap - Scratch space, an empty heap over every node
+	 */
+	private void searchBack(int target, int [] dist, boolean [] settled, IndexedMinHeap heap) {
+		Arrays.fill(dist, Integer.MAX_VALUE);
+		Arrays.fill(settled, false);
+		dist[target] = 0;
+		heap.insertOrDecrease(target, 0);
+		while (!heap.isEmpty()) {
+			int current = heap.poll();
+			settled[current] = true;
+			for (int offset = solved.getFirstArc(current); offset < solved.getEndArc(current); offset++) {
+				int arc = solved.getAdjacentArc(offset) ^ 1; //the arc entering the current node
+				int node = solved.getTail(arc);
+				if (settled[node] || solved.getResidual(arc) <= 0) {
+					continue;
+				}
+				int temp = dist[current] + solved.getCost(arc) + potentials[node] - potentials[current];
+				if (temp < dist[node]) {
+					dist[node] = temp;
+					heap.insertOrDecrease(node, temp);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Sets the extra cost of each choice of one student from a search back from the node their unit would be returned to
+	 * @param target - The node searched back from
+	 * @param student - The student
+	 * @param matchedArc - The arc the student's flow takes, -1 if they are not matched
+	 * @param dist - The reduced cost from each node to the target
+	 * @param costs - The extra cost of each choice, set for each choice that is possible
+	 */
+	private void setCosts(int target, int student, int matchedArc, int [] dist, int [] costs) {
+		int current = matchedArc == -1 ? 0 : solved.getCost(matchedArc);
+		for (int j=0;j<costs.length;j++) {
+			int arc = network.choiceArcs[student][j];
+			if (arc == -1) {
+				continue;
+			}
+			if (arc == matchedArc) {
+				costs[j] = 0;
+				continue;
+			}
+			int head = solved.getHead(arc);
+			if (solved.getResidual(arc) <= 0 || dist[head] == Integer.MAX_VALUE) {
+				continue;
+			}
+			costs[j] = solved.getCost(arc) + dist[head] - potentials[head] + potentials[target] - current;
+		}
+	}
+}
@@ -0,0 +1,110 @@
+package matcher;
+
+import java.util.ArrayList;
+
+/**
+ * The extra total cost of forcing each student onto each of the supervisors they chose, with
+ * the rest of the allocation re-optimised around them, see {@link AllocationSession#getSensitivity()}.
+ * <br>
+ * A student's current supervisor costs 0 extra and a supervisor they can't be moved to without
+ * leaving another student unallocated is {@link #NOT_POSSIBLE}
+ *
+ * @author Robert Cobb <br>
+ * Bath University<br>
+ * Email: rbc31@bath.ac.uk
+ */
+public final class SensitivityReport {
+
+	/**
+	 * The extra cost given to a choice the student can't be moved to
+	 */
+	public static final int NOT_POSSIBLE = -1;
+
+	/**
+	 * The username of each student reported on
+	 */
+	private final ArrayList<String> usernames;
+
+	/**
+	 * The supervisor each student is matched to, null if they are not matched
+	 */
+	private final ArrayList<String> matched;
+
+	/**
+	 * The supervisor of each choice of each student, indexed by student then choice
+	 */
+	private final String [][] choices;
+
+	/**
+	 * The extra cost of each choice of each student, indexed by student then choice
+	 */
+	private final int [][] costs;
+
+	/**
+	 * Creates a sensitivity report
+	 * @param usernames - The username of each student reported on
+	 * @param matched - The supervisor each student is matched to, null if they are not matched
+	 * @param choices - The supervisor of each choice of each student, indexed by student then choice
+	 * @param costs - The extra cost of each choice of each student, indexed by student then choice
+	 */
+	SensitivityReport(ArrayList<String> usernames, ArrayList<String> matched, String [][] choices, int [][] costs) {
+		this.usernames 	= usernames;
+		this.matched 	= matched;
+		this.choices 	= choices;
+		this.costs 		= costs;
+	}
+
+	/**
+	 * Gets the number of students reported on
+	 * @return The number of students
+	 */
+	public int size() {
+		return usernames.size();
+	}
+
+	/**
+	 * Gets the number of choices each student made
+	 * @return The number of choices
+	 */
+	public int getNumOfChoices() {
+		return choices.length == 0 ? 0 : choices[0].length;
+	}
+
+	/**
+	 * Gets the username of a student
+	 * @param student - The index of the student in the report
+	 * @return The username of the student
+	 */
+	public String getUsername(int student) {
+		return usernames.get(student);
+	}
+
+	/**
+	 * Gets the supervisor a student is matched to
+	 * @param student - The index of the student in the report
+	 * @return The supervisor name, null if the student is not matched
+	 */
+	public String getMatched(int student) {
+		return matched.get(student);
+	}
+
+	/**
+	 * Gets the supervisor of one of a student's choices
+	 * @param student - The index of the student in the report
+	 * @param choice - The choice, 0 for the first choice
+	 * @return The supervisor name
+	 */
+	public String getChoice(int student, int choice) {
+		return choices[student][choice];
+	}
+
+	/**
+	 * Gets the extra total cost of forcing a student onto one of their choices
+	 * @param student - The index of the student in the report
+	 * @param choice - The choice, 0 for the first choice
+	 * @return The extra cost, 0 for the supervisor they have, {@link #NOT_POSSIBLE} if they can't be moved there
+	 */
+	public int getCost(int student, int choice) {
+		return costs[student][choice];
+	}
+}
@@ -0,0 +1,40 @@
+package matcher;
+
+/**
+ * The shortest path search used by {@link MinCostMaxFlow} to find each augmenting path
+ *
+ * @author Robert Cobb <br>
+ * Bath University<br>
+ * Email: rbc31@bath.ac.uk
+ */
+public enum ShortestPathMode {
+
+	/**
+	 * The original search, the next node to expand is found with a linear scan over all nodes
+	 * and nodes may be expanded more than once when negative reverse arcs are crossed.
+	 * O(n^2) per augmentation.
+	 */
+	LINEAR_SCAN,
+
+	/**
+	 * Dijkstra over reduced costs using a binary heap. Node potentials are kept between
+	 * augmentations so every residual arc has a non negative reduced cost.
+	 * O(m log n) per augmentation.
+	 */
+	BINARY_HEAP,
+
+	/**
+	 * Dijkstra over reduced costs using a Dial bucket queue, with one bucket per possible
+	 * reduced cost. The costs of the allocation graph are small integer sums of the preference
+	 * weights, so there are few buckets and each queue operation is O(1).
+	 * O(m + C) per augmentation, where C is the largest reduced cost.
+	 */
+	DIAL,
+
+	/**
+	 * Parallel delta-stepping over reduced costs on the common fork join pool, for very large
+	 * graphs. Graphs smaller than {@link MinCostMaxFlow#DEFAULT_PARALLEL_THRESHOLD} nodes use the
+	 * sequential {@link #DIAL} search, as the parallel overhead outweighs the gain.
+	 */
+	DELTA_STEPPING
+}
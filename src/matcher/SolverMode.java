@@ -0,0 +1,74 @@
+package matcher;
+
+/**
+ * The min cost max flow algorithms that can be used to perform an allocation
+ *
+ * @author Robert Cobb <br>
+ * Bath University<br>
+ * Email: rbc31@bath.ac.uk
+ */
+public enum SolverMode {
+
+	/**
+	 * Successive shortest paths, {@link MinCostMaxFlow}.
+	 * One augmenting path is found per unit of flow, so the running time grows with the number
+	 * of students allocated
+	 */
+	SUCCESSIVE_SHORTEST_PATH,
+
+	/**
+	 * Goldberg-Tarjan cost scaling push-relabel, {@link CostScalingMinCostFlow}.
+	 * The running time depends on the size of the graph and the largest cost,
+	 * not on the amount of flow
+	 */
+	COST_SCALING,
+
+	/**
+	 * Primal-dual, {@link MinCostMaxFlow} pushing a blocking flow over every arc with a reduced
+	 * cost of 0 after each shortest path search, so one search allocates many students
+	 */
+	PRIMAL_DUAL,
+
+	/**
+	 * Primal network simplex with block search pivoting, {@link NetworkSimplexMinCostFlow}.
+	 * Usually needs few pivots on the layered allocation graph with its small integer costs
+	 */
+	NETWORK_SIMPLEX,
+
+	/**
+	 * Parallel Bertsekas auction, {@link AuctionMinCostFlow}.
+	 * Students bid for supervisor places on all processors. Falls back to successive shortest
+	 * paths when the nat-sci or topic area caps could bind as well as the supervisor caps
+	 */
+	AUCTION,
+
+	/**
+	 * Jonker-Volgenant dense assignment, {@link JonkerVolgenantMinCostFlow}.
+	 * Supervisor capacity is expanded into slots when the topic area caps can't bind.
+	 * Falls back to successive shortest paths otherwise
+	 */
+	JONKER_VOLGENANT;
+
+	/**
+	 * Creates a solver of this type for the given network
+	 * @param network - The network to solve, it is copied by the solver
+	 * @return A new solver for the network
+	 */
+	public FlowSolver createSolver(ResidualGraph network) {
+		switch (this) {
+		case COST_SCALING:
+			return new CostScalingMinCostFlow(network);
+		case PRIMAL_DUAL:
+			return new MinCostMaxFlow(network, ShortestPathMode.BINARY_HEAP, true);
+		case NETWORK_SIMPLEX:
+			return new NetworkSimplexMinCostFlow(network);
+		case AUCTION:
+			return new AuctionMinCostFlow(network);
+		case JONKER_VOLGENANT:
+			return new JonkerVolgenantMinCostFlow(network);
+		case SUCCESSIVE_SHORTEST_PATH:
+		default:
+			return new MinCostMaxFlow(network);
+		}
+	}
+}
@@ -0,0 +1,94 @@
+package matcher;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+
+/**
+ * The allocation found at one capped percentage of a sweep, see {@link Matcher#sweep},
+ * or at the smallest percentage that matches every student, see {@link Matcher#findMinimumPercentage}
+ *
+ * @author Robert Cobb <br>
+ * Bath University<br>
+ * Email: rbc31@bath.ac.uk
+ */
+public final class SweepResult {
+
+	/**
+	 * The percentage the topic areas were capped at
+	 */
+	private final int percentage;
+
+	/**
+	 * The matching found
+	 */
+	private final HashMap<String,String> matching;
+
+	/**
+	 * The total cost of the matching
+	 */
+	private final int totalCost;
+
+	/**
+	 * The number of students matched in each topic area
+	 */
+	private final LinkedHashMap<String,Integer> topicAreaCounts;
+
+	/**
+	 * Creates the result of one step of a sweep
+	 * @param percentage - The percentage the topic areas were capped at
+	 * @param matching - The matching found
+	 * @param totalCost - The total cost of the matching
+	 * @param topicAreaCounts - The number of students matched in each topic area
+	 */
+	SweepResult(int percentage, HashMap<String,String> matching, int totalCost, LinkedHashMap<String,Integer> topicAreaCounts) {
+		this.percentage 		= percentage;
+		this.matching 			= matching;
+		this.totalCost 			= totalCost;
+		this.topicAreaCounts 	= topicAreaCounts;
+	}
+
+	/**
+	 * Gets the percentage the topic areas were capped at
+	 * @return The capped percentage
+	 */
+	public int getPercentage() {
+		return percentage;
+	}
+
+	/**
+	 * Gets the matching found
+	 * @return A copy of the matching as a hashmap of student usernames to supervisor names
+	 */
+	public HashMap<String,String> getMatching() {
+		return new HashMap<String,String>(matching);
+	}
+
+	/**
+	 * Gets the number of students allocated
+	 * @return The number of students in the matching
+	 */
+	public int getAllocated() {
+		return matching.size();
+	}
+
+	/**
+	 * Gets the total cost of the matching
+	 * @return The total cost
+	 */
+	public int getTotalCost() {
+		return totalCost;
+	}
+
+	/**
+	 * Gets the number of students matched in each topic area
+	 * @return A copy of the counts keyed by topic area, in the order of the config
+	 */
+	public LinkedHashMap<String,Integer> getTopicAreaCounts() {
+		return new LinkedHashMap<String,Integer>(topicAreaCounts);
+	}
+
+	@Override
+	public String toString() {
+		return percentage + "%: " + getAllocated() + " allocated at cost " + totalCost + " " + topicAreaCounts;
+	}
+}
@@ -23,6 +23,7 @@ import exceptions.StudentNotFoundException;
 import exceptions.SupervisorNotFoundException;
 import exceptions.UnexpectedException;
 import main.Table;
+import matcher.SensitivityReport;
 import utils.MatchingUtils;
 import utils.ToString;
 import utils.GetStackTrace;
@@ -99,6 +100,60 @@ public class Output {
 		}
 	}
 
+	/**
+	 * Gets the file the sensitivity report is saved to for the given student output file,
+	 * next to it with _sensitivity added to its name
+	 * @param studentFile - The file location the student output is saved to
+	 * @return The file location of the sensitivity report
+	 */
+	public static String getSensitivityFile(String studentFile) {
+		if (studentFile.toLowerCase().endsWith(".csv")) {
+			return studentFile.substring(0, studentFile.length() - 4) + "_sensitivity.csv";
+		}
+		return studentFile + "_sensitivity.csv";
+	}
+	
+	/**
+	 * Saves the sensitivity report next to the student output, one row per student giving
+	 * the supervisor of each of their choices and the extra total cost of moving them there,
+	 * or - if they can't be moved there
+	 * @param report - The sensitivity report to save
+	 * @param studentFile - The file location the student output is saved to
+	 * @throws UnexpectedException - Thrown if an unexpected error occurs
+	 * @throws FileNotFoundException - Thrown if file to save could not be saved 
+	 */
+	public static void saveSensitivityOutput(SensitivityReport report, String studentFile) throws UnexpectedException, FileNotFoundException {
+		logger.info("Saving sensitivity output");
+		
+		ArrayList<String> headers = new ArrayList<String>();
+		headers.add("Username");
+		headers.add("Matched supervisor");
+		for (int j=0;j<report.getNumOfChoices();j++) {
+			headers.add("Choice " + (j+1));
+			headers.add("Choice " + (j+1) + " extra cost");
+		}
+		Table tbl_sensitivity = new Table(headers);
+		
+		try {
+			for (int i=0;i<report.size();i++) {
+				ArrayList<String> record = new ArrayList<String>();
+				record.add(report.getUsername(i));
+				record.add(report.getMatched(i) == null ? "No Matching" : report.getMatched(i));
+				for (int j=0;j<report.getNumOfChoices();j++) {
+					record.add(report.getChoice(i, j));
+					record.add(report.getCost(i, j) == SensitivityReport.NOT_POSSIBLE ? "-" : String.valueOf(report.getCost(i, j)));
+				}
+				tbl_sensitivity.addRecord(record);
+			}
+		}catch (InvalidTableFormatException e) {
+			logger.severe("InvalidTableFormatException encountered when building the sensitivity output. Stack trace: " + GetStackTrace.getStackTrace(e));
+			throw new UnexpectedException(e);
+		}
+		
+		String file = getSensitivityFile(studentFile);
+		logger.info("Saving sensitivity output to file <" + file + '>');
+		tbl_sensitivity.saveToCSVFile(new File(file));
+	}
 	
 	/**
 	 * Returns the choice rank with which the given student chose the given supervisor.
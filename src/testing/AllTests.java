@@ -9,7 +9,7 @@ import org.junit.runners.Suite.SuiteClasses;
  *
  */
 @RunWith(Suite.class)
-@SuiteClasses({ StudentTests.class, SupervisorTests.class, ConfigTests.class, MatchingTests.class, UtilsTests.class })
+@SuiteClasses({ StudentTests.class, SupervisorTests.class, ConfigTests.class, MatchingTests.class, UtilsTests.class, FlowTests.class })
 
 public class AllTests {
 
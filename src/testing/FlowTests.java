@@ -0,0 +1,452 @@
+package testing;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import matcher.AuctionMinCostFlow;
+import matcher.FlowResult;
+import matcher.FlowSolver;
+import matcher.FlowVerifier;
+import matcher.GreedyFlow;
+import matcher.JonkerVolgenantMinCostFlow;
+import matcher.LexicographicMinCostFlow;
+import matcher.MinCostMaxFlow;
+import matcher.ResidualGraph;
+import matcher.ShortestPathMode;
+import matcher.SolverMode;
+
+/**
+ * Tests for the network flow solvers
+ * @author Rob
+ *
+ */
+public class FlowTests {
+
+	/**
+	 * Builds a small allocation shaped network.
+	 * source(0) -> students(1,2,3) -> supervisors(4,5) -> sink(6)
+	 * supervisor 4 has capacity 1, supervisor 5 has capacity 2.
+	 * All 3 students prefer supervisor 4 but only one can have them.
+	 * @return The network
+	 */
+	private static ResidualGraph smallNetwork() {
+		ResidualGraph graph = new ResidualGraph(7);
+		graph.addArc(0, 1, 1, 0);
+		graph.addArc(0, 2, 1, 0);
+		graph.addArc(0, 3, 1, 0);
+		graph.addArc(1, 4, 1, 1);
+		graph.addArc(1, 5, 1, 10);
+		graph.addArc(2, 4, 1, 1);
+		graph.addArc(2, 5, 1, 2);
+		graph.addArc(3, 4, 1, 1);
+		graph.addArc(3, 5, 1, 3);
+		graph.addArc(4, 6, 1, 0);
+		graph.addArc(5, 6, 2, 0);
+		return graph;
+	}
+
+	/**
+	 * Builds a random allocation shaped network.
+	 * source(0) -> students -> supervisors / nat sci supervisors -> topic areas -> sink(last node)
+	 * @param seed - The random seed
+	 * @param students - The number of students
+	 * @param supervisors - The number of supervisors
+	 * @param percentage - The topic area cap as a percentage of students
+	 * @return The network
+	 */
+	static ResidualGraph randomNetwork(long seed, int students, int supervisors, int percentage) {
+		Random random = new Random(seed);
+		int topics = 4;
+		int supervisorStart = 1 + students;
+		int natSciStart = supervisorStart + supervisors;
+		int topicStart = natSciStart + supervisors;
+		int sink = topicStart + topics;
+		ResidualGraph graph = new ResidualGraph(sink + 1);
+
+		for (int i=0;i<students;i++) {
+			graph.addArc(0, 1 + i, 1, 0);
+		}
+		for (int i=0;i<students;i++) {
+			int start = random.nextInt(4) == 0 ? natSciStart : supervisorStart;
+			for (int j=0;j<4;j++) {
+				graph.addArc(1 + i, start + random.nextInt(supervisors), 1, 1 + random.nextInt(20));
+			}
+		}
+		int [] capacity = new int[supervisors];
+		for (int i=0;i<supervisors;i++) {
+			capacity[i] = random.nextInt(5);
+			graph.addArc(natSciStart + i, supervisorStart + i, Math.max(0, capacity[i] - 1), 0);
+		}
+		for (int i=0;i<supervisors;i++) {
+			graph.addArc(supervisorStart + i, topicStart + random.nextInt(topics), capacity[i], 0);
+		}
+		for (int i=0;i<topics;i++) {
+			graph.addArc(topicStart + i, sink, (int) Math.floor(students / 100.0 * percentage), 0);
+		}
+		return graph;
+	}
+
+	/**
+	 * Builds a random assignment shaped network where only the supervisor caps can bind.
+	 * source(0) -> students -> supervisors -> sink(last node)
+	 * @param seed - The random seed
+	 * @param students - The number of students
+	 * @param supervisors - The number of supervisors
+	 * @return The network
+	 */
+	private static ResidualGraph assignmentNetwork(long seed, int students, int supervisors) {
+		Random random = new Random(seed);
+		int sink = 1 + students + supervisors;
+		ResidualGraph graph = new ResidualGraph(sink + 1);
+		for (int i=0;i<students;i++) {
+			graph.addArc(0, 1 + i, 1, 0);
+		}
+		for (int i=0;i<students;i++) {
+			for (int j=0;j<4;j++) {
+				graph.addArc(1 + i, 1 + students + random.nextInt(supervisors), 1, 1 + random.nextInt(20));
+			}
+		}
+		for (int i=0;i<supervisors;i++) {
+			graph.addArc(1 + students + i, sink, random.nextInt(6), 0);
+		}
+		return graph;
+	}
+
+	/**
+	 * The solver should find the max flow at the min cost and report the flow on each arc
+	 */
+	@Test
+	public void test_min_cost_max_flow_small_network() {
+		ResidualGraph graph = smallNetwork();
+
+		FlowResult result = new MinCostMaxFlow(graph).solve(0, 6);
+
+		assertEquals(3, result.getTotalFlow());
+		// student 1 gets supervisor 4, students 2 and 3 go to supervisor 5
+		assertEquals(1 + 2 + 3, result.getTotalCost());
+		assertEquals(1, result.getFlow(6));  // 1 -> 4
+		assertEquals(0, result.getFlow(8));  // 1 -> 5
+		assertEquals(1, result.getFlow(12)); // 2 -> 5
+		assertEquals(1, result.getFlow(16)); // 3 -> 5
+		assertEquals(-1, result.getFlow(7)); // reverse of 1 -> 4
+		assertEquals(1, result.getTail(6));
+		assertEquals(4, result.getHead(6));
+	}
+
+	/**
+	 * Both shortest path searches should give the same optimal cost
+	 */
+	@Test
+	public void test_shortest_path_modes_agree() {
+		for (ShortestPathMode mode : ShortestPathMode.values()) {
+			FlowResult result = new MinCostMaxFlow(smallNetwork(), mode).solve(0, 6);
+			assertEquals(3, result.getTotalFlow());
+			assertEquals(6, result.getTotalCost());
+		}
+	}
+
+	/**
+	 * Solvers copy the network, so solving must not change the network and
+	 * solvers sharing a network must not interfere with each other
+	 * @throws Exception if error
+	 */
+	@Test
+	public void test_solvers_do_not_share_state() throws Exception {
+		final ResidualGraph graph = smallNetwork();
+		final FlowResult [] results = new FlowResult[4];
+
+		Thread [] threads = new Thread[results.length];
+		for (int i=0;i<threads.length;i++) {
+			final int index = i;
+			threads[i] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					results[index] = new MinCostMaxFlow(graph).solve(0, 6);
+				}
+			});
+		}
+		for (int i=0;i<threads.length;i++) {
+			threads[i].start();
+		}
+		for (int i=0;i<threads.length;i++) {
+			threads[i].join();
+		}
+
+		for (int i=0;i<results.length;i++) {
+			assertEquals(3, results[i].getTotalFlow());
+			assertEquals(6, results[i].getTotalCost());
+		}
+		for (int arc=0;arc<graph.getArcCount();arc++) {
+			assertEquals(0, graph.getFlow(arc));
+		}
+	}
+
+	/**
+	 * The dense matrix entry point should give the same result as the sparse graph
+	 */
+	@Test
+	public void test_dense_matrix_input() {
+		int [][] cap  = new int[4][4];
+		int [][] cost = new int[4][4];
+		cap[0][1] = 2; cost[0][1] = 1;
+		cap[0][2] = 1; cost[0][2] = 5;
+		cap[1][3] = 1; cost[1][3] = 1;
+		cap[1][2] = 1; cost[1][2] = 1;
+		cap[2][3] = 2; cost[2][3] = 1;
+
+		FlowResult result = MinCostMaxFlow.getMaxFlow(cap, cost, 0, 3);
+		int [][] flow = result.toFlowMatrix(4);
+
+		assertEquals(3, result.getTotalFlow());
+		assertEquals(2 + 3 + 6, result.getTotalCost());
+		assertEquals(2, flow[0][1]);
+		assertEquals(1, flow[0][2]);
+		assertEquals(1, flow[1][2]);
+		assertEquals(2, flow[2][3]);
+	}
+
+	/**
+	 * Every solver mode should find the same flow and optimal cost
+	 */
+	@Test
+	public void test_solver_modes_agree() {
+		for (long seed=0;seed<20;seed++) {
+			ResidualGraph graph = randomNetwork(seed, 30 + (int) seed * 5, 8 + (int) seed, 20 + (int) seed * 4);
+			int sink = graph.getNodeCount() - 1;
+			FlowResult expected = new MinCostMaxFlow(graph, ShortestPathMode.LINEAR_SCAN).solve(0, sink);
+
+			for (SolverMode mode : SolverMode.values()) {
+				FlowResult result = mode.createSolver(graph).solve(0, sink);
+				assertEquals(mode + " flow, seed " + seed, expected.getTotalFlow(), result.getTotalFlow());
+				assertEquals(mode + " cost, seed " + seed, expected.getTotalCost(), result.getTotalCost());
+			}
+		}
+	}
+
+	/**
+	 * The auction should find the optimal allocation and give the same flows whatever the thread count
+	 */
+	@Test
+	public void test_auction_threads_agree() {
+		for (long seed=0;seed<10;seed++) {
+			ResidualGraph graph = assignmentNetwork(seed, 300, 60);
+			int sink = graph.getNodeCount() - 1;
+			FlowResult expected = new MinCostMaxFlow(graph).solve(0, sink);
+			FlowResult single = new AuctionMinCostFlow(graph, 1).solve(0, sink);
+			FlowResult parallel = new AuctionMinCostFlow(graph, 4).solve(0, sink);
+
+			assertEquals(expected.getTotalFlow(), single.getTotalFlow());
+			assertEquals(expected.getTotalCost(), single.getTotalCost());
+			for (int arc=0;arc<graph.getArcCount();arc++) {
+				assertEquals(single.getFlow(arc), parallel.getFlow(arc));
+			}
+		}
+	}
+
+	/**
+	 * The Jonker-Volgenant assignment should find the optimal allocation when only supervisor caps bind
+	 */
+	@Test
+	public void test_jonker_volgenant_assignment() {
+		for (long seed=0;seed<10;seed++) {
+			ResidualGraph graph = assignmentNetwork(seed, 300, 60);
+			int sink = graph.getNodeCount() - 1;
+			FlowResult expected = new MinCostMaxFlow(graph).solve(0, sink);
+			FlowResult result = new JonkerVolgenantMinCostFlow(graph).solve(0, sink);
+
+			assertEquals(expected.getTotalFlow(), result.getTotalFlow());
+			assertEquals(expected.getTotalCost(), result.getTotalCost());
+		}
+	}
+
+	/**
+	 * The parallel delta-stepping search should find the same optimal cost as the heap search,
+	 * a threshold of 0 makes it search in parallel even on small graphs
+	 */
+	@Test
+	public void test_delta_stepping_matches_heap() {
+		for (long seed=0;seed<10;seed++) {
+			ResidualGraph graph = randomNetwork(seed, 400, 50, 40);
+			int sink = graph.getNodeCount() - 1;
+			FlowResult expected = new MinCostMaxFlow(graph, ShortestPathMode.BINARY_HEAP).solve(0, sink);
+			FlowResult result = new MinCostMaxFlow(graph, ShortestPathMode.DELTA_STEPPING, false, 0).solve(0, sink);
+			FlowResult primalDual = new MinCostMaxFlow(graph, ShortestPathMode.DELTA_STEPPING, true, 0).solve(0, sink);
+
+			assertEquals(expected.getTotalFlow(), result.getTotalFlow());
+			assertEquals(expected.getTotalCost(), result.getTotalCost());
+			assertEquals(expected.getTotalFlow(), primalDual.getTotalFlow());
+			assertEquals(expected.getTotalCost(), primalDual.getTotalCost());
+		}
+	}
+
+	/**
+	 * Starting from a greedy flow that leaves negative cycles should still end at the optimal cost,
+	 * for every search and for every solver that keeps the flow given
+	 */
+	@Test
+	public void test_greedy_warm_start() {
+		for (long seed=0;seed<10;seed++) {
+			int students = 400;
+			ResidualGraph graph = randomNetwork(seed, students, 50, 40);
+			int sink = graph.getNodeCount() - 1;
+			FlowResult expected = new MinCostMaxFlow(graph, ShortestPathMode.LINEAR_SCAN).solve(0, sink);
+
+			//each students arcs in order of the choice they were added as, first choices first
+			int [] order = new int[students * 4];
+			for (int j=0;j<4;j++) {
+				for (int i=0;i<students;i++) {
+					order[j * students + i] = 2 * students + 2 * (4 * i + j);
+				}
+			}
+			ResidualGraph warm = graph.copy();
+			assertTrue(GreedyFlow.push(warm, 0, sink, order) > 0);
+
+			for (ShortestPathMode mode : ShortestPathMode.values()) {
+				FlowResult result = new MinCostMaxFlow(warm, mode).solve(0, sink);
+				assertEquals(expected.getTotalFlow(), result.getTotalFlow());
+				assertEquals(expected.getTotalCost(), result.getTotalCost());
+			}
+			for (SolverMode mode : SolverMode.values()) {
+				FlowResult result = mode.createSolver(warm).solve(0, sink);
+				assertEquals(expected.getTotalFlow(), result.getTotalFlow());
+				assertEquals(expected.getTotalCost(), result.getTotalCost());
+			}
+		}
+	}
+
+	/**
+	 * Editing arcs of a solved network and solving again should give the same flow and cost
+	 * as solving the edited network from scratch
+	 */
+	@Test
+	public void test_incremental_edits() {
+		for (long seed=0;seed<10;seed++) {
+			Random random = new Random(seed);
+			int students = 200;
+			ResidualGraph graph = randomNetwork(seed, students, 30, 40);
+			int sink = graph.getNodeCount() - 1;
+			MinCostMaxFlow solver = new MinCostMaxFlow(graph);
+			solver.solve(0, sink);
+
+			for (int edit=0;edit<20;edit++) {
+				int arc = 2 * random.nextInt(graph.getArcCount() / 2);
+				if (random.nextBoolean()) {
+					int capacity = Math.max(0, graph.getCapacity(arc) - 1 - random.nextInt(2));
+					graph.setCapacity(arc, capacity);
+					solver.setCapacity(arc, capacity, 0, sink);
+				}else {
+					int from = 1 + random.nextInt(students);
+					int to = 1 + students + random.nextInt(60);
+					int cost = random.nextInt(20);
+					assertEquals(graph.addArc(from, to, 1, cost), solver.addArc(from, to, 1, cost));
+				}
+				FlowResult expected = new MinCostMaxFlow(graph).solve(0, sink);
+				FlowResult result = solver.solve(0, sink);
+				assertEquals(expected.getTotalFlow(), result.getTotalFlow());
+				assertEquals(expected.getTotalCost(), result.getTotalCost());
+			}
+		}
+	}
+
+	/**
+	 * The flow and potentials from every search mode should verify, and a flow checked against
+	 * the wrong capacities or potentials should not
+	 */
+	@Test
+	public void test_flow_verifier() {
+		for (long seed=0;seed<10;seed++) {
+			ResidualGraph graph = randomNetwork(seed, 100, 20, 30);
+			int sink = graph.getNodeCount() - 1;
+			for (ShortestPathMode mode : ShortestPathMode.values()) {
+				MinCostMaxFlow solver = new MinCostMaxFlow(graph, mode);
+				FlowResult result = solver.solve(0, sink);
+				assertTrue(mode + ", seed " + seed, FlowVerifier.verify(graph, result, 0, sink, solver.getPotentials()).isEmpty());
+			}
+			//the assignment solvers only find their own flow on an assignment shaped network
+			ResidualGraph assignment = assignmentNetwork(seed, 100, 20);
+			for (SolverMode mode : SolverMode.values()) {
+				for (ResidualGraph network : new ResidualGraph[] {graph, assignment}) {
+					int networkSink = network.getNodeCount() - 1;
+					FlowSolver modeSolver = mode.createSolver(network);
+					FlowResult result = modeSolver.solve(0, networkSink);
+					int [] potentials = modeSolver.getPotentials();
+					assertTrue(mode + ", seed " + seed, potentials != null);
+					assertTrue(mode + ", seed " + seed, FlowVerifier.verify(network, result, 0, networkSink, potentials).isEmpty());
+				}
+			}
+
+			MinCostMaxFlow solver = new MinCostMaxFlow(graph);
+			FlowResult result = solver.solve(0, sink);
+			assertFalse(FlowVerifier.verify(graph, result, 0, sink, new int[graph.getNodeCount()]).isEmpty());
+
+			//lowering the cap of an arc below its flow breaks the capacity bound
+			int arc = graph.getArcCount() - 2;
+			while (result.getFlow(arc) == 0) {
+				arc -= 2;
+			}
+			ResidualGraph edited = graph.copy();
+			edited.setCapacity(arc, result.getFlow(arc) - 1);
+			assertFalse(FlowVerifier.verify(edited, result, 0, sink, null).isEmpty());
+		}
+	}
+
+	/**
+	 * The lexicographic solver should find the same number of units on each level above 0 as a scalar
+	 * solve with costs separated far enough to stand for the same order
+	 */
+	@Test
+	public void test_lexicographic_levels() {
+		for (long seed=0;seed<10;seed++) {
+			int students = 80;
+			int dimension = 4;
+			ResidualGraph graph = randomNetwork(seed, students, 30, 60);
+			int sink = graph.getNodeCount() - 1;
+
+			//each student's arcs were added in choice order
+			int [] levels = new int[graph.getArcCount() / 2];
+			int [] seen = new int[students + 1];
+			for (int arc = 0; arc < graph.getArcCount(); arc += 2) {
+				int tail = graph.getTail(arc);
+				if (tail > 0 && tail <= students) {
+					levels[arc / 2] = seen[tail]++;
+				}
+			}
+
+			//level L costs B^(d-1) + ... + B^(d-L), where B is more than any count
+			ResidualGraph weighted = new ResidualGraph(graph.getNodeCount());
+			for (int arc = 0; arc < graph.getArcCount(); arc += 2) {
+				int cost = 0;
+				int place = 1;
+				for (int k = dimension - 1; k >= 0; k--) {
+					if (k < levels[arc / 2]) {
+						cost += place;
+					}
+					place *= students + 1;
+				}
+				weighted.addArc(graph.getTail(arc), graph.getHead(arc), graph.getCapacity(arc), cost);
+			}
+			FlowResult expected = new MinCostMaxFlow(weighted).solve(0, sink);
+			int [] expectedCounts = new int[dimension + 1];
+			for (int arc = 0; arc < graph.getArcCount(); arc += 2) {
+				expectedCounts[levels[arc / 2]] += expected.getFlow(arc);
+			}
+
+			LexicographicMinCostFlow solver = new LexicographicMinCostFlow(graph, levels, dimension);
+			FlowResult result = solver.solve(0, sink);
+			assertEquals(expected.getTotalFlow(), result.getTotalFlow());
+			//level 0 also counts arcs outside the students, whose flow depends on the route taken
+			int [] counts = solver.getLevelCounts();
+			for (int level = 1; level <= dimension; level++) {
+				assertEquals("seed " + seed + " level " + level, expectedCounts[level], counts[level]);
+			}
+			assertTrue(FlowVerifier.verifyLexicographic(graph, result, 0, sink, levels, dimension, solver.getLevelPotentials()).isEmpty());
+			
+			//units above level 0 leave reverse arcs with negative cost vectors, which zero potentials can't cover
+			assertTrue(counts[1] > 0);
+			assertFalse(FlowVerifier.verifyLexicographic(graph, result, 0, sink, levels, dimension, new long[graph.getNodeCount() * dimension]).isEmpty());
+		}
+	}
+}
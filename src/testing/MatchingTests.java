@@ -5,6 +5,7 @@ import static org.junit.Assert.*;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 
 import org.junit.Test;
 
@@ -13,7 +14,13 @@ import dataManager.Config;
 import dataManager.Students;
 import dataManager.Supervisors;
 import main.Table;
+import matcher.AllocationSession;
+import matcher.BlockingGroup;
+import matcher.FeasibilityCheck;
 import matcher.Matcher;
+import matcher.SensitivityReport;
+import matcher.SolverMode;
+import matcher.SweepResult;
 import output.Output;
 import utils.MatchingUtils;
 
@@ -447,5 +454,512 @@ public class MatchingTests {
 		actualOutput   = Table.parseTableFromCSVFile(new File("output.csv"));
 		assertEquals(expectedOutput,actualOutput);
 	}
-
+	
+	/**
+	 * Updating a students choices in a kept allocation should find an allocation as good as
+	 * a full run over the changed data
+	 * @throws Exception if error
+	 */
+	@Test
+	public void test_session_update_student() throws Exception {
+		Config.configFile = "test_files/config_files/complexvalid1.json";
+		
+		Config.reload();
+		Students students = Students.forceLoad();
+		Supervisors supervisors = Supervisors.forceLoad();
+		
+		ArrayList<String> warnings = new ArrayList<String>();
+		AllocationSession session = new AllocationSession(students, supervisors, 100, warnings);
+		assertEquals(getCost(Matcher.allocate(students, supervisors, 100, warnings), students, supervisors), 
+				getCost(session.getMatch(), students, supervisors));
+		
+		int last = students.getNumOfPreferenceChoice() - 1;
+		for (int i=0;i<students.size();i+=3) {
+			//swap the first and last choices
+			String first = students.getChoice(i, 0);
+			students.setChoice(i, 0, students.getChoice(i, last));
+			students.setChoice(i, last, first);
+			
+			HashMap<String,String> updated = session.updateStudent(students.getUsername(i));
+			HashMap<String,String> expected = Matcher.allocate(students, supervisors, 100, warnings);
+			assertEquals(expected.size(), updated.size());
+			assertEquals(getCost(expected, students, supervisors), getCost(updated, students, supervisors));
+		}
+	}
+	
+	/**
+	 * Updating students to fewer and then more supervisors, and withdrawing students, leaves arcs
+	 * behind that are reused and then removed, and every allocation should stay as good as a full run
+	 * @throws Exception if error
+	 */
+	@Test
+	public void test_session_reuses_arcs() throws Exception {
+		Config.configFile = "test_files/config_files/complexvalid1.json";
+		
+		Config.reload();
+		Students students = Students.forceLoad();
+		Supervisors supervisors = Supervisors.forceLoad();
+		
+		ArrayList<String> warnings = new ArrayList<String>();
+		AllocationSession session = new AllocationSession(students, supervisors, 100, warnings);
+		for (int round=0;round<3;round++) {
+			for (int i=0;i<students.size();i++) {
+				//repeating the first choice drops the arc to the second
+				String second = students.getChoice(i, 1);
+				students.setChoice(i, 1, students.getChoice(i, 0));
+				HashMap<String,String> updated = session.updateStudent(students.getUsername(i));
+				assertEquals(getCost(Matcher.allocate(students, supervisors, 100, warnings), students, supervisors), 
+						getCost(updated, students, supervisors));
+				
+				students.setChoice(i, 1, second);
+				updated = session.updateStudent(students.getUsername(i));
+				assertEquals(getCost(Matcher.allocate(students, supervisors, 100, warnings), students, supervisors), 
+						getCost(updated, students, supervisors));
+			}
+		}
+		
+		//withdrawing the last students leaves the same allocation for the rest as before
+		HashMap<String,String> before = session.getMatch();
+		for (int i=students.size()-1;i>=students.size()-8;i--) {
+			before = session.removeStudent(students.getUsername(i));
+		}
+		HashMap<String,String> matching = session.updateStudent(students.getUsername(0));
+		assertEquals(before.size(), matching.size());
+		assertEquals(getCost(before, students, supervisors), getCost(matching, students, supervisors));
+	}
+	
+	/**
+	 * Adding a late student to a kept allocation should find an allocation as good as a full run
+	 * with the student, and withdrawing them again one as good as the first run
+	 * @throws Exception if error
+	 */
+	@Test
+	public void test_session_add_remove_student() throws Exception {
+		Config.configFile = "test_files/config_files/complexvalid1.json";
+		
+		Config.reload();
+		Students students = Students.forceLoad();
+		Supervisors supervisors = Supervisors.forceLoad();
+		
+		ArrayList<String> warnings = new ArrayList<String>();
+		AllocationSession session = new AllocationSession(students, supervisors, 25, warnings);
+		HashMap<String,String> initial = session.getMatch();
+		
+		//the late student copies the first students row
+		Table data = students.getData();
+		ArrayList<String> record = new ArrayList<String>();
+		for (int i=0;i<data.getColCount();i++) {
+			record.add(data.getValue(0, i));
+		}
+		record.set(students.USERNAME_COLUMN, "late_student");
+		students.addStudent(record);
+		
+		HashMap<String,String> added = session.addStudent("late_student");
+		HashMap<String,String> expected = Matcher.allocate(students, supervisors, 25, warnings);
+		assertEquals(expected.size(), added.size());
+		assertEquals(getCost(expected, students, supervisors), getCost(added, students, supervisors));
+		
+		HashMap<String,String> removed = session.removeStudent("late_student");
+		assertFalse(removed.containsKey("late_student"));
+		assertEquals(initial.size(), removed.size());
+		assertEquals(getCost(initial, students, supervisors), getCost(removed, students, supervisors));
+	}
+	
+	/**
+	 * Pins and forbids should be honoured, and removing them should give back an allocation
+	 * as good as the first
+	 * @throws Exception if error
+	 */
+	@Test
+	public void test_session_pin_forbid() throws Exception {
+		Config.configFile = "test_files/config_files/complexvalid1.json";
+		
+		Config.reload();
+		Students students = Students.forceLoad();
+		Supervisors supervisors = Supervisors.forceLoad();
+		
+		ArrayList<String> warnings = new ArrayList<String>();
+		AllocationSession session = new AllocationSession(students, supervisors, 100, warnings);
+		HashMap<String,String> initial = session.getMatch();
+		
+		String forbiddenStudent = students.getUsername(0);
+		String forbiddenSupervisor = initial.get(forbiddenStudent);
+		HashMap<String,String> matching = session.forbid(forbiddenStudent, forbiddenSupervisor);
+		assertFalse(forbiddenSupervisor.equals(matching.get(forbiddenStudent)));
+		
+		String pinnedStudent = students.getUsername(1);
+		String pinnedSupervisor = students.getChoice(1, students.getNumOfPreferenceChoice() - 1);
+		matching = session.pin(pinnedStudent, pinnedSupervisor);
+		assertEquals(pinnedSupervisor, matching.get(pinnedStudent));
+		assertFalse(forbiddenSupervisor.equals(matching.get(forbiddenStudent)));
+		assertEquals(initial.size(), matching.size());
+		
+		try {
+			session.forbid(pinnedStudent, pinnedSupervisor);
+			fail("Expected exception");
+		}catch (IllegalArgumentException e) {
+			//pass
+		}
+		
+		session.unpin(pinnedStudent);
+		matching = session.allow(forbiddenStudent, forbiddenSupervisor);
+		assertEquals(initial.size(), matching.size());
+		assertEquals(getCost(initial, students, supervisors), getCost(matching, students, supervisors));
+	}
+	
+	/**
+	 * Changing supervisor capacities in a kept allocation should find an allocation as good as
+	 * a full run over the changed data
+	 * @throws Exception if error
+	 */
+	@Test
+	public void test_session_supervisor_capacity() throws Exception {
+		Config.configFile = "test_files/config_files/complexvalid1.json";
+		
+		Config.reload();
+		Students students = Students.forceLoad();
+		Supervisors supervisors = Supervisors.forceLoad();
+		
+		ArrayList<String> warnings = new ArrayList<String>();
+		AllocationSession session = new AllocationSession(students, supervisors, 100, warnings);
+		
+		for (int i=0;i<supervisors.size();i++) {
+			//take a place from one supervisor and give it to the next
+			String supervisor = supervisors.getSupervisorName(i);
+			supervisors.setSupervisorCapacity(i, Math.max(0, supervisors.getSupervisorCapcity(i) - 1));
+			session.updateSupervisorCapacity(supervisor);
+			
+			int next = (i + 1) % supervisors.size();
+			supervisors.setSupervisorCapacity(next, supervisors.getSupervisorCapcity(next) + 1);
+			HashMap<String,String> updated = session.updateSupervisorCapacity(supervisors.getSupervisorName(next));
+			
+			HashMap<String,String> expected = Matcher.allocate(students, supervisors, 100, warnings);
+			assertEquals(expected.size(), updated.size());
+			assertEquals(getCost(expected, students, supervisors), getCost(updated, students, supervisors));
+		}
+	}
+	
+	/**
+	 * A sweep over the capped percentages should find at each percentage an allocation
+	 * as good as a full run at that percentage
+	 * @throws Exception if error
+	 */
+	@Test
+	public void test_percentage_sweep() throws Exception {
+		Config.configFile = "test_files/config_files/complexvalid1.json";
+		
+		Config.reload();
+		Students students = Students.forceLoad();
+		Supervisors supervisors = Supervisors.forceLoad();
+		
+		ArrayList<String> warnings = new ArrayList<String>();
+		int [] percentages = {100, 10, 25, 30, 50};
+		ArrayList<SweepResult> results = Matcher.sweep(students, supervisors, percentages, warnings);
+		
+		assertEquals(percentages.length, results.size());
+		for (int i=0;i<results.size();i++) {
+			SweepResult result = results.get(i);
+			if (i > 0) {
+				assertTrue(results.get(i - 1).getPercentage() < result.getPercentage());
+			}
+			HashMap<String,String> expected = Matcher.allocate(students, supervisors, result.getPercentage(), warnings);
+			assertEquals(expected.size(), result.getAllocated());
+			assertEquals(getCost(expected, students, supervisors), result.getTotalCost());
+			
+			int counted = 0;
+			for (int count : result.getTopicAreaCounts().values()) {
+				counted += count;
+			}
+			assertEquals(result.getAllocated(), counted);
+		}
+	}
+	
+	/**
+	 * The minimum percentage found should match as many students as matching with no cap
+	 * while the percentage below it matches fewer, and the allocation at it should be as good
+	 * as a full run at that percentage
+	 * @throws Exception if error
+	 */
+	@Test
+	public void test_minimum_percentage() throws Exception {
+		Config.configFile = "test_files/config_files/complexvalid1.json";
+		
+		Config.reload();
+		Students students = Students.forceLoad();
+		Supervisors supervisors = Supervisors.forceLoad();
+		
+		ArrayList<String> warnings = new ArrayList<String>();
+		SweepResult result = Matcher.findMinimumPercentage(students, supervisors, warnings);
+		
+		int most = Matcher.allocate(students, supervisors, 100, warnings).size();
+		assertEquals(most, result.getAllocated());
+		assertTrue(result.getPercentage() > 0);
+		assertTrue(Matcher.allocate(students, supervisors, result.getPercentage() - 1, warnings).size() < most);
+		
+		HashMap<String,String> expected = Matcher.allocate(students, supervisors, result.getPercentage(), warnings);
+		assertEquals(getCost(expected, students, supervisors), result.getTotalCost());
+	}
+	
+	/**
+	 * The feasibility check should find the size of the allocation without running it and
+	 * warn only when some students can't be matched
+	 * @throws Exception if error
+	 */
+	@Test
+	public void test_feasibility_check() throws Exception {
+		Config.configFile = "test_files/config_files/complexvalid1.json";
+		
+		Config.reload();
+		Students students = Students.forceLoad();
+		Supervisors supervisors = Supervisors.forceLoad();
+		
+		ArrayList<String> warnings = new ArrayList<String>();
+		assertEquals(students.size(), Matcher.checkFeasibility(students, supervisors, 100, warnings));
+		assertEquals(0, warnings.size());
+		
+		int feasible = Matcher.checkFeasibility(students, supervisors, 10, warnings);
+		assertTrue(feasible < students.size());
+		assertEquals(1, warnings.size());
+		
+		assertEquals(feasible, Matcher.allocate(students, supervisors, 10, warnings).size());
+		
+		//the check made by allocate over its own graph warns the same way
+		warnings.clear();
+		assertEquals(0, Matcher.allocate(students, supervisors, 10, warnings, SolverMode.SUCCESSIVE_SHORTEST_PATH, null, FeasibilityCheck.ONLY).size());
+		assertEquals(1, warnings.size());
+		
+		warnings.clear();
+		HashMap<String,String> checked = Matcher.allocate(students, supervisors, 10, warnings, SolverMode.SUCCESSIVE_SHORTEST_PATH, null, FeasibilityCheck.WARN);
+		assertEquals(1, warnings.size());
+		assertEquals(Matcher.allocate(students, supervisors, 10, new ArrayList<String>(), SolverMode.SUCCESSIVE_SHORTEST_PATH), checked);
+		
+		warnings.clear();
+		Matcher.allocate(students, supervisors, 100, warnings, SolverMode.SUCCESSIVE_SHORTEST_PATH, null, FeasibilityCheck.WARN);
+		assertEquals(0, warnings.size());
+	}
+	
+	/**
+	 * Every unallocated student should be in exactly one blocking group and each group should have
+	 * more students than the places it is blocked by
+	 * @throws Exception if error
+	 */
+	@Test
+	public void test_blocking_groups() throws Exception {
+		Config.configFile = "test_files/config_files/complexvalid1.json";
+		
+		Config.reload();
+		Students students = Students.forceLoad();
+		Supervisors supervisors = Supervisors.forceLoad();
+		
+		ArrayList<String> warnings = new ArrayList<String>();
+		ArrayList<BlockingGroup> blocking = new ArrayList<BlockingGroup>();
+		Matcher.allocate(students, supervisors, 100, warnings, SolverMode.SUCCESSIVE_SHORTEST_PATH, blocking);
+		assertEquals(0, blocking.size());
+		
+		HashMap<String,String> matching = Matcher.allocate(students, supervisors, 10, warnings, SolverMode.SUCCESSIVE_SHORTEST_PATH, blocking);
+		assertTrue(blocking.size() > 0);
+		
+		HashSet<String> unallocated = new HashSet<String>();
+		for (BlockingGroup group : blocking) {
+			for (String student : group.getUnallocated()) {
+				assertFalse(matching.containsKey(student));
+				assertTrue(unallocated.add(student));
+			}
+			assertEquals(group.getStudents() - group.getUnallocated().size(), group.getPlaces());
+			assertFalse(group.getTopicAreas().isEmpty());
+		}
+		assertEquals(students.size() - matching.size(), unallocated.size());
+	}
+	
+	/**
+	 * The extra cost reported for moving a student to each of their choices should be what
+	 * pinning them there and re-solving costs
+	 * @throws Exception if error
+	 */
+	@Test
+	public void test_sensitivity_report() throws Exception {
+		Config.configFile = "test_files/config_files/complexvalid1.json";
+		
+		Config.reload();
+		Students students = Students.forceLoad();
+		Supervisors supervisors = Supervisors.forceLoad();
+		
+		ArrayList<String> warnings = new ArrayList<String>();
+		AllocationSession session = new AllocationSession(students, supervisors, 30, warnings);
+		int allocated = session.getMatch().size();
+		int cost = session.getTotalCost();
+		
+		SensitivityReport report = session.getSensitivity();
+		assertEquals(students.size(), report.size());
+		int moves = 0;
+		for (int i=0;i<report.size();i++) {
+			String student = report.getUsername(i);
+			for (int j=0;j<report.getNumOfChoices();j++) {
+				String supervisor = report.getChoice(i, j);
+				if (supervisor.equals(report.getMatched(i))) {
+					assertEquals(0, report.getCost(i, j));
+					continue;
+				}
+				HashMap<String,String> forced;
+				try {
+					forced = session.pin(student, supervisor);
+				}catch (IllegalArgumentException e) {
+					assertEquals(SensitivityReport.NOT_POSSIBLE, report.getCost(i, j));
+					continue;
+				}
+				int forcedCost = session.getTotalCost() + MatchingUtils.getCostBetween(students, supervisors, student, supervisor);
+				if (report.getCost(i, j) == SensitivityReport.NOT_POSSIBLE) {
+					assertTrue(forced.size() < allocated);
+				}else {
+					assertEquals(allocated, forced.size());
+					assertEquals(cost + report.getCost(i, j), forcedCost);
+					moves++;
+				}
+				session.unpin(student);
+			}
+		}
+		assertTrue(moves > 0);
+		
+		Output.saveSensitivityOutput(report, "output.csv");
+		Table saved = Table.parseTableFromCSVFile(new File(Output.getSensitivityFile("output.csv")));
+		assertEquals(report.size(), saved.size());
+	}
+	
+	/**
+	 * Every alternative allocation should be different and match as many students at the same cost
+	 * @throws Exception if error
+	 */
+	@Test
+	public void test_alternative_allocations() throws Exception {
+		Config.configFile = "test_files/config_files/complexvalid1.json";
+		
+		Config.reload();
+		Students students = Students.forceLoad();
+		Supervisors supervisors = Supervisors.forceLoad();
+		
+		//give every other student the choices of the first, so they tie
+		for (int i=1;i<students.size();i+=2) {
+			for (int j=0;j<students.getNumOfPreferenceChoice();j++) {
+				students.setChoice(i, j, students.getChoice(0, j));
+			}
+		}
+		
+		ArrayList<String> warnings = new ArrayList<String>();
+		AllocationSession session = new AllocationSession(students, supervisors, 100, warnings);
+		HashMap<String,String> matching = session.getMatch();
+		int cost = getCost(matching, students, supervisors);
+		
+		ArrayList<HashMap<String,String>> alternatives = session.getAlternatives(10);
+		assertEquals(10, alternatives.size());
+		HashSet<HashMap<String,String>> distinct = new HashSet<HashMap<String,String>>();
+		distinct.add(matching);
+		for (HashMap<String,String> alternative : alternatives) {
+			assertTrue(distinct.add(alternative));
+			assertEquals(matching.size(), alternative.size());
+			assertEquals(cost, getCost(alternative, students, supervisors));
+		}
+	}
+	
+	/**
+	 * A rank maximal run should keep a student on their first choice where the weighted run moves
+	 * two students onto their second choice to save cost.
+	 * Each supervisor takes 5 students and is the first choice of 5, until the first student
+	 * swaps to the choices of the group wanting supervisor_3. One of that group must then move: the
+	 * weighted run passes them on to supervisor_4 and one of its group on to supervisor_1, two second
+	 * choices at 2 each, while the rank maximal run sends one straight to supervisor_1, a third choice at 5
+	 * @throws Exception if error
+	 */
+	@Test
+	public void test_rank_maximal() throws Exception {
+		Config.configFile = "test_files/config_files/complexvalid1.json";
+		
+		Config.reload();
+		Students students = Students.forceLoad();
+		Supervisors supervisors = Supervisors.forceLoad();
+		
+		for (int i=0;i<supervisors.size();i++) {
+			supervisors.setSupervisorCapacity(i, 5);
+		}
+		String [] choices = {"supervisor_3", "supervisor_4", "supervisor_1", "supervisor_2"};
+		int student = students.getIndex("username_1");
+		for (int j=0;j<choices.length;j++) {
+			students.setChoice(student, j, choices[j]);
+		}
+		
+		ArrayList<String> warnings = new ArrayList<String>();
+		HashMap<String,String> expected = Matcher.allocate(students, supervisors, 100, warnings);
+		assertEquals(20, expected.size());
+		assertArrayEquals(new int[] {18, 2, 0, 0}, getChoiceCounts(expected, students));
+		
+		HashMap<String,String> matching = Matcher.allocateRankMaximal(students, supervisors, 100, warnings);
+		assertEquals(20, matching.size());
+		assertArrayEquals(new int[] {19, 0, 1, 0}, getChoiceCounts(matching, students));
+	}
+	
+	/**
+	 * Gets the number of students matched to each of their choices
+	 * @param matching - The matching of student usernames to supervisor names
+	 * @param students - The students matched
+	 * @return The number of students on each choice, indexed by choice
+	 * @throws Exception if error
+	 */
+	private static int [] getChoiceCounts(HashMap<String,String> matching, Students students) throws Exception {
+		int [] counts = new int[students.getNumOfPreferenceChoice()];
+		for (String student : matching.keySet()) {
+			for (int j=0;j<counts.length;j++) {
+				if (students.getChoice(students.getIndex(student), j).equalsIgnoreCase(matching.get(student))) {
+					counts[j]++;
+				}
+			}
+		}
+		return counts;
+	}
+	
+	/**
+	 * Merging identical students should find an allocation of the same size and cost, and
+	 * split it back the same way every time
+	 * @throws Exception if error
+	 */
+	@Test
+	public void test_compressed_allocation() throws Exception {
+		Config.configFile = "test_files/config_files/complexvalid1.json";
+		
+		Config.reload();
+		Students students = Students.forceLoad();
+		Supervisors supervisors = Supervisors.forceLoad();
+		
+		ArrayList<String> warnings = new ArrayList<String>();
+		for (int round=0;round<2;round++) {
+			for (int percentage : new int[] {25, 30, 100}) {
+				HashMap<String,String> expected = Matcher.allocate(students, supervisors, percentage, warnings);
+				HashMap<String,String> matching = Matcher.allocateCompressed(students, supervisors, percentage, warnings);
+				assertEquals(expected.size(), matching.size());
+				assertEquals(getCost(expected, students, supervisors), getCost(matching, students, supervisors));
+				assertEquals(matching, Matcher.allocateCompressed(students, supervisors, percentage, warnings));
+			}
+			
+			//give every other student the choices of the first, so there are students to merge
+			for (int i=1;i<students.size();i+=2) {
+				for (int j=0;j<students.getNumOfPreferenceChoice();j++) {
+					students.setChoice(i, j, students.getChoice(0, j));
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Gets the total cost of a matching
+	 * @param matching - The matching of student usernames to supervisor names
+	 * @param students - The students matched
+	 * @param supervisors - The supervisors matched to
+	 * @return The sum of the cost of each students match
+	 * @throws Exception if error
+	 */
+	private static int getCost(HashMap<String,String> matching, Students students, Supervisors supervisors) throws Exception {
+		int cost = 0;
+		for (String student : matching.keySet()) {
+			cost += MatchingUtils.getCostBetween(students, supervisors, student, matching.get(student));
+		}
+		return cost;
+	}
 }
@@ -0,0 +1,90 @@
+package testing;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import matcher.FlowSolver;
+import matcher.MinCostMaxFlow;
+import matcher.ResidualGraph;
+import matcher.ShortestPathMode;
+import matcher.SolverMode;
+
+/**
+ * Compares the wall clock time of the min cost max flow solvers on random allocation shaped networks.
+ * <br>
+ * Usage: SolverBenchmark [students] [supervisors] [percentage] [repeats]
+ * @author Rob
+ *
+ */
+public class SolverBenchmark {
+
+	/**
+	 * The logger of the matcher package, kept so its level isn't lost when it is garbage collected
+	 */
+	private static final Logger matcherLogger = Logger.getLogger("matcher");
+
+	/**
+	 * The interface every timed solve goes through
+	 */
+	private interface SolverFactory {
+
+		/**
+		 * Creates the solver to time
+		 * @param network - The network to solve
+		 * @return The solver
+		 */
+		FlowSolver create(ResidualGraph network);
+	}
+
+	/**
+	 * Runs the benchmark
+	 * @param args - students, supervisors, percentage and repeats, all optional
+	 */
+	public static void main(String [] args) {
+		int students 	= args.length > 0 ? Integer.parseInt(args[0]) : 300;
+		int supervisors = args.length > 1 ? Integer.parseInt(args[1]) : 60;
+		int percentage 	= args.length > 2 ? Integer.parseInt(args[2]) : 100;
+		int repeats 	= args.length > 3 ? Integer.parseInt(args[3]) : 5;
+		matcherLogger.setLevel(Level.WARNING);
+
+		ResidualGraph graph = FlowTests.randomNetwork(1, students, supervisors, percentage);
+		System.out.println(students + " students, " + supervisors + " supervisors, " + percentage + "% topic cap, "
+				+ graph.getNodeCount() + " nodes, " + graph.getArcCount() + " arcs");
+
+		for (final ShortestPathMode mode : ShortestPathMode.values()) {
+			time("MinCostMaxFlow " + mode, graph, repeats, new SolverFactory() {
+				@Override
+				public FlowSolver create(ResidualGraph network) {
+					return new MinCostMaxFlow(network, mode);
+				}
+			});
+		}
+		for (final SolverMode mode : SolverMode.values()) {
+			time("SolverMode " + mode, graph, repeats, new SolverFactory() {
+				@Override
+				public FlowSolver create(ResidualGraph network) {
+					return mode.createSolver(network);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Times the solver, after one untimed warm up solve, and prints the best time and the cost found
+	 * @param name - The name to print
+	 * @param graph - The network to solve
+	 * @param repeats - The number of timed solves
+	 * @param factory - Creates the solver to time
+	 */
+	private static void time(String name, ResidualGraph graph, int repeats, SolverFactory factory) {
+		int sink = graph.getNodeCount() - 1;
+		int cost = factory.create(graph).solve(0, sink).getTotalCost();
+		long best = Long.MAX_VALUE;
+		for (int i=0;i<repeats;i++) {
+			long start = System.nanoTime();
+			factory.create(graph).solve(0, sink);
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		System.out.println(String.format("%-45s %10.3f ms   cost %d", name, best / 1e6, cost));
+	}
+}